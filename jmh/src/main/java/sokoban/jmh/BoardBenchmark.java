@@ -0,0 +1,156 @@
+package sokoban.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sokoban.Board;
+import sokoban.LevelTemplate;
+import sokoban.Location;
+
+/**
+ * Benchmarks of reading a level into a {@code Board}, of making boards from
+ * its template, and of the queries of a board, on bundled and synthetic
+ * levels.
+ *
+ * <p>
+ * The occupancy benchmarks ask every cell of the board once per operation,
+ * by cell index and by {@code Location}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Param({ "level01.txt", "level04.txt", "level08.txt", "synthetic-64", "synthetic-256" })
+	private String level;
+
+	private String file;
+	private Board board;
+	private LevelTemplate template;
+	private Location[] locations;
+
+	/**
+	 * Reads the level and lists the locations of its cells.
+	 */
+	@Setup
+	public void setUp() {
+		this.file = Levels.file(this.level);
+		this.board = Levels.read(this.file);
+		this.template = this.board.template();
+		this.locations = new Location[this.board.width() * this.board.height()];
+		for (int y = 0; y < this.board.height(); y++) {
+			for (int x = 0; x < this.board.width(); x++) {
+				this.locations[y * this.board.width() + x] = new Location(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Reads the level from its file and builds its template and a board of
+	 * it, bypassing the template cache.
+	 *
+	 * @return the board
+	 */
+	@Benchmark
+	public Board readLevel() {
+		return new Board(new LevelTemplate(Levels.rows(this.file)));
+	}
+
+	/**
+	 * Makes a board of the level with {@code new Board(filename)}, which finds
+	 * the template in the cache after checking that the file is unchanged.
+	 *
+	 * @return the board
+	 */
+	@Benchmark
+	public Board cachedLevel() {
+		return Levels.read(this.file);
+	}
+
+	/**
+	 * Makes a board in the start position of the template of the level, as a
+	 * restart does.
+	 *
+	 * @return the board
+	 */
+	@Benchmark
+	public Board fromTemplate() {
+		return new Board(this.template);
+	}
+
+	/**
+	 * Copies the board in its current position.
+	 *
+	 * @return the copy
+	 */
+	@Benchmark
+	public Board copy() {
+		return this.board.copy();
+	}
+
+	/**
+	 * Checks whether the board is solved.
+	 *
+	 * @return whether the board is solved
+	 */
+	@Benchmark
+	public boolean isSolved() {
+		return this.board.isSolved();
+	}
+
+	/**
+	 * Asks every cell index of the board whether it is occupied.
+	 *
+	 * @return the number of occupied cells
+	 */
+	@Benchmark
+	public int isOccupiedCell() {
+		int occupied = 0;
+		for (int cell = 0; cell < this.board.cellCount(); cell++) {
+			if (this.board.isOccupied(cell)) {
+				occupied++;
+			}
+		}
+		return occupied;
+	}
+
+	/**
+	 * Asks every location of the board whether it is occupied.
+	 *
+	 * @return the number of occupied locations
+	 */
+	@Benchmark
+	public int isOccupiedLocation() {
+		int occupied = 0;
+		for (Location loc : this.locations) {
+			if (this.board.isOccupied(loc)) {
+				occupied++;
+			}
+		}
+		return occupied;
+	}
+
+	/**
+	 * Draws the board as text.
+	 *
+	 * @return the text of the board
+	 */
+	@Benchmark
+	public String boardToString() {
+		return this.board.toString();
+	}
+}
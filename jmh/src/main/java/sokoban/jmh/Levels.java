@@ -0,0 +1,117 @@
+package sokoban.jmh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import sokoban.Board;
+import sokoban.solver.SuiteBenchmark;
+
+/**
+ * The levels the benchmarks run on: the bundled levels, which the build copies
+ * to {@code src/sokoban} below the working directory, and synthetic levels
+ * written there on demand.
+ */
+final class Levels {
+
+	/**
+	 * The prefix of the name of a synthetic level, followed by its side.
+	 */
+	static final String SYNTHETIC = "synthetic-";
+
+	private Levels() {
+	}
+
+	/**
+	 * Returns the file name of the specified level, writing it first if it is
+	 * synthetic. A synthetic level is named {@code synthetic-N} and is a square
+	 * room of side N with a box on every fourth cell of every fourth row,
+	 * a storage location to the right of every box and the player in the top
+	 * left corner, the same room as in {@code SuiteBenchmark}.
+	 *
+	 * @param level the file name of a bundled level or the name of a synthetic
+	 *              one
+	 * @return the file name to pass to {@code new Board}
+	 */
+	static String file(String level) {
+		if (!level.startsWith(SYNTHETIC)) {
+			return level;
+		}
+		int side = Integer.parseInt(level.substring(SYNTHETIC.length()));
+		return write(level + ".txt", SuiteBenchmark.syntheticRows(side));
+	}
+
+	/**
+	 * Returns the file name of a room of the specified side with the player
+	 * on (2, 2) and, if asked, a box on (3, 2), so that the moves of
+	 * {@code MoveBenchmark} push the box right and back left.
+	 *
+	 * @param side the side of the room, at least 7
+	 * @param box  {@code true} to put a box next to the player
+	 * @return the file name to pass to {@code new Board}
+	 */
+	static String room(int side, boolean box) {
+		List<String> rows = new ArrayList<>();
+		for (int y = 0; y < side; y++) {
+			StringBuilder row = new StringBuilder(side);
+			for (int x = 0; x < side; x++) {
+				if (x == 0 || y == 0 || x == side - 1 || y == side - 1) {
+					row.append('#');
+				} else if (x == 2 && y == 2) {
+					row.append('@');
+				} else if (x == 3 && y == 2 && box) {
+					row.append('$');
+				} else if (x == side - 2 && y == side - 2 && box) {
+					row.append('.');
+				} else {
+					row.append(' ');
+				}
+			}
+			rows.add(row.toString());
+		}
+		return write("room-" + side + (box ? "-box" : "") + ".txt", rows);
+	}
+
+	/**
+	 * Reads the specified level.
+	 *
+	 * @param file the file name of a level
+	 * @return a board in the start position of the level
+	 */
+	static Board read(String file) {
+		try {
+			return new Board(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the rows of the specified level.
+	 *
+	 * @param file the file name of a level
+	 * @return the rows of the level
+	 */
+	static List<String> rows(String file) {
+		try {
+			return Files.readAllLines(Paths.get("src", "sokoban", file));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String write(String file, List<String> rows) {
+		Path path = Paths.get("src", "sokoban", file);
+		try {
+			Files.createDirectories(path.getParent());
+			Files.write(path, rows);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,71 @@
+package sokoban.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sokoban.Location;
+
+/**
+ * Benchmarks of the neighbours and the hash code of {@code Location}, over
+ * the 4096 locations of a 64 by 64 grid per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+
+	private static final int SIDE = 64;
+
+	private final Location[] locations = new Location[SIDE * SIDE];
+
+	/**
+	 * Creates the locations of the grid.
+	 */
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < this.locations.length; i++) {
+			this.locations[i] = new Location(i % SIDE, i / SIDE);
+		}
+	}
+
+	/**
+	 * Creates the four neighbours of every location.
+	 *
+	 * @return the sum of the coordinates of the neighbours
+	 */
+	@Benchmark
+	public int neighbours() {
+		int sum = 0;
+		for (Location loc : this.locations) {
+			sum += loc.left().x() + loc.right().x() + loc.up().y() + loc.down().y();
+		}
+		return sum;
+	}
+
+	/**
+	 * Hashes every location.
+	 *
+	 * @return the sum of the hash codes
+	 */
+	@Benchmark
+	public int hashCodes() {
+		int sum = 0;
+		for (Location loc : this.locations) {
+			sum += loc.hashCode();
+		}
+		return sum;
+	}
+}
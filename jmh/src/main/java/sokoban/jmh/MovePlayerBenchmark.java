@@ -0,0 +1,110 @@
+package sokoban.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sokoban.Board;
+
+/**
+ * Benchmarks of the {@code movePlayerX} methods of {@code Board}, with and
+ * without pushes.
+ *
+ * <p>
+ * An operation is a loop of ten moves in a room that brings the player, and
+ * the box if there is one, back to where they started: with the box next to
+ * the player it pushes the box one cell right, walks around it and pushes it
+ * back, so two of the ten moves push. Without the box the player walks the
+ * same loop. The rooms are small or large, so that the cost of the moves can
+ * be compared between boards of different sizes.
+ *
+ * <p>
+ * The boards of {@code walk} and {@code push} keep no history, which would
+ * grow without end. {@code undo} measures the history instead: it makes the
+ * pushing loop on a board that keeps one and takes the ten moves back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovePlayerBenchmark {
+
+	@Param({ "9", "256" })
+	private int side;
+
+	private Board walk;
+	private Board push;
+	private Board undo;
+
+	/**
+	 * Reads the rooms with and without the box.
+	 */
+	@Setup
+	public void setUp() {
+		this.walk = Levels.read(Levels.room(this.side, false));
+		this.walk.setHistoryEnabled(false);
+		this.push = Levels.read(Levels.room(this.side, true));
+		this.push.setHistoryEnabled(false);
+		this.undo = Levels.read(Levels.room(this.side, true));
+	}
+
+	private static boolean loop(Board board) {
+		boolean moved = board.movePlayerRight();
+		moved &= board.movePlayerUp();
+		moved &= board.movePlayerRight();
+		moved &= board.movePlayerRight();
+		moved &= board.movePlayerDown();
+		moved &= board.movePlayerLeft();
+		moved &= board.movePlayerUp();
+		moved &= board.movePlayerLeft();
+		moved &= board.movePlayerLeft();
+		moved &= board.movePlayerDown();
+		return moved;
+	}
+
+	/**
+	 * Walks the loop without pushing.
+	 *
+	 * @return {@code true} if every move was made
+	 */
+	@Benchmark
+	public boolean walk() {
+		return loop(this.walk);
+	}
+
+	/**
+	 * Walks the loop pushing the box right and back.
+	 *
+	 * @return {@code true} if every move was made
+	 */
+	@Benchmark
+	public boolean push() {
+		return loop(this.push);
+	}
+
+	/**
+	 * Walks the loop pushing the box right and back, and undoes its moves.
+	 *
+	 * @return {@code true} if every move was made and undone
+	 */
+	@Benchmark
+	public boolean undo() {
+		boolean moved = loop(this.undo);
+		for (int i = 0; i < 10; i++) {
+			moved &= this.undo.undo();
+		}
+		return moved;
+	}
+}
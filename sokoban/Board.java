@@ -1,9 +1,6 @@
 package sokoban;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -34,20 +31,101 @@ import java.util.List;
  * The level is won when every box is moved to a storage location.
  * 
  * <p>
+ * The board keeps a history of the moves of the player, so that they can be
+ * undone and redone one at a time.
+ * 
+ * <p>
  * The class provides several methods that return information about a location
  * on the board .
  *
  */
 public class Board {
 	/*
-	 * ADD SOME FIELDS HERE TO STORE THE WALLS, BOXES, AND STORAGE SITES
+	 * The static part of the level, shared by every board of the level. The
+	 * walls, storage locations, size and cell types below are the template's
+	 * own objects and arrays and are never changed by the board.
+	 */
+	private final LevelTemplate template;
+	private final List<Wall> walls;
+	private final List<Storage> storages;
+	private final List<Box> boxes;
+	private final Player player;
+	private final int width;
+	private final int height;
+
+	/*
+	 * Dense cell index over the board. Cells are numbered row by row with a
+	 * one-cell border around the level, so the cell of (x, y) is
+	 * (y + 1) * stride + (x + 1). The static type of every cell lives in
+	 * cells, which comes from the template, and boxAt maps each cell to the
+	 * box standing on it (or null). boxAt is the board's own and is kept in
+	 * sync by the push code, so the location queries below never scan the
+	 * lists.
+	 * 
+	 * The border cells are marked OUTSIDE; because every cell of the level
+	 * has a border cell on each side, adding a step from the steps table to
+	 * a cell of the level always gives a valid index into the arrays.
+	 * 
+	 * Cells marked DEAD are dead squares: a box on one of them can never reach
+	 * a storage location. They are found once by the template.
+	 */
+	private static final byte WALL = LevelTemplate.WALL;
+	private static final byte STORAGE = LevelTemplate.STORAGE;
+	private static final byte OUTSIDE = LevelTemplate.OUTSIDE;
+	private static final byte DEAD = LevelTemplate.DEAD;
+	private final int stride;
+	private final byte[] cells;
+	private final Box[] boxAt;
+	private final Location[] locations;
+	private final int[] steps;
+	private int playerCell;
+
+	/*
+	 * The number of storage locations that have a box on them, kept up to date
+	 * by movePlayer and undo so that isSolved does not have to look at every
+	 * storage location.
 	 */
-	private List<Wall> walls = new ArrayList<>();
-	private List<Storage> storages = new ArrayList<>();
-	private List<Box> boxes = new ArrayList<>();
-	private Player player;
-	private int width;
-	private int height;
+	private int boxesOnStorage;
+
+	/*
+	 * The number of boxes on dead squares, kept up to date by movePlayer and
+	 * undo in the same way. The position cannot be solved while it is not zero.
+	 */
+	private int boxesOnDeadSquares;
+
+	/*
+	 * Zobrist hashing of the position. Every cell has a random key for a box
+	 * standing on it and one for the player standing on it, and hash is the
+	 * exclusive or of the keys of the boxes and the player. The keys are
+	 * generated by the template from a seed computed from the walls and
+	 * storage locations, so two boards of the same level use the same keys.
+	 * movePlayer and undo update hash with two or four exclusive ors per
+	 * move.
+	 */
+	private final long[] boxKeys;
+	private final long[] playerKeys;
+	private long hash;
+
+	/*
+	 * The region of the player, recomputed by normalizedHash without
+	 * allocating. It is created on first use, so that boards that are never
+	 * hashed this way do not pay for it.
+	 */
+	private Reachability reach;
+
+	/*
+	 * The moves made on this board, for undo and redo, or null if the board
+	 * keeps no history. A board made by a constructor or by copy starts with
+	 * an empty history.
+	 */
+	private MoveJournal journal = new MoveJournal();
+
+	/*
+	 * The level of the default constructor.
+	 */
+	private static final LevelTemplate DEFAULT = new LevelTemplate(List.of("           ", "           ",
+			"           ", "           ", "           ", "    @$.    ", "           ", "           ", "           ",
+			"           ", "           "));
 
 	/**
 	 * Initialize a board of width 11 and height 11 with a {@code Player} located at
@@ -55,11 +133,7 @@ public class Board {
 	 * (6, 5).
 	 */
 	public Board() {
-		this.width = 11;
-		this.height = 11;
-		this.player = new Player(new Location(4, 5));
-		this.boxes.add(new Box(new Location(5, 5)));
-		this.storages.add(new Storage(new Location(6, 5)));
+		this(DEFAULT);
 	}
 
 	/**
@@ -71,70 +145,189 @@ public class Board {
 	 * width of the board is determined by the longest line in the file where
 	 * trailing spaces in a line are ignored.
 	 * 
+	 * <p>
+	 * The level is read and analysed only the first time a board of the file
+	 * is made, or when the file has changed; later boards share its
+	 * {@code LevelTemplate}.
+	 * 
 	 * @param filename the filename of the level
 	 * @throws IOException if the level file cannot be read
 	 */
 	public Board(String filename) throws IOException {
-		
-		
-		// call readLevel after initializing your fields
-		this.readLevel(filename);
+		this(LevelTemplate.forFile(filename));
 	}
 
-	private final void readLevel(String filename) throws IOException {
-		Path path = FileSystems.getDefault().getPath("src", "sokoban", filename);
-		List<String> level = Files.readAllLines(path);
-		this.height = level.size();
-		this.width = 0;
-		for (int y = 0; y < this.height; y++) {
-			String row = level.get(y);
-			if (row.length() > this.width) {
-				this.width = row.length();
-			}
-			for (int x = 0; x < row.length(); x++) {
-				// the location of this square
-				Location loc = new Location(x, y);
-				
-				// the symbol at location (x, y)
-				char c = row.charAt(x);
-				if (c == ' ') {
-					continue;
-				} else if (c == '#') {
-					// there is a wall here
-					// make a Wall object and add it to your collection
-					this.walls.add(new Wall(loc));
-					
-					
-				} else if (c == '@') {
-					Player p = new Player(loc);
-					this.player = p;
-				} else if (c == '$') {
-					// there is a box here
-					// make a Box object and add it to your collection
-					this.boxes.add(new Box(loc));
-					
-				} else if (c == '.') {
-					// there is a storage site here
-					// make a Storage object and add it to your collection
-					this.storages.add(new Storage(loc));
-					
-				} else if (c == '+') {
-					Player p = new Player(loc);
-					this.player = p;
-					// there is also storage site here
-					// make a Storage object and add it to your collection
-					storages.add(new Storage(loc));
-					
-				} else if (c == '*') {
-					// there is a box and a storage site here
-					// make a Box object and a Storage object and add them 
-					//    to your collections
-					storages.add(new Storage(loc));
-					boxes.add(new Box(loc));
-					
-				}
-			}
+	/**
+	 * Initialize a board from the rows of a level, one string per row, using
+	 * the same symbols as a level file. This is how the levels of a pack read
+	 * by {@code sokoban.pack.PackReader} become boards.
+	 * 
+	 * @param rows the rows of the level
+	 */
+	public Board(List<String> rows) {
+		this(new LevelTemplate(rows));
+	}
+
+	/**
+	 * Initialize a board in the start position of the level of the specified
+	 * template. Only the boxes, the player and the box index are allocated;
+	 * everything else is shared with the template.
+	 * 
+	 * @param template the template of a level
+	 */
+	public Board(LevelTemplate template) {
+		this(template, template.startBoxes, template.startPlayer);
+		this.boxesOnStorage = template.startOnStorage;
+		this.boxesOnDeadSquares = template.startOnDeadSquares;
+		this.hash = template.startHash;
+	}
+
+	/**
+	 * Initializes a board of the specified template with boxes on the
+	 * specified cells and the player on the specified cell. The counts and the
+	 * hash are left to the caller.
+	 */
+	private Board(LevelTemplate template, int[] boxCells, int playerCell) {
+		this.template = template;
+		this.walls = template.walls;
+		this.storages = template.storages;
+		this.width = template.width;
+		this.height = template.height;
+		this.stride = template.stride;
+		this.cells = template.cells;
+		this.locations = template.locations;
+		this.steps = template.steps;
+		this.boxKeys = template.boxKeys;
+		this.playerKeys = template.playerKeys;
+		this.boxAt = new Box[this.cells.length];
+		this.boxes = new ArrayList<>(boxCells.length);
+		for (int cell : boxCells) {
+			Box b = new Box(this.locations[cell]);
+			this.boxes.add(b);
+			this.boxAt[cell] = b;
+		}
+		this.playerCell = playerCell;
+		this.player = new Player(this.locations[playerCell]);
+	}
+
+	/**
+	 * Returns a new board of the same level in the current position of this
+	 * board. The copy shares the template of this board and only allocates its
+	 * own boxes, player and box index; moves on one board do not affect the
+	 * other. The copy keeps a history of its own moves only if this board
+	 * keeps one, and starts with none.
+	 * 
+	 * @return a copy of this board
+	 */
+	public Board copy() {
+		int[] boxCells = new int[this.boxes.size()];
+		for (int i = 0; i < boxCells.length; i++) {
+			boxCells[i] = this.cellOf(this.boxes.get(i).location());
 		}
+		Board copy = new Board(this.template, boxCells, this.playerCell);
+		copy.boxesOnStorage = this.boxesOnStorage;
+		copy.boxesOnDeadSquares = this.boxesOnDeadSquares;
+		copy.hash = this.hash;
+		if (this.journal == null) {
+			copy.journal = null;
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the template of the level of this board, which holds its static
+	 * part.
+	 * 
+	 * @return the template of this board
+	 */
+	public LevelTemplate template() {
+		return this.template;
+	}
+
+	/**
+	 * Returns the number of cells in the cell index of this board. Valid cell
+	 * indexes are between {@code 0} and {@code cellCount() - 1}; this includes a
+	 * border of cells that lie outside of the board.
+	 * 
+	 * @return the number of cells in the cell index of this board
+	 */
+	public int cellCount() {
+		return this.cells.length;
+	}
+
+	/**
+	 * Returns the difference between the indexes of two vertically adjacent
+	 * cells.
+	 * 
+	 * @return the difference between the indexes of two vertically adjacent
+	 *         cells
+	 */
+	public int stride() {
+		return this.stride;
+	}
+
+	/**
+	 * Returns the index of the cell at the location (x, y), or -1 if the
+	 * location is outside of the board.
+	 * 
+	 * @param x the x-coordinate of the location
+	 * @param y the y-coordinate of the location
+	 * @return the index of the cell at the location, or -1 if the location is
+	 *         outside of the board
+	 */
+	public int cellOf(int x, int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			return -1;
+		}
+		return (y + 1) * this.stride + (x + 1);
+	}
+
+	/**
+	 * Returns the index of the cell at the specified location, or -1 if the
+	 * location is outside of the board.
+	 * 
+	 * @param loc a location
+	 * @return the index of the cell at the location, or -1 if the location is
+	 *         outside of the board
+	 */
+	public int cellOf(Location loc) {
+		return this.cellOf(loc.x(), loc.y());
+	}
+
+	/**
+	 * Returns the location of the specified cell. The same {@code Location}
+	 * object is returned every time the method is called with the same cell.
+	 * 
+	 * @param cell a cell index
+	 * @return the location of the cell
+	 */
+	public Location locationOf(int cell) {
+		return this.locations[cell];
+	}
+
+	/**
+	 * Returns the index of the cell adjacent to the specified cell in the
+	 * specified direction.
+	 * 
+	 * <p>
+	 * The adjacent cell of a cell on the board is always a valid cell index,
+	 * although it may lie outside of the board.
+	 * 
+	 * @param cell      a cell index
+	 * @param direction a direction
+	 * @return the index of the adjacent cell in the specified direction
+	 */
+	public int neighbour(int cell, Direction direction) {
+		return cell + this.steps[direction.ordinal()];
+	}
+
+	/**
+	 * Returns the index of the cell the player is on.
+	 * 
+	 * @return the index of the cell the player is on
+	 */
+	public int playerCell() {
+		return this.playerCell;
 	}
 
 	/**
@@ -159,7 +352,7 @@ public class Board {
 
 	/**
 	 * Returns a list of the walls in this board. The order of the walls is
-	 * unspecified in the returned list.
+	 * unspecified in the returned list, which cannot be modified.
 	 * 
 	 * @return a list of the walls in this board
 	 */
@@ -179,7 +372,8 @@ public class Board {
 
 	/**
 	 * Returns a list of the storage locations in this board. The order of the
-	 * storage locations is unspecified in the returned list.
+	 * storage locations is unspecified in the returned list, which cannot be
+	 * modified.
 	 * 
 	 * @return a list of the storage locations in this board
 	 */
@@ -206,12 +400,11 @@ public class Board {
 	 *         {@code null} if there is no such object
 	 */
 	public Box getBox(Location loc) {
-		for(int i = 0; i < this.boxes.size(); i++) {
-			if(this.boxes.get(i).location().equals(loc)){
-				return this.boxes.get(i);
-			}
+		int cell = this.cellOf(loc);
+		if (cell < 0) {
+			return null;
 		}
-		return null;
+		return this.boxAt[cell];
 	}
 
 	/**
@@ -224,20 +417,14 @@ public class Board {
 	 *         location, {@code false} otherwise
 	 */
 	public boolean isOccupied(Location loc) {
-		for(int i = 0; i < this.boxes.size(); i++) {
-			if(this.boxes.get(i).location().equals(loc)){
-				return true;
-			}
+		int cell = this.cellOf(loc);
+		if (cell < 0) {
+			return false;
 		}
-		for(int i = 0; i < this.walls.size(); i++) {
-			if(this.walls.get(i).location().equals(loc)){
-				return true;
-			}
-		}
-		if(this.player.location().equals(loc)) {
+		if (this.boxAt[cell] != null || (this.cells[cell] & WALL) != 0) {
 			return true;
 		}
-		return false;
+		return this.player.location().equals(loc);
 	}
 
 	/**
@@ -264,12 +451,8 @@ public class Board {
 	 *         {@code false} otherwise
 	 */
 	public boolean hasWall(Location loc) {
-		for(int i = 0; i < this.walls.size(); i++) {
-			if(this.walls.get(i).location().equals(loc)){
-				return true;
-			}
-		}
-		return false;
+		int cell = this.cellOf(loc);
+		return cell >= 0 && (this.cells[cell] & WALL) != 0;
 	}
 
 	/**
@@ -281,12 +464,7 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean hasBox(Location loc) {
-		for(int i = 0; i < this.boxes.size(); i++) {
-			if(this.boxes.get(i).location().equals(loc)){
-				return true;
-			}
-		}
-		return false;
+		return this.getBox(loc) != null;
 	}
 
 	/**
@@ -298,12 +476,8 @@ public class Board {
 	 *         {@code false} otherwise
 	 */
 	public boolean hasStorage(Location loc) {
-		for(int i = 0; i < this.storages.size(); i++) {
-			if(this.storages.get(i).location().equals(loc)){
-				return true;
-			}
-		}
-		return false;
+		int cell = this.cellOf(loc);
+		return cell >= 0 && (this.cells[cell] & STORAGE) != 0;
 	}
 
 	/**
@@ -321,6 +495,128 @@ public class Board {
 		return false;
 	}
 
+	/**
+	 * Returns the {@code Box} object on the specified cell, or {@code null} if
+	 * there is no such object.
+	 * 
+	 * @param cell a cell index
+	 * @return the box object on the cell, or {@code null} if there is no such
+	 *         object
+	 */
+	public Box getBox(int cell) {
+		return this.boxAt[cell];
+	}
+
+	/**
+	 * Returns {@code true} if there is a wall, player, or box on the specified
+	 * cell, or if the cell lies outside of the board, {@code false} otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell is occupied or outside of the board,
+	 *         {@code false} otherwise
+	 */
+	public boolean isOccupied(int cell) {
+		return (this.cells[cell] & (WALL | OUTSIDE)) != 0 || this.boxAt[cell] != null
+				|| cell == this.playerCell;
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell is on the board and is unoccupied
+	 * or has only a storage location, {@code false} otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell is on the board and is unoccupied or has
+	 *         only a storage location, {@code false} otherwise
+	 */
+	public boolean isFree(int cell) {
+		return !this.isOccupied(cell);
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell has a wall on it, {@code false}
+	 * otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell has a wall on it, {@code false} otherwise
+	 */
+	public boolean hasWall(int cell) {
+		return (this.cells[cell] & WALL) != 0;
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell has a box on it, {@code false}
+	 * otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell has a box on it, {@code false} otherwise
+	 */
+	public boolean hasBox(int cell) {
+		return this.boxAt[cell] != null;
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell has a storage location on it,
+	 * {@code false} otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell has a storage location on it,
+	 *         {@code false} otherwise
+	 */
+	public boolean hasStorage(int cell) {
+		return (this.cells[cell] & STORAGE) != 0;
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell has the player on it,
+	 * {@code false} otherwise.
+	 * 
+	 * @param cell a cell index
+	 * @return {@code true} if the cell has the player on it, {@code false}
+	 *         otherwise
+	 */
+	public boolean hasPlayer(int cell) {
+		return cell == this.playerCell;
+	}
+
+	/**
+	 * Returns {@code true} if the specified location is a dead square, that is, a
+	 * floor location from which a box can never be pushed to a storage location,
+	 * whatever the other boxes do, {@code false} otherwise.
+	 * 
+	 * <p>
+	 * Dead squares are computed once when the board is built, so pushing a box
+	 * onto one can be recognized in constant time.
+	 * 
+	 * @param loc the location to check
+	 * @return {@code true} if the location is a dead square, {@code false}
+	 *         otherwise
+	 */
+	public boolean isDeadSquare(Location loc) {
+		int cell = this.cellOf(loc);
+		return cell >= 0 && this.isDeadSquare(cell);
+	}
+
+	/**
+	 * Returns {@code true} if the cell with the specified index is a dead square,
+	 * {@code false} otherwise.
+	 * 
+	 * @param cell the index of a cell
+	 * @return {@code true} if the cell is a dead square, {@code false} otherwise
+	 */
+	public boolean isDeadSquare(int cell) {
+		return (this.cells[cell] & DEAD) != 0;
+	}
+
+	/**
+	 * Returns the number of boxes on dead squares. The level cannot be solved
+	 * from the current position unless this number is zero.
+	 * 
+	 * @return the number of boxes on dead squares
+	 */
+	public int boxesOnDeadSquares() {
+		return this.boxesOnDeadSquares;
+	}
+
 	/**
 	 * Returns {@code true} if every storage location has a box on it, {@code false}
 	 * otherwise.
@@ -329,79 +625,307 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean isSolved() {
-		for(int s = 0; s < this.storages.size(); s++) {
-			if(!this.hasBox(this.storages.get(s).location())){
-				return false;
-			}
-		}
+		return this.boxesOnStorage == this.storages.size();
+	}
 
-		return true;
+	/**
+	 * Returns the number of storage locations that have a box on them.
+	 * 
+	 * @return the number of storage locations that have a box on them
+	 */
+	public int boxesOnGoals() {
+		return this.boxesOnStorage;
+	}
+
+	/**
+	 * Returns the number of storage locations that do not have a box on them.
+	 * The level is solved when this number is zero.
+	 * 
+	 * @return the number of storage locations that do not have a box on them
+	 */
+	public int remainingGoals() {
+		return this.storages.size() - this.boxesOnStorage;
 	}
 	
-	private boolean moveMultipleBoxes(Box box, String direction, List<Box> boxLine) {
-		if(direction == "left") {
-			boxLine.add(box);
-			if(this.hasBox(box.location().left())) {
-				moveMultipleBoxes(getBox(box.location().left()), direction, boxLine);
-			}else {
-				if(this.isOccupied(box.location().left())){
-					return false;
-				}else if(this.isFree(box.location().left())) {
-					for(int i = 0; i < boxLine.size(); i++) {
-						boxLine.get(i).moveLeft();
-					}
-					this.player.moveLeft();
-				}
+	/**
+	 * Moves the player to the adjacent location in the specified direction if
+	 * possible. If there are boxes in a line in front of the player then the
+	 * whole line is pushed one location in that direction, provided that the
+	 * location after the last box of the line is free.
+	 * 
+	 * <p>
+	 * Returns {@code false} if the player cannot move in the specified direction
+	 * (leaving the player and the boxes unchanged).
+	 * 
+	 * <p>
+	 * A move that is made is added to the history of the board, if it keeps
+	 * one, and the moves that could have been redone are forgotten.
+	 * 
+	 * <p>
+	 * The move is resolved on the cell index without allocating any objects;
+	 * the history only allocates when it needs more room.
+	 * 
+	 * @param direction the direction to move the player in
+	 * @return true if the player is moved, false otherwise
+	 */
+	public boolean movePlayer(Direction direction) {
+		int boxes = this.move(this.steps[direction.ordinal()]);
+		if (boxes < 0) {
+			return false;
+		}
+		if (this.journal != null) {
+			this.journal.record(direction.ordinal(), boxes);
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the player one step, pushing the line of boxes in front of it, and
+	 * returns the number of boxes pushed, or -1 if the player cannot move.
+	 */
+	private int move(int step) {
+		int next = this.playerCell + step;
+		int boxes = 0;
+		if (this.boxAt[next] != null) {
+			int end = next + step;
+			boxes = 1;
+			while (this.boxAt[end] != null) {
+				end += step;
+				boxes++;
 			}
-		}else if(direction == "right") {
-			boxLine.add(box);
-			if(this.hasBox(box.location().right())) {
-				moveMultipleBoxes(getBox(box.location().right()), direction, boxLine);
-			}else {
-				if(this.isOccupied(box.location().right())){
-					return false;
-				}else if(this.isFree(box.location().right())) {
-					for(int i = 0; i < boxLine.size(); i++) {
-						boxLine.get(i).moveRight();
-					}
-					this.player.moveRight();
-				}
+			if (this.isOccupied(end)) {
+				return -1;
 			}
-			
-		}else if(direction == "up") {
-			boxLine.add(box);
-			if(this.hasBox(box.location().up())) {
-				moveMultipleBoxes(getBox(box.location().up()), direction, boxLine);
-			}else {
-				if(this.isOccupied(box.location().up())){
-					return false;
-				}else if(this.isFree(box.location().up())) {
-					for(int i = 0; i < boxLine.size(); i++) {
-						boxLine.get(i).moveUp();
-					}
-					this.player.moveUp();
-				}
+			// shift the line one cell, starting with the box furthest away
+			for (int from = end - step; from != this.playerCell; from -= step) {
+				Box b = this.boxAt[from];
+				this.boxAt[from + step] = b;
+				b.setLocation(this.locations[from + step]);
 			}
-			
-		}else if(direction == "down") {
-			boxLine.add(box);
-			if(this.hasBox(box.location().down())) {
-				moveMultipleBoxes(getBox(box.location().down()), direction, boxLine);
-			}else {
-				if(this.isOccupied(box.location().down())){
-					return false;
-				}else if(this.isFree(box.location().down())) {
-					for(int i = 0; i < boxLine.size(); i++) {
-						boxLine.get(i).moveDown();
-					}
-					this.player.moveDown();
-				}
+			this.boxAt[next] = null;
+			this.boxMoved(next, end);
+		} else if (this.isOccupied(next)) {
+			return -1;
+		}
+		this.hash ^= this.playerKeys[this.playerCell] ^ this.playerKeys[next];
+		this.playerCell = next;
+		this.player.setLocation(this.locations[next]);
+		return boxes;
+	}
+
+	/**
+	 * Returns the cell of the last box of the line of boxes that starts on the
+	 * specified cell and goes in the specified direction, which is the line
+	 * {@code movePlayer} pushes when the player steps onto the cell. It must
+	 * be found before the push: once the line has moved, a box that was just
+	 * past it may be next to it and would be taken for a part of it.
+	 * 
+	 * @param first     the cell of the first box of the line
+	 * @param direction the direction of the line
+	 * @return the cell of the last box of the line
+	 */
+	public int lineEnd(int first, Direction direction) {
+		int step = this.steps[direction.ordinal()];
+		int last = first;
+		while (this.boxAt[last + step] != null) {
+			last += step;
+		}
+		return last;
+	}
+
+	/**
+	 * Updates the counts and the hash after a line of boxes has moved so that
+	 * the cell from lost its box and the cell to gained one; only the first
+	 * and the last cell of a line change.
+	 */
+	private void boxMoved(int from, int to) {
+		if ((this.cells[from] & STORAGE) != 0) {
+			this.boxesOnStorage--;
+		}
+		if ((this.cells[to] & STORAGE) != 0) {
+			this.boxesOnStorage++;
+		}
+		if ((this.cells[from] & DEAD) != 0) {
+			this.boxesOnDeadSquares--;
+		}
+		if ((this.cells[to] & DEAD) != 0) {
+			this.boxesOnDeadSquares++;
+		}
+		this.hash ^= this.boxKeys[from] ^ this.boxKeys[to];
+	}
+
+	/**
+	 * Takes back the last move of the history: the player steps back and, if
+	 * the move pushed a line of boxes, pulls the line back with it. Returns
+	 * {@code false}, leaving the board unchanged, if there is no move to undo.
+	 * 
+	 * <p>
+	 * A move is undone in constant time for a push of one box, from the
+	 * history alone, without allocating any objects.
+	 * 
+	 * @return {@code true} if a move is undone, {@code false} otherwise
+	 */
+	public boolean undo() {
+		if (this.journal == null || !this.journal.canUndo()) {
+			return false;
+		}
+		int move = this.journal.undo();
+		int step = this.steps[move & 3];
+		int boxes = move >>> 2;
+		int back = this.playerCell - step;
+		if (boxes > 0) {
+			int last = this.playerCell + boxes * step;
+			// shift the line back one cell, starting with the box nearest the player
+			for (int to = this.playerCell; to != last; to += step) {
+				Box b = this.boxAt[to + step];
+				this.boxAt[to] = b;
+				b.setLocation(this.locations[to]);
 			}
+			this.boxAt[last] = null;
+			this.boxMoved(last, this.playerCell);
 		}
-		
-		return false;
+		this.hash ^= this.playerKeys[this.playerCell] ^ this.playerKeys[back];
+		this.playerCell = back;
+		this.player.setLocation(this.locations[back]);
+		return true;
 	}
-	
+
+	/**
+	 * Makes again the last move taken back by {@code undo}. Returns
+	 * {@code false}, leaving the board unchanged, if there is no move to redo,
+	 * which is also the case once a new move has been made since.
+	 * 
+	 * @return {@code true} if a move is redone, {@code false} otherwise
+	 */
+	public boolean redo() {
+		if (this.journal == null || !this.journal.canRedo()) {
+			return false;
+		}
+		int move = this.journal.redo();
+		if (this.move(this.steps[move & 3]) != move >>> 2) {
+			throw new IllegalStateException("the board has changed since the move was undone");
+		}
+		return true;
+	}
+
+	/**
+	 * Returns {@code true} if there is a move that {@code undo} can take back.
+	 * 
+	 * @return {@code true} if there is a move to undo, {@code false} otherwise
+	 */
+	public boolean canUndo() {
+		return this.journal != null && this.journal.canUndo();
+	}
+
+	/**
+	 * Returns {@code true} if there is a move that {@code redo} can make again.
+	 * 
+	 * @return {@code true} if there is a move to redo, {@code false} otherwise
+	 */
+	public boolean canRedo() {
+		return this.journal != null && this.journal.canRedo();
+	}
+
+	/**
+	 * Returns the number of moves in the history that lead from the start
+	 * position to the current position, which is the number of moves that can
+	 * be undone.
+	 * 
+	 * @return the number of moves made and not undone
+	 */
+	public int moveCount() {
+		return this.journal == null ? 0 : this.journal.position();
+	}
+
+	/**
+	 * Sets whether this board keeps a history of its moves for undo and redo.
+	 * A board keeps one from the start. Turning the history off forgets it;
+	 * boards that make a great many moves and never undo them, such as those
+	 * of benchmarks, turn it off so that their moves never allocate.
+	 * 
+	 * @param enabled {@code true} to keep a history, {@code false} otherwise
+	 */
+	public void setHistoryEnabled(boolean enabled) {
+		if (!enabled) {
+			this.journal = null;
+		} else if (this.journal == null) {
+			this.journal = new MoveJournal();
+		}
+	}
+
+	/**
+	 * Forgets the history of this board, so that the current position becomes
+	 * the first one that moves can be undone to.
+	 */
+	public void clearHistory() {
+		if (this.journal != null) {
+			this.journal.clear();
+		}
+	}
+
+	/**
+	 * Returns a 64-bit hash of the current position, that is, of the locations
+	 * of the boxes and of the player. Boards of the same level in the same
+	 * position have equal hashes; different positions have different hashes
+	 * with very high probability.
+	 * 
+	 * <p>
+	 * The hash is maintained incrementally as the player moves, so this method
+	 * runs in constant time.
+	 * 
+	 * @return a hash of the current position
+	 */
+	public long stateHash() {
+		return this.hash;
+	}
+
+	/**
+	 * Returns the Zobrist key of a box on the specified cell. The hash of a
+	 * position, as returned by {@code stateHash}, is the exclusive or of the
+	 * keys of its boxes and of its player.
+	 * 
+	 * @param cell a cell index
+	 * @return the Zobrist key of a box on the cell
+	 */
+	public long boxKey(int cell) {
+		return this.boxKeys[cell];
+	}
+
+	/**
+	 * Returns the Zobrist key of the player on the specified cell.
+	 * 
+	 * @param cell a cell index
+	 * @return the Zobrist key of the player on the cell
+	 */
+	public long playerKey(int cell) {
+		return this.playerKeys[cell];
+	}
+
+	/**
+	 * Returns a 64-bit hash of the current position in which the player
+	 * location is replaced by the top-left cell that the player can reach
+	 * without pushing a box. Two positions have the same normalized hash when
+	 * they have the same boxes and the player of one can walk to the player of
+	 * the other, which makes the hash suitable as a key of a transposition
+	 * table.
+	 * 
+	 * <p>
+	 * This method flood fills the region of the player, which takes time
+	 * proportional to the size of that region; it does not allocate any
+	 * objects.
+	 * 
+	 * @return a hash of the current position with the player normalized to its
+	 *         reachable region
+	 */
+	public long normalizedHash() {
+		if (this.reach == null) {
+			this.reach = new Reachability(this);
+		}
+		this.reach.compute();
+		int top = this.reach.topLeft();
+		return this.hash ^ this.playerKeys[this.playerCell] ^ this.playerKeys[top];
+	}
+
 	/**
 	 * Moves the player to the left adjacent location if possible. If there is a box
 	 * in the left adjacent location then the box is pushed to the adjacent location
@@ -415,16 +939,7 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean movePlayerLeft() {
-		if(this.isFree(this.player.location().left())) {
-			this.player.moveLeft();
-			return true;
-		}else if(this.hasBox(this.player.location().left())){
-			List<Box> boxLine = new ArrayList<>();
-			Box leftBox = this.getBox(this.player.location().left());
-			this.moveMultipleBoxes(leftBox, "left", boxLine);
-			return true;
-		}
-		return false;
+		return this.movePlayer(Direction.LEFT);
 	}
 
 	/**
@@ -440,16 +955,7 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean movePlayerRight() {
-		if(this.isFree(player.location().right())) {
-			this.player.moveRight();
-			return true;
-		}else if(this.hasBox(this.player.location().right())){
-			List<Box> boxLine = new ArrayList<>();
-			Box rightBox = this.getBox(this.player.location().right());
-			this.moveMultipleBoxes(rightBox, "right", boxLine);
-			return true;
-		}
-		return false;
+		return this.movePlayer(Direction.RIGHT);
 	}
 
 	/**
@@ -465,16 +971,7 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean movePlayerUp() {
-		if(this.isFree(this.player.location().up())) {
-			this.player.moveUp();
-			return true;
-		}else if(this.hasBox(this.player.location().up())){
-			List<Box> boxLine = new ArrayList<>();
-			Box upBox = this.getBox(this.player.location().up());
-			this.moveMultipleBoxes(upBox, "up", boxLine);
-			return true;
-		}
-		return false;
+		return this.movePlayer(Direction.UP);
 	}
 
 	/**
@@ -490,16 +987,7 @@ public class Board {
 	 *         otherwise
 	 */
 	public boolean movePlayerDown() {
-		if(this.isFree(this.player.location().down())) {
-			this.player.moveDown();
-			return true;
-		}else if(this.hasBox(this.player.location().down())){
-			List<Box> boxLine = new ArrayList<>();
-			Box downBox = this.getBox(this.player.location().down());
-			this.moveMultipleBoxes(downBox, "down", boxLine);
-			return true;
-		}
-		return false;
+		return this.movePlayer(Direction.DOWN);
 	}
 	
 	
@@ -515,28 +1003,28 @@ public class Board {
 		StringBuilder b = new StringBuilder();
 		for (int y = 0; y < this.height; y++) {
 			for (int x = 0; x < this.width; x++) {
-				Location loc = new Location(x, y);
-				if (this.isFree(loc) ) {
-					if (this.hasStorage(loc)) {
+				int cell = (y + 1) * this.stride + (x + 1);
+				if (this.isFree(cell)) {
+					if (this.hasStorage(cell)) {
 						b.append(".");					
 					}
 					else {
 						b.append(" ");
 					}
 				}
-				else if (this.hasWall(loc)) {
+				else if (this.hasWall(cell)) {
 					b.append("#");
 				}
-				else if (this.hasBox(loc)) {
-					if (this.hasStorage(loc)) {
+				else if (this.hasBox(cell)) {
+					if (this.hasStorage(cell)) {
 						b.append("*");
 					}
 					else {
 						b.append("$");
 					}
 				}
-				else if (this.hasPlayer(loc)) {
-					if (this.hasStorage(loc)) {
+				else if (this.hasPlayer(cell)) {
+					if (this.hasStorage(cell)) {
 						b.append("+");
 					}
 					else {
@@ -38,6 +38,16 @@ public class Box {
 		return false;
 	}
 
+	/**
+	 * Sets the location of this box without checking adjacency. Used by
+	 * {@code Board}, which has already checked that the push is legal.
+	 * 
+	 * @param loc the new location of this box
+	 */
+	void setLocation(Location loc) {
+		this.loc = loc;
+	}
+
 	/**
 	 * Move the box to the adjacent location to the left, changing
 	 * the box's location.
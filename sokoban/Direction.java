@@ -0,0 +1,120 @@
+package sokoban;
+
+/**
+ * The four directions in which the player can move in the game Sokoban.
+ *
+ * <p>
+ * Each direction carries the offset {@code (dx, dy)} that takes a location to
+ * the adjacent location in that direction. As in {@code Location}, the positive
+ * x-direction points to the right and the positive y-direction points
+ * downwards.
+ */
+public enum Direction {
+	LEFT(-1, 0, 'l'),
+	RIGHT(1, 0, 'r'),
+	UP(0, -1, 'u'),
+	DOWN(0, 1, 'd');
+
+	private static final Direction[] VALUES = values();
+
+	private final int dx;
+	private final int dy;
+	private final char symbol;
+
+	private Direction(int dx, int dy, char symbol) {
+		this.dx = dx;
+		this.dy = dy;
+		this.symbol = symbol;
+	}
+
+	/**
+	 * Returns the change in the x-coordinate of a move in this direction.
+	 *
+	 * @return the change in the x-coordinate of a move in this direction
+	 */
+	public int dx() {
+		return this.dx;
+	}
+
+	/**
+	 * Returns the change in the y-coordinate of a move in this direction.
+	 *
+	 * @return the change in the y-coordinate of a move in this direction
+	 */
+	public int dy() {
+		return this.dy;
+	}
+
+	/**
+	 * Returns the lowercase letter for this direction used in the usual
+	 * Sokoban move notation ({@code l}, {@code r}, {@code u}, or {@code d}).
+	 *
+	 * @return the lowercase letter for this direction
+	 */
+	public char symbol() {
+		return this.symbol;
+	}
+
+	/**
+	 * Returns the direction opposite to this direction.
+	 *
+	 * @return the direction opposite to this direction
+	 */
+	public Direction opposite() {
+		switch (this) {
+		case LEFT:
+			return RIGHT;
+		case RIGHT:
+			return LEFT;
+		case UP:
+			return DOWN;
+		default:
+			return UP;
+		}
+	}
+
+	/**
+	 * Returns the location adjacent to the specified location in this
+	 * direction.
+	 *
+	 * @param loc a location
+	 * @return the location adjacent to the specified location in this direction
+	 */
+	public Location from(Location loc) {
+		return new Location(loc.x() + this.dx, loc.y() + this.dy);
+	}
+
+	/**
+	 * Returns the direction with the specified ordinal. Unlike
+	 * {@code values()[index]} this does not copy the array of directions.
+	 *
+	 * @param index the ordinal of a direction
+	 * @return the direction with the specified ordinal
+	 */
+	public static Direction of(int index) {
+		return VALUES[index];
+	}
+
+	/**
+	 * Returns the direction whose letter in the usual Sokoban move notation is
+	 * the specified character, ignoring case, or {@code null} if there is no
+	 * such direction.
+	 *
+	 * @param c a move letter
+	 * @return the direction with the specified letter, or {@code null}
+	 */
+	public static Direction fromSymbol(char c) {
+		switch (Character.toLowerCase(c)) {
+		case 'l':
+			return LEFT;
+		case 'r':
+			return RIGHT;
+		case 'u':
+			return UP;
+		case 'd':
+			return DOWN;
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package sokoban;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import sokoban.solver.FreezeDeadlock;
+import sokoban.solver.Maze;
+
+/**
+ * An ad-hoc check of the way {@code SokobanGUI} keeps its
+ * {@code FreezeDeadlock} up to date, by moving the pushed line of boxes in the
+ * checker after every push.
+ *
+ * <p>
+ * The check plays random move sequences on the bundled levels, updates a
+ * checker on every push the way {@code SokobanGUI} does, and compares the
+ * freeze deadlocks it finds with those of a checker loaded from the board. A
+ * fixed push with a box just past the pushed line comes first: the end of the
+ * line must be found before the push, while that box is not yet next to it.
+ */
+public class FreezeCheck {
+
+	private static final int SEQUENCES = 50;
+	private static final int MOVES = 2_000;
+
+	/**
+	 * Compares the freeze deadlocks of the boxes of the board found by the
+	 * checker, which has been updated push by push, with those found by the
+	 * second checker once it is loaded from the board.
+	 */
+	private static void check(FreezeDeadlock freeze, FreezeDeadlock loaded, Board board, String where) {
+		loaded.load(board);
+		for (Box box : board.getBoxes()) {
+			int cell = board.cellOf(box.location());
+			if (freeze.isDeadlocked(cell) != loaded.isDeadlocked(cell)) {
+				throw new AssertionError(where + ": freeze checker out of sync for the box at " + box.location());
+			}
+		}
+	}
+
+	/**
+	 * Pushes the line of boxes in front of the player of the specified level
+	 * in the specified direction, updating a freeze checker as
+	 * {@code SokobanGUI} does, and checks the checker afterwards.
+	 */
+	private static void checkPush(List<String> rows, Direction d) {
+		Board board = new Board(rows);
+		String name = String.join("|", rows);
+		FreezeDeadlock freeze = new FreezeDeadlock(new Maze(board));
+		freeze.load(board);
+		int ahead = board.neighbour(board.playerCell(), d);
+		int last = board.lineEnd(ahead, d);
+		if (!board.movePlayer(d)) {
+			throw new AssertionError(name + ": push failed");
+		}
+		freeze.move(ahead, board.neighbour(last, d));
+		check(freeze, new FreezeDeadlock(new Maze(board)), board, name);
+	}
+
+	public static void main(String[] args) throws IOException {
+		// a box just past the pushed line must not be taken for its end
+		checkPush(List.of("########", "#@$ $ .#", "########"), Direction.RIGHT);
+		long pushes = 0;
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (int seq = 0; seq < SEQUENCES; seq++) {
+				Random rng = new Random(level * 1_000_003L + seq);
+				Board board = new Board(filename);
+				FreezeDeadlock freeze = new FreezeDeadlock(new Maze(board));
+				freeze.load(board);
+				FreezeDeadlock loaded = new FreezeDeadlock(new Maze(board));
+				for (int i = 0; i < MOVES; i++) {
+					Direction d = Direction.of(rng.nextInt(4));
+					int ahead = board.neighbour(board.playerCell(), d);
+					boolean push = board.hasBox(ahead);
+					int last = push ? board.lineEnd(ahead, d) : ahead;
+					if (board.movePlayer(d) && push) {
+						pushes++;
+						freeze.move(ahead, board.neighbour(last, d));
+						check(freeze, loaded, board, filename + ", sequence " + seq + ", move " + i);
+					}
+				}
+			}
+		}
+		System.out.println("OK: " + (8 * SEQUENCES) + " sequences, " + pushes + " pushes");
+	}
+}
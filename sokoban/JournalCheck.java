@@ -0,0 +1,90 @@
+package sokoban;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An ad-hoc check of the undo and redo history of {@code Board} on random
+ * move sequences.
+ *
+ * <p>
+ * At the end of every sequence the check undoes all the moves, which must go
+ * back through the same positions, with the same hashes, to the start, and
+ * redoes them all again. A new move after an undo must forget the move that
+ * could have been redone.
+ */
+public class JournalCheck {
+
+	private static final int SEQUENCES = 200;
+	private static final int MOVES = 2_000;
+
+	private static void check(boolean condition, String filename, int sequence, int move, String what) {
+		if (!condition) {
+			throw new AssertionError(filename + ", sequence " + sequence + ", move " + move + ": " + what);
+		}
+	}
+
+	private static void checkHistory(Board board, List<String> positions, Map<String, Long> hashes, int startGoals,
+			int startDead, String filename, int sequence) {
+		int moves = positions.size() - 1;
+		check(board.moveCount() == moves, filename, sequence, moves, board.moveCount() + " moves in the history");
+		for (int i = moves; i > 0; i--) {
+			check(board.undo(), filename, sequence, i, "undo failed");
+			String position = positions.get(i - 1);
+			check(board.toString().equals(position), filename, sequence, i, "undo reached\n" + board + "expected\n" + position);
+			check(board.stateHash() == hashes.get(position), filename, sequence, i, "state hash differs after undo");
+		}
+		check(!board.canUndo() && !board.undo(), filename, sequence, 0, "undo past the start");
+		check(board.boxesOnGoals() == startGoals && board.boxesOnDeadSquares() == startDead, filename, sequence, 0,
+				"box counts differ after undoing every move");
+		for (Box box : board.getBoxes()) {
+			check(board.getBox(box.location()) == box, filename, sequence, 0, "box index out of sync after undo");
+		}
+		for (int i = 1; i <= moves; i++) {
+			check(board.redo(), filename, sequence, i, "redo failed");
+			check(board.toString().equals(positions.get(i)), filename, sequence, i, "redo reached another position");
+		}
+		check(!board.canRedo() && !board.redo(), filename, sequence, moves, "redo past the end");
+		if (moves > 0) {
+			// a new move after an undo forgets the undone move
+			board.undo();
+			for (Direction d : Direction.values()) {
+				if (board.movePlayer(d)) {
+					break;
+				}
+			}
+			check(!board.canRedo() && board.moveCount() == moves, filename, sequence, moves,
+					"a new move kept the moves to redo");
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		long moves = 0;
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (int seq = 0; seq < SEQUENCES; seq++) {
+				Random rng = new Random(level * 1_000_003L + seq);
+				Board board = new Board(filename);
+				Map<String, Long> hashes = new HashMap<>();
+				List<String> positions = new ArrayList<>();
+				positions.add(board.toString());
+				hashes.put(board.toString(), board.stateHash());
+				int startGoals = board.boxesOnGoals();
+				int startDead = board.boxesOnDeadSquares();
+				for (int i = 0; i < MOVES; i++) {
+					if (board.movePlayer(Direction.of(rng.nextInt(4)))) {
+						positions.add(board.toString());
+						hashes.putIfAbsent(board.toString(), board.stateHash());
+					}
+				}
+				moves += positions.size() - 1;
+				checkHistory(board, positions, hashes, startGoals, startDead, filename, seq);
+			}
+		}
+		System.out.println("OK: " + (8 * SEQUENCES) + " sequences, " + moves + " moves undone and redone");
+	}
+}
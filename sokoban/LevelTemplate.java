@@ -0,0 +1,321 @@
+package sokoban;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The static part of a Sokoban level, parsed and analysed once and shared by
+ * every {@code Board} of the level.
+ *
+ * <p>
+ * A template holds what does not change while the level is played: the size
+ * of the level, its walls and storage locations, the cell index with the type
+ * of every cell and its dead squares, the {@code Location} of every cell, the
+ * Zobrist keys of the cells, and the start position of the boxes and the
+ * player. A {@code Board} made from a template shares all of this and only
+ * allocates its own boxes, player and box index, so that restarting a level
+ * or making a board for a solver takes time in the number of boxes rather
+ * than reading and analysing the level again.
+ *
+ * <p>
+ * {@code forFile} keeps the templates of the level files it has read in a
+ * cache, and reads a file again only if it has changed since.
+ *
+ * <p>
+ * A template is immutable and can be shared between threads. Its arrays are
+ * read by {@code Board} directly and must never be written after the
+ * template is built.
+ */
+public final class LevelTemplate {
+
+	/*
+	 * The bits of the type of a cell.
+	 */
+	static final byte WALL = 1;
+	static final byte STORAGE = 2;
+	static final byte OUTSIDE = 4;
+	static final byte DEAD = 8;
+
+	/**
+	 * A cached template with the size and modification time its file had when
+	 * it was read.
+	 */
+	private static final class Cached {
+		final LevelTemplate template;
+		final long size;
+		final long modified;
+
+		Cached(LevelTemplate template, long size, long modified) {
+			this.template = template;
+			this.size = size;
+			this.modified = modified;
+		}
+	}
+
+	private static final Map<String, Cached> CACHE = new ConcurrentHashMap<>();
+
+	final int width;
+	final int height;
+	final int stride;
+	final byte[] cells;
+	final Location[] locations;
+	final int[] steps;
+	final List<Wall> walls;
+	final List<Storage> storages;
+	final long[] boxKeys;
+	final long[] playerKeys;
+
+	// the start position
+	final int[] startBoxes;
+	final int startPlayer;
+	final int startOnStorage;
+	final int startOnDeadSquares;
+	final long startHash;
+
+	/**
+	 * Initializes the template of the level with the specified rows, one string
+	 * per row, using the symbols of a level file. The height of the level is
+	 * the number of rows and its width the length of the longest row.
+	 *
+	 * @param rows the rows of the level
+	 */
+	public LevelTemplate(List<String> rows) {
+		this.height = rows.size();
+		int width = 0;
+		for (String row : rows) {
+			width = Math.max(width, row.length());
+		}
+		this.width = width;
+		this.stride = this.width + 2;
+		int size = this.stride * (this.height + 2);
+		this.cells = new byte[size];
+		this.locations = new Location[size];
+		this.steps = new int[4];
+		for (Direction d : Direction.values()) {
+			this.steps[d.ordinal()] = d.dx() + d.dy() * this.stride;
+		}
+		for (int cell = 0; cell < size; cell++) {
+			int x = cell % this.stride - 1;
+			int y = cell / this.stride - 1;
+			this.locations[cell] = new Location(x, y);
+			if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+				this.cells[cell] = OUTSIDE;
+			}
+		}
+		List<Wall> walls = new ArrayList<>();
+		List<Storage> storages = new ArrayList<>();
+		int[] boxes = new int[size];
+		int boxCount = 0;
+		int player = -1;
+		for (int y = 0; y < this.height; y++) {
+			String row = rows.get(y);
+			for (int x = 0; x < row.length(); x++) {
+				int cell = (y + 1) * this.stride + (x + 1);
+				Location loc = this.locations[cell];
+				char c = row.charAt(x);
+				if (c == '#') {
+					walls.add(new Wall(loc));
+					this.cells[cell] |= WALL;
+				} else if (c == '@') {
+					player = cell;
+				} else if (c == '$') {
+					boxes[boxCount++] = cell;
+				} else if (c == '.') {
+					storages.add(new Storage(loc));
+					this.cells[cell] |= STORAGE;
+				} else if (c == '+') {
+					player = cell;
+					storages.add(new Storage(loc));
+					this.cells[cell] |= STORAGE;
+				} else if (c == '*') {
+					storages.add(new Storage(loc));
+					this.cells[cell] |= STORAGE;
+					boxes[boxCount++] = cell;
+				}
+			}
+		}
+		if (player < 0) {
+			throw new IllegalArgumentException("the level has no player");
+		}
+		this.walls = Collections.unmodifiableList(walls);
+		this.storages = Collections.unmodifiableList(storages);
+		this.startBoxes = Arrays.copyOf(boxes, boxCount);
+		this.startPlayer = player;
+		int onStorage = 0;
+		for (int cell : this.startBoxes) {
+			if ((this.cells[cell] & STORAGE) != 0) {
+				onStorage++;
+			}
+		}
+		this.startOnStorage = onStorage;
+		this.startOnDeadSquares = this.markDeadSquares();
+		this.boxKeys = new long[size];
+		this.playerKeys = new long[size];
+		this.startHash = this.buildHashKeys();
+	}
+
+	/**
+	 * Returns the template of the level in the file with the specified
+	 * filename in the {@code src/sokoban} directory, from the cache if the file
+	 * has not changed since it was last read.
+	 *
+	 * @param filename the filename of the level
+	 * @return the template of the level
+	 * @throws IOException if the level file cannot be read
+	 */
+	public static LevelTemplate forFile(String filename) throws IOException {
+		Path path = FileSystems.getDefault().getPath("src", "sokoban", filename);
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long size = attributes.size();
+		long modified = attributes.lastModifiedTime().toMillis();
+		Cached cached = CACHE.get(filename);
+		if (cached != null && cached.size == size && cached.modified == modified) {
+			return cached.template;
+		}
+		LevelTemplate template = new LevelTemplate(Files.readAllLines(path));
+		CACHE.put(filename, new Cached(template, size, modified));
+		return template;
+	}
+
+	/**
+	 * Marks the dead squares of the level and returns the number of boxes of
+	 * the start position on them.
+	 *
+	 * <p>
+	 * Only the floor matters: the cells the player can reach when the boxes are
+	 * ignored, and the cells of the boxes. A box can be pushed from a floor cell
+	 * to a storage location, ignoring the other boxes, exactly when it can be
+	 * pulled from the storage location to the cell, so the floor cells that are
+	 * not dead are found by pulling a box backwards from every storage location.
+	 */
+	private int markDeadSquares() {
+		int size = this.cells.length;
+		boolean[] floor = new boolean[size];
+		int[] queue = new int[size];
+		int tail = 0;
+		floor[this.startPlayer] = true;
+		queue[tail++] = this.startPlayer;
+		for (int head = 0; head < tail; head++) {
+			for (int step : this.steps) {
+				int n = queue[head] + step;
+				if (!floor[n] && (this.cells[n] & (WALL | OUTSIDE)) == 0) {
+					floor[n] = true;
+					queue[tail++] = n;
+				}
+			}
+		}
+		for (int cell : this.startBoxes) {
+			floor[cell] = true;
+		}
+		boolean[] live = new boolean[size];
+		tail = 0;
+		for (int cell = 0; cell < size; cell++) {
+			if (floor[cell] && (this.cells[cell] & STORAGE) != 0) {
+				live[cell] = true;
+				queue[tail++] = cell;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			for (int step : this.steps) {
+				// the player stands on to - step and walks on to to - 2 * step
+				int to = queue[head] - step;
+				if (!live[to] && floor[to] && floor[to - step]) {
+					live[to] = true;
+					queue[tail++] = to;
+				}
+			}
+		}
+		for (int cell = 0; cell < size; cell++) {
+			if (floor[cell] && !live[cell]) {
+				this.cells[cell] |= DEAD;
+			}
+		}
+		int onDead = 0;
+		for (int cell : this.startBoxes) {
+			if ((this.cells[cell] & DEAD) != 0) {
+				onDead++;
+			}
+		}
+		return onDead;
+	}
+
+	/**
+	 * Generates the Zobrist keys of the cells and returns the hash of the start
+	 * position.
+	 */
+	private long buildHashKeys() {
+		int size = this.cells.length;
+		long seed = mix(this.width * 31L + this.height);
+		for (int cell = 0; cell < size; cell++) {
+			seed = mix(seed ^ (this.cells[cell] & ~DEAD));
+		}
+		for (int cell = 0; cell < size; cell++) {
+			seed += 0x9E3779B97F4A7C15L;
+			this.boxKeys[cell] = mix(seed);
+			seed += 0x9E3779B97F4A7C15L;
+			this.playerKeys[cell] = mix(seed);
+		}
+		long hash = this.playerKeys[this.startPlayer];
+		for (int cell : this.startBoxes) {
+			hash ^= this.boxKeys[cell];
+		}
+		return hash;
+	}
+
+	/**
+	 * The finalizer of the SplitMix64 generator; scrambles the bits of a long.
+	 *
+	 * @param z a long value
+	 * @return the scrambled value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the width of the level.
+	 *
+	 * @return the width of the level
+	 */
+	public int width() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the height of the level.
+	 *
+	 * @return the height of the level
+	 */
+	public int height() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the number of boxes of the level.
+	 *
+	 * @return the number of boxes
+	 */
+	public int boxCount() {
+		return this.startBoxes.length;
+	}
+
+	/**
+	 * Returns a new board in the start position of the level.
+	 *
+	 * @return a new board of the level
+	 */
+	public Board newBoard() {
+		return new Board(this);
+	}
+}
@@ -0,0 +1,135 @@
+package sokoban;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * An ad-hoc benchmark for the move engine of {@code Board}.
+ *
+ * <p>
+ * The benchmark plays a long random walk on every bundled level and reports
+ * the time and the number of bytes allocated per move, separately for moves
+ * that only walk and moves that push a box. After every move it also
+ * recomputes the region of the player with a {@code Reachability} and reports
+ * the time and the bytes allocated per computation. It fails with an
+ * {@code AssertionError} if any move or computation allocates after warm-up.
+ * The boards keep no history of their moves, which is only needed for undo.
+ *
+ * <p>
+ * Allocation is measured with the per-thread allocation counter of the
+ * HotSpot {@code ThreadMXBean}.
+ */
+public class MoveBenchmark {
+
+	private static final int WARMUP_MOVES = 2_000_000;
+	private static final int MEASURED_MOVES = 2_000_000;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private long walkMoves;
+	private long walkBytes;
+	private long walkNanos;
+	private long pushMoves;
+	private long pushBytes;
+	private long pushNanos;
+	private long reachCalls;
+	private long reachBytes;
+	private long reachNanos;
+	private int seed = 0x2545F491;
+
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private Direction nextDirection() {
+		// xorshift, so choosing a direction does not allocate either
+		this.seed ^= this.seed << 13;
+		this.seed ^= this.seed >>> 17;
+		this.seed ^= this.seed << 5;
+		return Direction.of(this.seed & 3);
+	}
+
+	/**
+	 * Plays the specified number of random moves, timing and measuring the
+	 * allocation of each move.
+	 */
+	private void run(Board board, int moves) {
+		// the history of the board allocates whenever it grows
+		board.setHistoryEnabled(false);
+		Reachability reach = new Reachability(board);
+		long overhead = allocatedBytes();
+		overhead = allocatedBytes() - overhead;
+		for (int i = 0; i < moves; i++) {
+			Direction d = this.nextDirection();
+			boolean push = board.hasBox(board.neighbour(board.playerCell(), d));
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			board.movePlayer(d);
+			long nanos = System.nanoTime() - start;
+			bytes = allocatedBytes() - bytes - overhead;
+			if (push) {
+				this.pushMoves++;
+				this.pushBytes += bytes;
+				this.pushNanos += nanos;
+			} else {
+				this.walkMoves++;
+				this.walkBytes += bytes;
+				this.walkNanos += nanos;
+			}
+			bytes = allocatedBytes();
+			start = System.nanoTime();
+			reach.compute();
+			nanos = System.nanoTime() - start;
+			this.reachBytes += allocatedBytes() - bytes - overhead;
+			this.reachNanos += nanos;
+			this.reachCalls++;
+		}
+	}
+
+	private void reset() {
+		this.walkMoves = 0;
+		this.walkBytes = 0;
+		this.walkNanos = 0;
+		this.pushMoves = 0;
+		this.pushBytes = 0;
+		this.pushNanos = 0;
+		this.reachCalls = 0;
+		this.reachBytes = 0;
+		this.reachNanos = 0;
+	}
+
+	public static void main(String[] args) throws IOException {
+		MoveBenchmark bench = new MoveBenchmark();
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			bench.run(new Board(filename), WARMUP_MOVES / 8);
+		}
+		bench.reset();
+		System.out.println("level        walks  ns/walk  B/walk     pushes  ns/push  B/push  ns/reach B/reach");
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			MoveBenchmark b = new MoveBenchmark();
+			b.run(new Board(filename), MEASURED_MOVES / 8);
+			System.out.println(String.format("%s %9d %8.1f %7.2f %10d %8.1f %7.2f %9.1f %7.2f", filename, b.walkMoves,
+					(double) b.walkNanos / b.walkMoves, (double) b.walkBytes / b.walkMoves, b.pushMoves,
+					(double) b.pushNanos / Math.max(1, b.pushMoves), (double) b.pushBytes / Math.max(1, b.pushMoves),
+					(double) b.reachNanos / b.reachCalls, (double) b.reachBytes / b.reachCalls));
+			bench.walkMoves += b.walkMoves;
+			bench.walkBytes += b.walkBytes;
+			bench.pushMoves += b.pushMoves;
+			bench.pushBytes += b.pushBytes;
+			bench.reachCalls += b.reachCalls;
+			bench.reachBytes += b.reachBytes;
+		}
+		if (bench.walkBytes != 0 || bench.pushBytes != 0) {
+			throw new AssertionError("moves allocated " + bench.walkBytes + " bytes in " + bench.walkMoves
+					+ " walks and " + bench.pushBytes + " bytes in " + bench.pushMoves + " pushes");
+		}
+		if (bench.reachBytes != 0) {
+			throw new AssertionError("reachability allocated " + bench.reachBytes + " bytes in " + bench.reachCalls
+					+ " computations");
+		}
+		System.out.println("OK: moves and reachability allocate no memory");
+	}
+}
@@ -0,0 +1,178 @@
+package sokoban;
+
+import java.util.Arrays;
+
+/**
+ * The undo and redo history of a {@code Board}: the moves made on the board,
+ * in order, with a cursor that separates the moves that can be undone from
+ * those that can be redone.
+ *
+ * <p>
+ * A move is stored in three bits, two for its direction and one telling
+ * whether it pushed boxes, and 21 moves are packed into every {@code long}, so
+ * the moves of a history of 100,000 moves take less than 40 kB. The board can
+ * undo a move from this alone: the player stepped back and, if the move
+ * pushed, the boxes ahead of the player are pulled back one cell. Only the
+ * number of boxes of a push is missing, because {@code Board} pushes whole
+ * lines of boxes; it is one for every push of the usual rules, and the rare
+ * pushes of more than one box are kept apart, as their move number and
+ * number of boxes, in two small arrays in the order of the moves.
+ *
+ * <p>
+ * Recording a move after some moves have been undone forgets the moves that
+ * could have been redone. The arrays only grow, and the journal allocates
+ * nothing while it does not need more room.
+ */
+final class MoveJournal {
+
+	private static final int BITS = 3;
+	private static final int PER_WORD = 21;
+	private static final int PUSHED = 4;
+
+	private long[] words = new long[0];
+	// the moves before position can be undone, those from position to size redone
+	private int position;
+	private int size;
+
+	/*
+	 * The pushes of more than one box, by move number. The first lines of
+	 * them belong to moves before position.
+	 */
+	private int[] lineMoves = new int[0];
+	private int[] lineBoxes = new int[0];
+	private int lines;
+	private int lineCount;
+
+	/**
+	 * Records a move at the cursor, forgetting the moves that could have been
+	 * redone.
+	 *
+	 * @param direction the ordinal of the direction of the move
+	 * @param boxes     the number of boxes the move pushed
+	 */
+	void record(int direction, int boxes) {
+		int index = this.position;
+		int word = index / PER_WORD;
+		if (word == this.words.length) {
+			this.words = Arrays.copyOf(this.words, Math.max(16, this.words.length * 2));
+		}
+		int shift = index % PER_WORD * BITS;
+		long bits = direction | (boxes > 0 ? PUSHED : 0);
+		this.words[word] = this.words[word] & ~(7L << shift) | bits << shift;
+		this.lineCount = this.lines;
+		if (boxes > 1) {
+			if (this.lineCount == this.lineMoves.length) {
+				int length = Math.max(4, this.lineMoves.length * 2);
+				this.lineMoves = Arrays.copyOf(this.lineMoves, length);
+				this.lineBoxes = Arrays.copyOf(this.lineBoxes, length);
+			}
+			this.lineMoves[this.lineCount] = index;
+			this.lineBoxes[this.lineCount] = boxes;
+			this.lineCount++;
+			this.lines++;
+		}
+		this.position = index + 1;
+		this.size = this.position;
+	}
+
+	/**
+	 * Returns {@code true} if there is a move before the cursor.
+	 *
+	 * @return {@code true} if a move can be undone
+	 */
+	boolean canUndo() {
+		return this.position > 0;
+	}
+
+	/**
+	 * Returns {@code true} if there is a move after the cursor.
+	 *
+	 * @return {@code true} if a move can be redone
+	 */
+	boolean canRedo() {
+		return this.position < this.size;
+	}
+
+	/**
+	 * Moves the cursor back over the last move and returns it, as the ordinal
+	 * of its direction plus four times the number of boxes it pushed. There
+	 * must be a move to undo.
+	 *
+	 * @return the move that is undone
+	 */
+	int undo() {
+		int index = --this.position;
+		int move = this.move(index);
+		if (move < PUSHED) {
+			return move;
+		}
+		if (this.lines > 0 && this.lineMoves[this.lines - 1] == index) {
+			this.lines--;
+			return (move & 3) | this.lineBoxes[this.lines] << 2;
+		}
+		return move;
+	}
+
+	/**
+	 * Moves the cursor forward over the next move and returns it, as the
+	 * ordinal of its direction plus four times the number of boxes it pushed.
+	 * There must be a move to redo.
+	 *
+	 * @return the move that is redone
+	 */
+	int redo() {
+		int index = this.position++;
+		int move = this.move(index);
+		if (move < PUSHED) {
+			return move;
+		}
+		if (this.lines < this.lineCount && this.lineMoves[this.lines] == index) {
+			this.lines++;
+			return (move & 3) | this.lineBoxes[this.lines - 1] << 2;
+		}
+		return move;
+	}
+
+	private int move(int index) {
+		return (int) (this.words[index / PER_WORD] >>> (index % PER_WORD * BITS)) & 7;
+	}
+
+	/**
+	 * Returns the number of moves before the cursor, that is, the number of
+	 * moves from the start position to the current position.
+	 *
+	 * @return the number of moves that can be undone
+	 */
+	int position() {
+		return this.position;
+	}
+
+	/**
+	 * Returns the number of moves in the journal, including those that can be
+	 * redone.
+	 *
+	 * @return the number of recorded moves
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Forgets every move, keeping the arrays for the moves to come.
+	 */
+	void clear() {
+		this.position = 0;
+		this.size = 0;
+		this.lines = 0;
+		this.lineCount = 0;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the arrays of the journal.
+	 *
+	 * @return the size of the journal in bytes
+	 */
+	long bytes() {
+		return this.words.length * 8L + this.lineMoves.length * 8L;
+	}
+}
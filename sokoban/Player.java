@@ -45,6 +45,16 @@ public class Player {
 		return false;
 	}
 
+	/**
+	 * Sets the location of this player without checking adjacency. Used by
+	 * {@code Board}, which has already checked that the move is legal.
+	 * 
+	 * @param loc the new location of this player
+	 */
+	void setLocation(Location loc) {
+		this.loc = loc;
+	}
+
 	/**
 	 * Move the player to the adjacent location to the left, changing
 	 * the player's location.
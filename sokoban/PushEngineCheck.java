@@ -0,0 +1,153 @@
+package sokoban;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * An ad-hoc check that compares the push engine of {@code Board} with the
+ * original recursive implementation on random move sequences.
+ *
+ * <p>
+ * The original implementation is kept here as {@code ReferenceBoard}, written
+ * over plain lists of locations exactly the way {@code Board} used to resolve
+ * a push: find the line of boxes in front of the player one box at a time, and
+ * move the whole line if the location after the last box is free. The only
+ * intended difference is the return value of a blocked push, which the
+ * original reported as a move; the check requires {@code Board} to return
+ * {@code true} exactly when the player moved.
+ *
+ * <p>
+ * The check also verifies the incremental state of {@code Board}: the cell
+ * index, the counts of boxes on storage and on dead squares, and the
+ * position hashes, which must agree for equal positions, differ for different
+ * ones, and, for the normalized hash, stay the same while the player only
+ * walks. {@code ReachabilityCheck}, {@code JournalCheck} and
+ * {@code FreezeCheck} check the player's region, the undo history and the
+ * freeze checker of the GUI on the same kind of sequences.
+ */
+public class PushEngineCheck {
+
+	private static final int SEQUENCES = 200;
+	private static final int MOVES = 2_000;
+
+	/**
+	 * The original push rules of {@code Board}.
+	 */
+	private static class ReferenceBoard {
+		private List<Location> walls = new ArrayList<>();
+		private List<Location> boxes = new ArrayList<>();
+		private Location player;
+
+		ReferenceBoard(Board board) {
+			for (Wall w : board.getWalls()) {
+				this.walls.add(w.location());
+			}
+			for (Box b : board.getBoxes()) {
+				this.boxes.add(b.location());
+			}
+			this.player = board.getPlayer().location();
+		}
+
+		private boolean isOccupied(Location loc) {
+			return this.boxes.contains(loc) || this.walls.contains(loc) || this.player.equals(loc);
+		}
+
+		private void moveMultipleBoxes(int box, Direction direction, List<Integer> boxLine) {
+			boxLine.add(box);
+			Location next = direction.from(this.boxes.get(box));
+			if (this.boxes.contains(next)) {
+				this.moveMultipleBoxes(this.boxes.indexOf(next), direction, boxLine);
+			} else if (!this.isOccupied(next)) {
+				for (int i : boxLine) {
+					this.boxes.set(i, direction.from(this.boxes.get(i)));
+				}
+				this.player = direction.from(this.player);
+			}
+		}
+
+		void move(Direction direction) {
+			Location next = direction.from(this.player);
+			if (!this.isOccupied(next)) {
+				this.player = next;
+			} else if (this.boxes.contains(next)) {
+				this.moveMultipleBoxes(this.boxes.indexOf(next), direction, new ArrayList<>());
+			}
+		}
+	}
+
+	private static void check(boolean condition, String filename, int sequence, int move, String what) {
+		if (!condition) {
+			throw new AssertionError(filename + ", sequence " + sequence + ", move " + move + ": " + what);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		long pushes = 0;
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (int seq = 0; seq < SEQUENCES; seq++) {
+				Random rng = new Random(level * 1_000_003L + seq);
+				Board board = new Board(filename);
+				ReferenceBoard ref = new ReferenceBoard(board);
+				Map<String, Long> hashes = new HashMap<>();
+				for (int i = 0; i < MOVES; i++) {
+					Direction d = Direction.of(rng.nextInt(4));
+					Location before = board.getPlayer().location();
+					long normalized = board.normalizedHash();
+					boolean push = board.hasBox(d.from(before));
+					if (push) {
+						pushes++;
+					}
+					boolean moved = board.movePlayer(d);
+					Long hash = hashes.putIfAbsent(board.toString(), board.stateHash());
+					check(hash == null || hash == board.stateHash(), filename, seq, i, "state hash differs for equal positions");
+					check(push || board.normalizedHash() == normalized, filename, seq, i, "walking changed the normalized hash");
+					ref.move(d);
+					Location after = board.getPlayer().location();
+					check(after.equals(ref.player), filename, seq, i, "player at " + after + ", expected " + ref.player);
+					check(moved == !after.equals(before), filename, seq, i, "movePlayer returned " + moved);
+					check(board.playerCell() == board.cellOf(after), filename, seq, i, "player cell out of sync");
+					for (int b = 0; b < ref.boxes.size(); b++) {
+						Box box = board.getBoxes().get(b);
+						check(box.location().equals(ref.boxes.get(b)), filename, seq, i,
+								"box " + b + " at " + box.location() + ", expected " + ref.boxes.get(b));
+						check(board.getBox(box.location()) == box, filename, seq, i, "box index out of sync");
+					}
+				}
+				Set<Long> distinct = new HashSet<>(hashes.values());
+				check(distinct.size() == hashes.size(), filename, seq, MOVES, "state hash collision");
+				int onStorage = 0;
+				for (Storage st : board.getStorage()) {
+					if (ref.boxes.contains(st.location())) {
+						onStorage++;
+					}
+				}
+				check(board.boxesOnGoals() == onStorage, filename, seq, MOVES,
+						board.boxesOnGoals() + " boxes on storage, expected " + onStorage);
+				int onDead = 0;
+				for (Location loc : ref.boxes) {
+					if (board.isDeadSquare(loc)) {
+						onDead++;
+					}
+				}
+				check(board.boxesOnDeadSquares() == onDead, filename, seq, MOVES,
+						board.boxesOnDeadSquares() + " boxes on dead squares, expected " + onDead);
+				int indexed = 0;
+				for (int cell = 0; cell < board.cellCount(); cell++) {
+					if (board.hasBox(cell)) {
+						indexed++;
+					}
+				}
+				check(indexed == ref.boxes.size(), filename, seq, MOVES, indexed + " boxes in the cell index");
+			}
+		}
+		System.out.println("OK: " + (8 * SEQUENCES) + " sequences, " + (8L * SEQUENCES * MOVES) + " moves, "
+				+ pushes + " push attempts");
+	}
+}
@@ -0,0 +1,182 @@
+package sokoban;
+
+import java.util.Arrays;
+
+/**
+ * The cells the player of a {@code Board} can reach without pushing a box,
+ * and the pushes the player can make from them.
+ *
+ * <p>
+ * A {@code Reachability} is bound to one board and is recomputed on demand by
+ * {@code compute}, which flood fills the cell index of the board from the
+ * cell of the player. The queue of the fill and the visited marks are
+ * allocated once, and a cell counts as visited when its mark equals the stamp
+ * of the current fill, so the marks never have to be cleared between calls.
+ * Neither {@code compute} nor any of the queries allocates an object.
+ *
+ * <p>
+ * The results describe the position of the board at the time of the last call
+ * to {@code compute} and are not updated when the player moves. An instance
+ * is not thread-safe.
+ */
+public final class Reachability {
+	private final Board board;
+	private final int[] steps = new int[4];
+
+	// the cells of the region in the order they were reached; a cell is in
+	// the region if its mark equals stamp
+	private final int[] region;
+	private final int[] mark;
+	private int stamp;
+	private int size;
+	private int topLeft;
+
+	// the pushes the player can make, encoded as 4 * cell of the first box
+	// + ordinal of the direction
+	private final int[] pushes;
+	private int pushCount;
+
+	/**
+	 * Initializes the reachability of the player of the specified board. The
+	 * region is empty until {@code compute} is called.
+	 *
+	 * @param board a board
+	 */
+	public Reachability(Board board) {
+		this.board = board;
+		for (Direction d : Direction.values()) {
+			this.steps[d.ordinal()] = board.neighbour(0, d);
+		}
+		this.region = new int[board.cellCount()];
+		this.mark = new int[board.cellCount()];
+		// a push is made from a cell of the region, one per direction
+		this.pushes = new int[4 * board.cellCount()];
+	}
+
+	/**
+	 * Computes the region of the player in the current position of the board,
+	 * its top-left cell and the pushes the player can make from it.
+	 *
+	 * <p>
+	 * This method takes time proportional to the size of the region and does
+	 * not allocate any objects.
+	 */
+	public void compute() {
+		if (++this.stamp == 0) {
+			Arrays.fill(this.mark, 0);
+			this.stamp = 1;
+		}
+		int start = this.board.playerCell();
+		int head = 0;
+		int tail = 0;
+		int top = start;
+		int count = 0;
+		this.region[tail++] = start;
+		this.mark[start] = this.stamp;
+		while (head < tail) {
+			int cell = this.region[head++];
+			if (cell < top) {
+				top = cell;
+			}
+			for (int d = 0; d < 4; d++) {
+				int step = this.steps[d];
+				int next = cell + step;
+				if (this.board.hasBox(next)) {
+					// the push moves the whole line of boxes, as movePlayer does
+					int end = next + step;
+					while (this.board.hasBox(end)) {
+						end += step;
+					}
+					// the player walks away from its own cell to push, so a line
+					// may be pushed onto it
+					if (end == start || !this.board.isOccupied(end)) {
+						this.pushes[count++] = 4 * next + d;
+					}
+				} else if (this.mark[next] != this.stamp && !this.board.isOccupied(next)) {
+					this.mark[next] = this.stamp;
+					this.region[tail++] = next;
+				}
+			}
+		}
+		this.size = tail;
+		this.topLeft = top;
+		this.pushCount = count;
+	}
+
+	/**
+	 * Returns {@code true} if the player could reach the specified cell without
+	 * pushing a box at the last call to {@code compute}.
+	 *
+	 * @param cell a cell index of the board
+	 * @return {@code true} if the cell is in the region of the player
+	 */
+	public boolean isReachable(int cell) {
+		return this.mark[cell] == this.stamp;
+	}
+
+	/**
+	 * Returns the number of cells of the region of the player, the cell of the
+	 * player included.
+	 *
+	 * @return the number of cells of the region
+	 */
+	public int regionSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the cell of the region with the specified index. The cells are
+	 * numbered in the order of their distance from the player, so the cell
+	 * with index 0 is that of the player.
+	 *
+	 * @param index an index between 0 and {@code regionSize() - 1}
+	 * @return a cell of the region
+	 */
+	public int regionCell(int index) {
+		return this.region[index];
+	}
+
+	/**
+	 * Returns the smallest index of the cells of the region, which is the
+	 * top-left cell of the region in reading order. Two positions with the
+	 * same boxes in which one player can walk to the other have the same
+	 * top-left cell.
+	 *
+	 * @return the top-left cell of the region
+	 */
+	public int topLeft() {
+		return this.topLeft;
+	}
+
+	/**
+	 * Returns the number of box faces the player can push from the region:
+	 * a box next to a cell of the region whose line of boxes in the direction
+	 * away from that cell ends in front of a free cell. The cell the player
+	 * stands on counts as free, since the player leaves it to push.
+	 *
+	 * @return the number of pushes the player can make
+	 */
+	public int pushCount() {
+		return this.pushCount;
+	}
+
+	/**
+	 * Returns the cell of the box pushed by the push with the specified index.
+	 *
+	 * @param index an index between 0 and {@code pushCount() - 1}
+	 * @return the cell of the box next to the region
+	 */
+	public int pushBox(int index) {
+		return this.pushes[index] >> 2;
+	}
+
+	/**
+	 * Returns the direction of the push with the specified index.
+	 *
+	 * @param index an index between 0 and {@code pushCount() - 1}
+	 * @return the direction the box is pushed in
+	 */
+	public Direction pushDirection(int index) {
+		return Direction.of(this.pushes[index] & 3);
+	}
+}
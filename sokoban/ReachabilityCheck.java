@@ -0,0 +1,158 @@
+package sokoban;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * An ad-hoc check that compares {@code Reachability} with a flood fill over
+ * plain sets of locations on random move sequences.
+ *
+ * <p>
+ * Every hundred moves the check compares the region of the player, its
+ * top-left cell and the pushes the player can make with those found over the
+ * walls, boxes and player that {@code Board} reports as locations. Two fixed
+ * positions come first, one of which has a push onto the cell of the player.
+ */
+public class ReachabilityCheck {
+
+	private static final int SEQUENCES = 200;
+	private static final int MOVES = 2_000;
+	private static final int CHECK_EVERY = 100;
+
+	/**
+	 * The walls, boxes and player of a board as locations.
+	 */
+	private static class ReferenceBoard {
+		private Set<Location> walls = new HashSet<>();
+		private Set<Location> boxes = new HashSet<>();
+		private Location player;
+
+		ReferenceBoard(Board board) {
+			for (Wall w : board.getWalls()) {
+				this.walls.add(w.location());
+			}
+			for (Box b : board.getBoxes()) {
+				this.boxes.add(b.location());
+			}
+			this.player = board.getPlayer().location();
+		}
+
+		private boolean isOccupied(Location loc) {
+			return this.boxes.contains(loc) || this.walls.contains(loc) || this.player.equals(loc);
+		}
+
+		/**
+		 * Returns the locations the player can reach without pushing.
+		 */
+		Set<Location> reachable() {
+			Set<Location> seen = new HashSet<>();
+			List<Location> queue = new ArrayList<>();
+			seen.add(this.player);
+			queue.add(this.player);
+			for (int i = 0; i < queue.size(); i++) {
+				for (Direction d : Direction.values()) {
+					Location next = d.from(queue.get(i));
+					if (!this.isOccupied(next) && seen.add(next)) {
+						queue.add(next);
+					}
+				}
+			}
+			return seen;
+		}
+
+		/**
+		 * Returns the pushes the player can make from the specified region, as
+		 * the location of the first box followed by the direction.
+		 */
+		Set<String> pushes(Set<Location> region) {
+			Set<String> pushes = new HashSet<>();
+			for (Location loc : region) {
+				for (Direction d : Direction.values()) {
+					Location end = d.from(loc);
+					if (!this.boxes.contains(end)) {
+						continue;
+					}
+					Location box = end;
+					while (this.boxes.contains(end)) {
+						end = d.from(end);
+					}
+					// the player leaves its own cell to push, so it does not block
+					if (!this.isOccupied(end) || end.equals(this.player)) {
+						pushes.add(box + " " + d);
+					}
+				}
+			}
+			return pushes;
+		}
+	}
+
+	private static void check(boolean condition, String where, String what) {
+		if (!condition) {
+			throw new AssertionError(where + ": " + what);
+		}
+	}
+
+	private static void checkReachability(Reachability reach, Board board, String where) {
+		ReferenceBoard ref = new ReferenceBoard(board);
+		reach.compute();
+		Set<Location> region = ref.reachable();
+		check(reach.regionSize() == region.size(), where,
+				"region of " + reach.regionSize() + " cells, expected " + region.size());
+		int top = Integer.MAX_VALUE;
+		for (Location loc : region) {
+			int cell = board.cellOf(loc);
+			check(reach.isReachable(cell), where, loc + " not reachable");
+			top = Math.min(top, cell);
+		}
+		check(reach.topLeft() == top, where, "top-left cell " + reach.topLeft() + ", expected " + top);
+		Set<String> pushes = new HashSet<>();
+		for (int p = 0; p < reach.pushCount(); p++) {
+			pushes.add(board.locationOf(reach.pushBox(p)) + " " + reach.pushDirection(p));
+		}
+		check(reach.pushCount() == pushes.size() && pushes.equals(ref.pushes(region)), where,
+				"pushes " + pushes + ", expected " + ref.pushes(region));
+	}
+
+	/**
+	 * Checks the pushes found by {@code Reachability} in the start position of
+	 * the specified level against both the reference and the specified
+	 * pushes, written as the location of the box followed by the direction.
+	 */
+	private static void checkPushes(List<String> rows, String... expected) {
+		Board board = new Board(rows);
+		String name = String.join("|", rows);
+		checkReachability(new Reachability(board), board, name);
+		ReferenceBoard ref = new ReferenceBoard(board);
+		Set<String> pushes = ref.pushes(ref.reachable());
+		check(pushes.equals(Set.of(expected)), name, "pushes " + pushes + ", expected " + Set.of(expected));
+	}
+
+	public static void main(String[] args) throws IOException {
+		// the player cannot get behind the box to push it onto its own cell
+		checkPushes(List.of("#######", "#  $@.#", "#######"), "[3][1] LEFT");
+		// the player can, and the push onto its own cell must be listed
+		checkPushes(List.of("#####", "#   #", "# $@#", "#   #", "#####"), "[2][2] LEFT", "[2][2] RIGHT", "[2][2] UP",
+				"[2][2] DOWN");
+		long checks = 0;
+		for (int level = 1; level <= 8; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (int seq = 0; seq < SEQUENCES; seq++) {
+				Random rng = new Random(level * 1_000_003L + seq);
+				Board board = new Board(filename);
+				Reachability reach = new Reachability(board);
+				for (int i = 0; i < MOVES; i++) {
+					board.movePlayer(Direction.of(rng.nextInt(4)));
+					if (i % CHECK_EVERY == 0) {
+						checkReachability(reach, board, filename + ", sequence " + seq + ", move " + i);
+						checks++;
+					}
+				}
+			}
+		}
+		System.out.println("OK: " + (8 * SEQUENCES) + " sequences, " + checks + " positions compared");
+	}
+}
@@ -32,6 +32,9 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
+import sokoban.solver.FreezeDeadlock;
+import sokoban.solver.Maze;
+
 public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 	
 	private static final String LEFT = "LEFT";
@@ -39,6 +42,8 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 	private static final String UP = "UP";
 	private static final String DOWN = "DOWN";
 	private static final String RELOAD = "RELOAD";
+	private static final String UNDO = "UNDO";
+	private static final String REDO = "REDO";
 	private static final String LOAD = "LOAD";
 	private static final String EXIT = "EXIT";
 	
@@ -50,6 +55,10 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 	private ImageIcon playerIcon;
 	private ImageIcon storageIcon;
 	private ImageIcon wallIcon; 
+	private FreezeDeadlock freeze;
+	private LevelTemplate freezeTemplate;
+	private boolean frozen;
+	private boolean warnedStuck;
 	
 	public SokobanGUI() throws IOException {
 		super("Sokoban");
@@ -67,6 +76,27 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		this.initLevel();
 	}
 	
+	/**
+	 * Puts the current level back in its start position. The board is made
+	 * from the template of the level, which is read again only if the level
+	 * file has changed.
+	 */
+	private void restart() {
+		if (this.filename.isEmpty()) {
+			this.board = new Board();
+			this.initLevel();
+		}
+		else {
+			try {
+				this.board = new Board(this.filename);
+				this.initLevel();
+			}
+			catch (IOException x) {
+				JOptionPane.showMessageDialog(this, "Could not read the level file.");
+			}
+		}
+	}
+	
 	private final void initLevel() {
 		String title = "Sokoban";
 		if (!this.filename.isEmpty()) {
@@ -83,6 +113,15 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		this.drawStorage();
 		this.drawBoxes();
 		this.drawPlayer();
+		// the dead squares of the checker only depend on the level, so a
+		// restarted level keeps its checker
+		if (this.freeze == null || this.freezeTemplate != this.board.template()) {
+			this.freeze = new FreezeDeadlock(new Maze(this.board, false));
+			this.freezeTemplate = this.board.template();
+		}
+		this.freeze.load(this.board);
+		this.frozen = false;
+		this.warnedStuck = false;
 		this.removeKeyListener(this);
 		this.addKeyListener(this);
 	}
@@ -98,30 +137,24 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		JLabel b = this.levelMap.get(loc);
 		boolean moved = false;
 		if(e.getKeyCode() == KeyEvent.VK_W | e.getKeyCode() == KeyEvent.VK_UP){
-			moved = this.board.movePlayerUp();
+			moved = this.move(Direction.UP);
 		}else if(e.getKeyCode() == KeyEvent.VK_A | e.getKeyCode() == KeyEvent.VK_LEFT){
-			moved = this.board.movePlayerLeft();
+			moved = this.move(Direction.LEFT);
 		}
 		else if(e.getKeyCode() == KeyEvent.VK_S | e.getKeyCode() == KeyEvent.VK_DOWN){
-			moved = this.board.movePlayerDown();
+			moved = this.move(Direction.DOWN);
 		}else if(e.getKeyCode() == KeyEvent.VK_D | e.getKeyCode() == KeyEvent.VK_RIGHT){
-			moved = this.board.movePlayerRight();
+			moved = this.move(Direction.RIGHT);
 		}
 		if(e.getKeyCode() == KeyEvent.VK_R) {
-			
-			if (this.filename.isEmpty()) {
-				this.board = new Board();
-				this.initLevel();
-			}
-			else {
-				try {
-					this.board = new Board(this.filename);
-					this.initLevel();
-				}
-				catch (IOException x) {
-					JOptionPane.showMessageDialog(this, "Could not read the level file.");
-				}
-			}
+			this.restart();
+		}
+		// Z, U or Backspace undoes, Y or Shift+Z redoes, with or without Ctrl
+		if(e.getKeyCode() == KeyEvent.VK_Z | e.getKeyCode() == KeyEvent.VK_U | e.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
+			this.rewind(!e.isShiftDown() || e.getKeyCode() != KeyEvent.VK_Z);
+		}
+		else if(e.getKeyCode() == KeyEvent.VK_Y) {
+			this.rewind(false);
 		}
 		
 		if (moved) {
@@ -132,6 +165,7 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 			if (this.board.isSolved()) {
 				JOptionPane.showMessageDialog(this, "You won! Click Menu in the top left to select a new level!");
 			}
+			this.warnIfStuck();
 		}
 	}
 
@@ -161,6 +195,8 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		
 		bar.add(menu);
 
+		this.addMenuItem(menu, "Undo move", UNDO);
+		this.addMenuItem(menu, "Redo move", REDO);
 		this.addMenuItem(menu, "Reload level", RELOAD);
 		this.addMenuItem(menu, "Load level", LOAD);
 		menu.addSeparator();
@@ -216,7 +252,7 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 	}
 	
 	private JPanel makeButtonPanel() {
-		JLabel controls = new JLabel("WASD To Move, R To Restart Level.\n Push all the boxes onto the targets without getting stuck");
+		JLabel controls = new JLabel("WASD To Move, Z To Undo, Y To Redo, R To Restart Level.\n Push all the boxes onto the targets without getting stuck");
 		JPanel p = new JPanel();	
 		p.add(controls);
 		return p;
@@ -261,6 +297,122 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		}
 	}
 	
+	/**
+	 * Moves the player in the specified direction and, if a line of boxes was
+	 * pushed, checks the pushed boxes for a freeze deadlock.
+	 */
+	private boolean move(Direction d) {
+		int ahead = this.board.neighbour(this.board.playerCell(), d);
+		boolean push = this.board.hasBox(ahead);
+		// the line is found before the push, when a box just past it cannot be
+		// taken for a part of it
+		int last = push ? this.board.lineEnd(ahead, d) : ahead;
+		if (!this.board.movePlayer(d)) {
+			return false;
+		}
+		if (push) {
+			// the box on ahead is gone and the line now ends one cell further
+			int end = this.board.neighbour(last, d);
+			this.freeze.move(ahead, end);
+			for (int cell = this.board.neighbour(ahead, d); ; cell = this.board.neighbour(cell, d)) {
+				this.frozen |= this.freeze.isDeadlocked(cell);
+				if (cell == end) {
+					break;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Undoes or redoes one move and draws again only the cells it changed: the
+	 * cells the player left and entered and, if the move pushed a line of
+	 * boxes, the cell at the far end of the line. The freeze checker moves the
+	 * one box that changes cells, from one end of the line to the other. A
+	 * redone push is checked for a freeze like a move. An undone push can free
+	 * frozen boxes, so a freeze found before is looked for again over all the
+	 * boxes, and otherwise only the pulled line is checked. The warning about
+	 * a stuck box is given again if the player gets stuck after undoing out of
+	 * it.
+	 */
+	private void rewind(boolean undo) {
+		int left = this.board.playerCell();
+		// for a redo, the line next to the player in every direction is found
+		// before the push, as in move
+		int[] last = new int[Direction.values().length];
+		for (Direction d : Direction.values()) {
+			int ahead = this.board.neighbour(left, d);
+			last[d.ordinal()] = this.board.hasBox(ahead) ? this.board.lineEnd(ahead, d) : -1;
+		}
+		if (!(undo ? this.board.undo() : this.board.redo())) {
+			return;
+		}
+		int entered = this.board.playerCell();
+		this.drawCell(left);
+		this.drawCell(entered);
+		for (Direction d : Direction.values()) {
+			if (undo && this.board.neighbour(entered, d) == left && this.board.hasBox(left)) {
+				// the line was pulled back onto the cell the player left
+				int end = this.board.neighbour(this.board.lineEnd(left, d), d);
+				this.drawCell(end);
+				this.freeze.move(end, left);
+				if (this.frozen) {
+					this.frozen = false;
+					for (Box box : this.board.getBoxes()) {
+						this.frozen |= this.freeze.isDeadlocked(this.board.cellOf(box.location()));
+					}
+				} else {
+					this.frozen = this.freeze.isDeadlocked(left);
+				}
+			} else if (!undo && this.board.neighbour(left, d) == entered && last[d.ordinal()] >= 0) {
+				int end = this.board.neighbour(last[d.ordinal()], d);
+				this.drawCell(end);
+				this.freeze.move(entered, end);
+				for (int cell = this.board.neighbour(entered, d); ; cell = this.board.neighbour(cell, d)) {
+					this.frozen |= this.freeze.isDeadlocked(cell);
+					if (cell == end) {
+						break;
+					}
+				}
+			}
+		}
+		if (this.board.boxesOnDeadSquares() == 0 && !this.frozen) {
+			this.warnedStuck = false;
+		}
+		if (this.board.isSolved()) {
+			JOptionPane.showMessageDialog(this, "You Beat The Level! Click Menu in the top left to select a new level!");
+		}
+		this.warnIfStuck();
+	}
+	
+	/**
+	 * Draws the specified cell of the level, which is not a wall, as it is on
+	 * the board.
+	 */
+	private void drawCell(int cell) {
+		JLabel b = this.levelMap.get(this.board.locationOf(cell));
+		if (cell == this.board.playerCell()) {
+			b.setIcon(this.playerIcon);
+		}
+		else if (this.board.hasBox(cell)) {
+			b.setIcon(this.board.hasStorage(cell) ? this.boxAndStorageIcon : this.boxIcon);
+		}
+		else {
+			b.setIcon(this.board.hasStorage(cell) ? this.storageIcon : null);
+		}
+	}
+	
+	/**
+	 * Tells the player, once per level, that a box has been pushed onto a dead
+	 * square or frozen off a target, so the level can no longer be solved.
+	 */
+	private void warnIfStuck() {
+		if (!this.warnedStuck && (this.board.boxesOnDeadSquares() > 0 || this.frozen)) {
+			this.warnedStuck = true;
+			JOptionPane.showMessageDialog(this, "A box is stuck where it can never reach a target. Press R to restart the level.");
+		}
+	}
+	
 	private void drawPlayer() {
 		Location loc = this.board.getPlayer().location();
 		JLabel b = this.levelMap.get(loc);
@@ -276,31 +428,25 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 		JLabel b = this.levelMap.get(loc);
 		boolean moved = false;
 		if (cmd.equals(LEFT)) {
-			moved = this.board.movePlayerLeft();
+			moved = this.move(Direction.LEFT);
 		}
 		else if (cmd.equals(RIGHT)) {
-			moved = this.board.movePlayerRight();
+			moved = this.move(Direction.RIGHT);
 		}
 		else if (cmd.equals(UP)) {
-			moved = this.board.movePlayerUp();
+			moved = this.move(Direction.UP);
 		}
 		else if (cmd.equals(DOWN)) {
-			moved = this.board.movePlayerDown();
+			moved = this.move(Direction.DOWN);
+		}
+		else if (cmd.equals(UNDO)) {
+			this.rewind(true);
+		}
+		else if (cmd.equals(REDO)) {
+			this.rewind(false);
 		}
 		else if (cmd.equals(RELOAD)) {
-			if (this.filename.isEmpty()) {
-				this.board = new Board();
-				this.initLevel();
-			}
-			else {
-				try {
-					this.board = new Board(this.filename);
-					this.initLevel();
-				}
-				catch (IOException x) {
-					JOptionPane.showMessageDialog(this, "Could not read the level file.");
-				}
-			}
+			this.restart();
 		}
 		else if (cmd.equals(LOAD)) {
 			Path path = FileSystems.getDefault().getPath("src", "sokoban");
@@ -333,6 +479,7 @@ public class SokobanGUI extends JFrame implements ActionListener, KeyListener {
 			if (this.board.isSolved()) {
 				JOptionPane.showMessageDialog(this, "You Beat The Level! Click Menu in the top left to select a new level!");
 			}
+			this.warnIfStuck();
 		}
 	}
 	
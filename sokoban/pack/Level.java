@@ -0,0 +1,150 @@
+package sokoban.pack;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sokoban.Board;
+import sokoban.LevelTemplate;
+
+/**
+ * One level of a level pack, as read by a {@code PackReader}: its number in the
+ * pack, its title, its metadata and the rows of its board.
+ *
+ * <p>
+ * The rows use the symbols of the level files read by {@code Board}: the
+ * reader has already expanded run-length encoded rows and replaced the
+ * alternative symbols of the pack formats. The level also records the range
+ * of bytes of the pack it was read from, its title and metadata lines
+ * included, so that it can be read again later without reading the levels
+ * before it.
+ *
+ * <p>
+ * A level is immutable; its template is only computed lazily.
+ */
+public final class Level {
+	private final int number;
+	private final String title;
+	private final Map<String, String> metadata;
+	private final List<String> rows;
+	private final long offset;
+	private final long length;
+	// built on first use; racing threads may each build one, which is harmless
+	private volatile LevelTemplate template;
+
+	/**
+	 * Initializes a level.
+	 *
+	 * @param number   the number of the level in its pack, starting at 1
+	 * @param title    the title of the level, or {@code null} if it has none
+	 * @param metadata the metadata of the level by key, in the order of the
+	 *                 pack
+	 * @param rows     the rows of the board of the level
+	 * @param offset   the offset of the first byte of the level in the pack
+	 * @param length   the number of bytes of the level in the pack
+	 */
+	public Level(int number, String title, Map<String, String> metadata, List<String> rows, long offset,
+			long length) {
+		this.number = number;
+		this.title = title;
+		this.metadata = Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
+		this.rows = List.copyOf(rows);
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the number of this level in its pack, starting at 1.
+	 *
+	 * @return the number of this level
+	 */
+	public int number() {
+		return this.number;
+	}
+
+	/**
+	 * Returns the title of this level: the {@code Title} metadata if the pack
+	 * gives one, otherwise the first comment or text line before the board, or
+	 * {@code null} if there is neither.
+	 *
+	 * @return the title of this level, or {@code null}
+	 */
+	public String title() {
+		return this.title;
+	}
+
+	/**
+	 * Returns the metadata of this level, such as its {@code Author} and
+	 * {@code Comment}, by key in the order of the pack. The map cannot be
+	 * modified.
+	 *
+	 * @return the metadata of this level
+	 */
+	public Map<String, String> metadata() {
+		return this.metadata;
+	}
+
+	/**
+	 * Returns the rows of the board of this level. The list cannot be
+	 * modified.
+	 *
+	 * @return the rows of the board of this level
+	 */
+	public List<String> rows() {
+		return this.rows;
+	}
+
+	/**
+	 * Returns the offset of the first byte of this level in its pack.
+	 *
+	 * @return the offset of this level in bytes
+	 */
+	public long offset() {
+		return this.offset;
+	}
+
+	/**
+	 * Returns the number of bytes of this level in its pack, from its first
+	 * title or metadata line to the end of its last line.
+	 *
+	 * @return the length of this level in bytes
+	 */
+	public long length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the template of this level, which is built the first time it is
+	 * asked for and shared by the boards of this level afterwards.
+	 *
+	 * @return the template of this level
+	 */
+	public LevelTemplate template() {
+		LevelTemplate t = this.template;
+		if (t == null) {
+			t = new LevelTemplate(this.rows);
+			this.template = t;
+		}
+		return t;
+	}
+
+	/**
+	 * Returns a new board in the start position of this level.
+	 *
+	 * @return a new board of this level
+	 */
+	public Board toBoard() {
+		return new Board(this.template());
+	}
+
+	/**
+	 * Returns the number and the title of this level.
+	 *
+	 * @return the number and the title of this level
+	 */
+	@Override
+	public String toString() {
+		return this.title == null ? "#" + this.number : "#" + this.number + " " + this.title;
+	}
+}
@@ -0,0 +1,346 @@
+package sokoban.pack;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import sokoban.Board;
+
+/**
+ * A level pack opened for random access: the pack file is memory-mapped and an
+ * index of its levels, kept in a file next to it, gives the range of bytes of
+ * every level, so that any level can be read by parsing only its own bytes.
+ *
+ * <p>
+ * The index is built by reading the pack once with a {@code PackReader} the
+ * first time the pack is opened, and is written to the index file, by default
+ * the pack file name followed by {@code .idx}. Later openings map the index
+ * file as it is, so they take the same short time whatever the size of the
+ * pack. The index records the size and modification time of the pack and is
+ * built again if the pack has changed since.
+ *
+ * <p>
+ * The index file starts with a header of {@code HEADER_BYTES} bytes, followed
+ * by one record of {@code RECORD_BYTES} bytes per level and then the titles of
+ * the levels in UTF-8. A record holds the offset and length of the level in
+ * the pack, the width and height of its board, its number of boxes and the
+ * position and length of its title, or a title length of -1 if it has none.
+ * Finding a level is then a multiplication, and the title, size and number of
+ * boxes of a level can be listed without reading the pack at all.
+ *
+ * <p>
+ * Packs of more than 2 GB are not supported. An instance is thread-safe.
+ */
+public final class LevelLibrary {
+
+	/**
+	 * The number of bytes of the header of an index file.
+	 */
+	static final int HEADER_BYTES = 32;
+
+	/**
+	 * The number of bytes of the record of a level in an index file.
+	 */
+	static final int RECORD_BYTES = 32;
+
+	private static final int MAGIC = 0x534B4C49;
+	private static final int VERSION = 1;
+
+	private final Path pack;
+	private final ByteBuffer levels;
+	private final ByteBuffer index;
+	private final int count;
+
+	private LevelLibrary(Path pack, ByteBuffer levels, ByteBuffer index) {
+		this.pack = pack;
+		this.levels = levels;
+		this.index = index;
+		this.count = index.getInt(24);
+	}
+
+	/**
+	 * Opens the specified pack with its index in the file of the same name
+	 * followed by {@code .idx}, building the index first if it is missing or
+	 * out of date.
+	 *
+	 * @param pack a pack file
+	 * @return the library of the levels of the pack
+	 * @throws IOException if the pack cannot be read or the index cannot be
+	 *                     read or written
+	 */
+	public static LevelLibrary open(Path pack) throws IOException {
+		return open(pack, pack.resolveSibling(pack.getFileName() + ".idx"));
+	}
+
+	/**
+	 * Opens the specified pack with its index in the specified file, building
+	 * the index first if it is missing or out of date.
+	 *
+	 * @param pack      a pack file
+	 * @param indexFile the index file of the pack
+	 * @return the library of the levels of the pack
+	 * @throws IOException if the pack cannot be read or the index cannot be
+	 *                     read or written
+	 */
+	public static LevelLibrary open(Path pack, Path indexFile) throws IOException {
+		ByteBuffer levels = map(pack);
+		long modified = Files.getLastModifiedTime(pack).toMillis();
+		ByteBuffer index = Files.exists(indexFile) ? map(indexFile) : null;
+		if (index == null || !isCurrent(index, levels.capacity(), modified)) {
+			build(levels, modified, indexFile);
+			index = map(indexFile);
+			if (!isCurrent(index, levels.capacity(), modified)) {
+				throw new IOException(indexFile + " is not a valid index of " + pack);
+			}
+		}
+		return new LevelLibrary(pack, levels, index);
+	}
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is larger than 2 GB");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	private static boolean isCurrent(ByteBuffer index, long size, long modified) {
+		if (index.capacity() < HEADER_BYTES || index.getInt(0) != MAGIC || index.getInt(4) != VERSION
+				|| index.getLong(8) != size || index.getLong(16) != modified) {
+			return false;
+		}
+		int count = index.getInt(24);
+		return count >= 0 && HEADER_BYTES + (long) count * RECORD_BYTES <= index.capacity();
+	}
+
+	/**
+	 * Reads all the levels of the specified pack and writes their index to the
+	 * specified file, replacing it. The file is written next to its final place
+	 * and then moved there, so a failed build leaves the old file intact.
+	 */
+	private static void build(ByteBuffer levels, long modified, Path indexFile) throws IOException {
+		Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		ByteArrayOutputStream titles = new ByteArrayOutputStream();
+		int count = 0;
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temporary)));
+				PackReader reader = new PackReader(new BufferInputStream(levels.duplicate()))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(levels.capacity());
+			out.writeLong(modified);
+			// the count is filled in once it is known
+			out.writeInt(0);
+			out.writeInt(0);
+			for (Level level = reader.read(); level != null; level = reader.read()) {
+				int width = 0;
+				int boxes = 0;
+				for (String row : level.rows()) {
+					width = Math.max(width, row.length());
+					for (int i = 0; i < row.length(); i++) {
+						if (row.charAt(i) == '$' || row.charAt(i) == '*') {
+							boxes++;
+						}
+					}
+				}
+				out.writeLong(level.offset());
+				out.writeInt((int) level.length());
+				out.writeInt(width);
+				out.writeInt(level.rows().size());
+				out.writeInt(boxes);
+				if (level.title() == null) {
+					out.writeInt(0);
+					out.writeInt(-1);
+				} else {
+					byte[] title = level.title().getBytes(StandardCharsets.UTF_8);
+					out.writeInt(titles.size());
+					out.writeInt(title.length);
+					titles.write(title);
+				}
+				count++;
+			}
+			titles.writeTo(out);
+		}
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, count), 24);
+		}
+		Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the pack file of this library.
+	 *
+	 * @return the pack file
+	 */
+	public Path pack() {
+		return this.pack;
+	}
+
+	/**
+	 * Returns the number of levels of the pack.
+	 *
+	 * @return the number of levels
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	private int record(int number) {
+		if (number < 1 || number > this.count) {
+			throw new IndexOutOfBoundsException("level " + number + " of " + this.count);
+		}
+		return HEADER_BYTES + (number - 1) * RECORD_BYTES;
+	}
+
+	/**
+	 * Returns the title of the specified level, read from the index.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return the title of the level, or {@code null} if it has none
+	 */
+	public String title(int number) {
+		int at = this.record(number);
+		int length = this.index.getInt(at + 28);
+		if (length < 0) {
+			return null;
+		}
+		byte[] title = new byte[length];
+		ByteBuffer titles = this.index.duplicate();
+		titles.position(HEADER_BYTES + this.count * RECORD_BYTES + this.index.getInt(at + 24));
+		titles.get(title);
+		return new String(title, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the width of the board of the specified level, read from the
+	 * index.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return the width of the board of the level
+	 */
+	public int width(int number) {
+		return this.index.getInt(this.record(number) + 12);
+	}
+
+	/**
+	 * Returns the height of the board of the specified level, read from the
+	 * index.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return the height of the board of the level
+	 */
+	public int height(int number) {
+		return this.index.getInt(this.record(number) + 16);
+	}
+
+	/**
+	 * Returns the number of boxes of the specified level, read from the index.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return the number of boxes of the level
+	 */
+	public int boxCount(int number) {
+		return this.index.getInt(this.record(number) + 20);
+	}
+
+	/**
+	 * Reads the specified level from its bytes of the pack.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return the level
+	 * @throws IOException if the bytes of the level are not a level any more
+	 */
+	public Level level(int number) throws IOException {
+		int at = this.record(number);
+		int offset = (int) this.index.getLong(at);
+		int length = this.index.getInt(at + 8);
+		ByteBuffer slice = this.levels.duplicate();
+		slice.position(offset).limit(offset + length);
+		PackReader reader = new PackReader(new BufferInputStream(slice), offset, number - 1,
+				Math.max(1, Math.min(length, 1 << 16)));
+		Level level = reader.read();
+		if (level == null) {
+			throw new IOException(this.pack + " has changed: level " + number + " is gone");
+		}
+		return level;
+	}
+
+	/**
+	 * Returns a new board in the start position of the specified level.
+	 *
+	 * @param number the number of a level, from 1 to {@code size()}
+	 * @return a new board of the level
+	 * @throws IOException if the bytes of the level are not a level any more
+	 */
+	public Board board(int number) throws IOException {
+		return this.level(number).toBoard();
+	}
+
+	/**
+	 * An input stream of the remaining bytes of a buffer.
+	 */
+	private static final class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Opens the specified pack, building its index if needed, and prints its
+	 * number of levels and the time taken, followed by the title, size, boxes
+	 * and board of each of the specified levels.
+	 *
+	 * @param args the pack file followed by level numbers
+	 * @throws IOException if the pack cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: java sokoban.pack.LevelLibrary pack.sok [number...]");
+			System.exit(2);
+		}
+		long start = System.nanoTime();
+		LevelLibrary library = open(Paths.get(args[0]));
+		System.out.println(String.format("%s: %d levels, opened in %.1f ms", args[0], library.size(),
+				(System.nanoTime() - start) / 1e6));
+		for (int i = 1; i < args.length; i++) {
+			int number = Integer.parseInt(args[i]);
+			start = System.nanoTime();
+			Board board = library.board(number);
+			System.out.println(String.format("#%d %s %dx%d boxes=%d, read in %.3f ms", number, library.title(number),
+					library.width(number), library.height(number), library.boxCount(number),
+					(System.nanoTime() - start) / 1e6));
+			System.out.print(board);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package sokoban.pack;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ad-hoc check of {@code PackReader} on small packs with a known reading.
+ *
+ * <p>
+ * The packs cover the share-out of the lines between two boards, with and
+ * without blank lines, rows that are run-length encoded, share a line
+ * separated by {@code |} or use the alternative symbols, a comment section
+ * holding a line that looks like a board row, and a byte order mark, which
+ * only counts at the start of the pack. Every level must also read the same
+ * from its own range of bytes, the way {@code LevelLibrary} reads it.
+ */
+public class PackCheck {
+
+	private static final List<String> BOARD = List.of("#####", "#@$.#", "#####");
+
+	private static void check(boolean condition, String pack, String what) {
+		if (!condition) {
+			throw new AssertionError(pack.replace("\n", "|") + ": " + what);
+		}
+	}
+
+	/**
+	 * Reads all the levels of the specified pack, and checks that each of
+	 * them reads the same from its range of bytes.
+	 */
+	private static List<Level> read(String pack) throws IOException {
+		byte[] bytes = pack.getBytes(StandardCharsets.UTF_8);
+		List<Level> levels = new ArrayList<>();
+		try (PackReader reader = new PackReader(new ByteArrayInputStream(bytes))) {
+			for (Level level = reader.read(); level != null; level = reader.read()) {
+				levels.add(level);
+			}
+		}
+		for (Level level : levels) {
+			PackReader reader = new PackReader(
+					new ByteArrayInputStream(bytes, (int) level.offset(), (int) level.length()), level.offset(),
+					level.number() - 1);
+			Level again = reader.read();
+			check(again != null && again.number() == level.number() && again.rows().equals(level.rows())
+					&& again.metadata().equals(level.metadata()), pack,
+					"level " + level.number() + " reads differently from its bytes");
+		}
+		return levels;
+	}
+
+	private static void checkLevel(String pack, Level level, String title, List<String> rows,
+			Map<String, String> metadata) {
+		check(level.rows().equals(rows), pack, "level " + level.number() + " has rows " + level.rows());
+		check(title == null ? level.title() == null : title.equals(level.title()), pack,
+				"level " + level.number() + " has the title " + level.title());
+		check(level.metadata().equals(metadata), pack,
+				"level " + level.number() + " has the metadata " + level.metadata());
+	}
+
+	public static void main(String[] args) throws IOException {
+		// the block right below the first board and apart from the next
+		// belongs to the first level
+		String pack = "Level 1\n#####\n#@$.#\n#####\nAuthor: X\n\nLevel 2\n#####\n#@$.#\n#####\n";
+		List<Level> levels = read(pack);
+		check(levels.size() == 2, pack, levels.size() + " levels");
+		checkLevel(pack, levels.get(0), "Level 1", BOARD, Map.of("Author", "X"));
+		checkLevel(pack, levels.get(1), "Level 2", BOARD, Map.of());
+
+		// without blank lines, only the metadata right below a board stays
+		pack = "Title: A\n#####\n#@$.#\n#####\nAuthor: X\nLevel B\n#####\n#@$.#\n#####\n";
+		levels = read(pack);
+		check(levels.size() == 2, pack, levels.size() + " levels");
+		checkLevel(pack, levels.get(0), "A", BOARD, Map.of("Author", "X"));
+		checkLevel(pack, levels.get(1), "Level B", BOARD, Map.of());
+
+		// run-length encoded rows, several rows on a line and other symbols
+		pack = "; RLE\n5#|#pb.#|5#\n\n; split\n12#\n#-p-b--3_.#|#10 #\n12#\n";
+		levels = read(pack);
+		check(levels.size() == 2, pack, levels.size() + " levels");
+		checkLevel(pack, levels.get(0), "RLE", BOARD, Map.of());
+		checkLevel(pack, levels.get(1), "split",
+				List.of("############", "# @ $     .#", "#          #", "############"), Map.of());
+
+		// a comment section is never a board, whatever its lines look like
+		pack = "Level 1\nComment:\nsee the wall below\n#####\nComment-End:\n#####\n#@$.#\n#####\n";
+		levels = read(pack);
+		check(levels.size() == 1, pack, levels.size() + " levels");
+		checkLevel(pack, levels.get(0), "Level 1", BOARD, Map.of("Comment", "see the wall below\n#####"));
+
+		// a byte order mark counts only at the start of the pack
+		pack = "\uFEFFTitle: A\n#####\n#@$.#\n#####\n\n\uFEFFLevel B\n#####\n#@$.#\n#####\n";
+		levels = read(pack);
+		check(levels.size() == 2, pack, levels.size() + " levels");
+		checkLevel(pack, levels.get(0), "A", BOARD, Map.of());
+		checkLevel(pack, levels.get(1), "\uFEFFLevel B", BOARD, Map.of());
+
+		System.out.println("OK: 5 packs");
+	}
+}
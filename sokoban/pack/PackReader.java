@@ -0,0 +1,525 @@
+package sokoban.pack;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reader of the levels of a level pack in the XSB or SOK format, one level
+ * at a time.
+ *
+ * <p>
+ * A pack is a text file of levels. The board of a level is a run of board
+ * rows: lines made only of the symbols {@code # @ $ . + *}, space, and the
+ * alternative symbols {@code - _} for floor, {@code p P} for the player and
+ * {@code b B} for a box, with at least one wall. A row can be run-length
+ * encoded, with a count before a symbol, and several rows can share a line,
+ * separated by {@code |}. The other lines of the pack hold the titles and
+ * metadata of the levels:
+ * <ul>
+ * <li>a {@code Key: value} line, such as {@code Title: Alpha} or
+ * {@code Author: X}, is metadata, and a {@code Comment:} line without a
+ * value starts a comment that runs up to a {@code Comment-End:} line, over
+ * any lines that look like board rows;</li>
+ * <li>a line starting with {@code ;} is a comment, as is any other text;</li>
+ * <li>the first comment or text line of a level is its title unless it has a
+ * {@code Title} key.</li>
+ * </ul>
+ * Of the lines between two boards, the last block of lines without a blank
+ * line belongs to the level below and the rest to the level above, unless the
+ * block is right below the board above and apart from the next one. Without
+ * any blank line, the metadata lines right below a board belong to it and the
+ * rest to the level below. The lines before the last block before the first
+ * board are the preamble of the pack.
+ *
+ * <p>
+ * The reader makes a single pass over the pack through a buffer and holds
+ * only the level it is reading and the lines since the last board, so packs
+ * of any number of levels can be read in constant memory. It reads bytes and
+ * decodes every line as UTF-8 itself, which lets it record the exact range of
+ * bytes of every level. An instance is not thread-safe.
+ */
+public final class PackReader implements Closeable {
+
+	/**
+	 * A line of the pack and its range of bytes.
+	 */
+	private static final class Line {
+		final String text;
+		final long start;
+		final long end;
+
+		Line(String text, long start, long end) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	private final InputStream in;
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	private long offset;
+	private byte[] line = new byte[256];
+
+	// the lines since the end of the last board
+	private final List<Line> pending = new ArrayList<>();
+	// the title and metadata lines and the rows of the level being read
+	private final List<Line> header = new ArrayList<>();
+	private final List<String> rows = new ArrayList<>();
+	private long boardStart;
+	private long boardEnd;
+	private boolean inBoard;
+	// whether the last line read is in a comment that runs up to a
+	// Comment-End: line, whose lines are never board rows
+	private boolean inComment;
+	private int count;
+	private List<String> preamble;
+
+	/**
+	 * Initializes a reader of the pack of the specified stream. The reader
+	 * buffers the stream itself.
+	 *
+	 * @param in the stream of a pack, which the reader closes when it is
+	 *           closed
+	 */
+	public PackReader(InputStream in) {
+		this(in, 0, 0);
+	}
+
+	/**
+	 * Initializes a reader of a part of a pack, starting at the specified
+	 * offset and after the specified number of levels, so that the numbers and
+	 * ranges of the levels it reads are those of the whole pack.
+	 *
+	 * @param in     the stream of the pack from the offset on
+	 * @param offset the offset of the first byte of the stream in the pack
+	 * @param levels the number of levels of the pack before the offset
+	 */
+	public PackReader(InputStream in, long offset, int levels) {
+		this(in, offset, levels, 1 << 16);
+	}
+
+	/**
+	 * Initializes a reader of a part of a pack with a buffer of the specified
+	 * size, which a reader of a single level keeps small.
+	 */
+	PackReader(InputStream in, long offset, int levels, int bufferSize) {
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+		this.offset = offset;
+		this.count = levels;
+	}
+
+	/**
+	 * Opens a reader of the pack in the specified file.
+	 *
+	 * @param file a pack file
+	 * @return a reader of the pack
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static PackReader open(Path file) throws IOException {
+		return new PackReader(Files.newInputStream(file));
+	}
+
+	/**
+	 * Reads all the levels of the pack in the specified file. This holds the
+	 * whole pack in memory and is meant for small packs.
+	 *
+	 * @param file a pack file
+	 * @return the levels of the pack
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<Level> readAll(Path file) throws IOException {
+		List<Level> levels = new ArrayList<>();
+		try (PackReader reader = open(file)) {
+			for (Level level = reader.read(); level != null; level = reader.read()) {
+				levels.add(level);
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Reads the next level of the pack.
+	 *
+	 * @return the next level, or {@code null} at the end of the pack
+	 * @throws IOException if the pack cannot be read
+	 */
+	public Level read() throws IOException {
+		while (true) {
+			Line line = this.nextLine();
+			if (line == null) {
+				if (this.rows.isEmpty()) {
+					if (this.preamble == null) {
+						this.preamble = texts(this.pending);
+						this.pending.clear();
+					}
+					return null;
+				}
+				Level level = this.finish(this.pending);
+				this.pending.clear();
+				this.header.clear();
+				this.rows.clear();
+				return level;
+			}
+			boolean comment = this.inComment || startsComment(line.text);
+			this.inComment = comment && !isCommentEnd(key(line.text));
+			List<String> expanded = comment ? null : boardRows(line.text);
+			if (expanded == null) {
+				this.inBoard = false;
+				this.pending.add(line);
+				continue;
+			}
+			if (this.inBoard) {
+				this.rows.addAll(expanded);
+				this.boardEnd = line.end;
+				continue;
+			}
+			// a new board starts: share out the lines since the last one
+			Level previous = null;
+			int split = split(this.pending, !this.rows.isEmpty());
+			if (!this.rows.isEmpty()) {
+				previous = this.finish(this.pending.subList(0, split));
+			} else if (this.preamble == null) {
+				this.preamble = texts(this.pending.subList(0, split));
+			}
+			this.header.clear();
+			this.header.addAll(this.pending.subList(split, this.pending.size()));
+			this.pending.clear();
+			this.rows.clear();
+			this.rows.addAll(expanded);
+			this.boardStart = line.start;
+			this.boardEnd = line.end;
+			this.inBoard = true;
+			if (previous != null) {
+				return previous;
+			}
+		}
+	}
+
+	/**
+	 * Returns the lines of the pack before its first level, or all its lines
+	 * if it has no level. The preamble is known once the first level or the
+	 * end of the pack has been read.
+	 *
+	 * @return the preamble of the pack, or {@code null} if it is not known yet
+	 */
+	public List<String> preamble() {
+		return this.preamble;
+	}
+
+	/**
+	 * Closes the stream of the pack.
+	 *
+	 * @throws IOException if the stream cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * Returns the next line of the pack without its line terminator, or
+	 * {@code null} at the end of the pack.
+	 */
+	private String nextText() throws IOException {
+		int n = 0;
+		boolean any = false;
+		while (true) {
+			if (this.position == this.limit) {
+				this.limit = Math.max(0, this.in.read(this.buffer));
+				this.position = 0;
+				if (this.limit == 0) {
+					if (!any) {
+						return null;
+					}
+					break;
+				}
+			}
+			byte b = this.buffer[this.position++];
+			this.offset++;
+			any = true;
+			if (b == '\n') {
+				break;
+			}
+			if (n == this.line.length) {
+				this.line = Arrays.copyOf(this.line, 2 * n);
+			}
+			this.line[n++] = b;
+		}
+		if (n > 0 && this.line[n - 1] == '\r') {
+			n--;
+		}
+		return new String(this.line, 0, n, StandardCharsets.UTF_8);
+	}
+
+	private Line nextLine() throws IOException {
+		long start = this.offset;
+		String text = this.nextText();
+		if (text == null) {
+			return null;
+		}
+		// a byte order mark at the start of the file
+		if (start == 0 && !text.isEmpty() && text.charAt(0) == '\uFEFF') {
+			text = text.substring(1);
+		}
+		return new Line(text, start, this.offset);
+	}
+
+	/**
+	 * Returns the board rows of the specified line, expanded and with the
+	 * standard symbols, or {@code null} if it is not a line of board rows.
+	 */
+	static List<String> boardRows(String text) {
+		if (text.isBlank()) {
+			return null;
+		}
+		List<String> rows = new ArrayList<>(1);
+		StringBuilder row = new StringBuilder(text.length());
+		boolean wall = false;
+		int repeat = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				repeat = 10 * repeat + c - '0';
+				if (repeat > 1 << 16) {
+					return null;
+				}
+				continue;
+			}
+			char symbol;
+			switch (c) {
+			case '#':
+				wall = true;
+				symbol = c;
+				break;
+			case ' ':
+			case '@':
+			case '$':
+			case '.':
+			case '+':
+			case '*':
+				symbol = c;
+				break;
+			case '-':
+			case '_':
+				symbol = ' ';
+				break;
+			case 'p':
+				symbol = '@';
+				break;
+			case 'P':
+				symbol = '+';
+				break;
+			case 'b':
+				symbol = '$';
+				break;
+			case 'B':
+				symbol = '*';
+				break;
+			case '|':
+				if (repeat != 0) {
+					return null;
+				}
+				rows.add(stripTrailing(row));
+				row.setLength(0);
+				continue;
+			default:
+				return null;
+			}
+			for (int k = Math.max(1, repeat); k > 0; k--) {
+				row.append(symbol);
+			}
+			repeat = 0;
+		}
+		if (!wall || repeat != 0) {
+			return null;
+		}
+		rows.add(stripTrailing(row));
+		return rows;
+	}
+
+	private static String stripTrailing(StringBuilder row) {
+		int end = row.length();
+		while (end > 0 && row.charAt(end - 1) == ' ') {
+			end--;
+		}
+		return row.substring(0, end);
+	}
+
+	/**
+	 * Returns, for every line, whether it is part of a multi-line comment,
+	 * from its {@code Comment:} line to its {@code Comment-End:} line.
+	 */
+	private static boolean[] commentSections(List<Line> lines) {
+		boolean[] section = new boolean[lines.size()];
+		boolean in = false;
+		for (int i = 0; i < lines.size(); i++) {
+			if (!in && startsComment(lines.get(i).text)) {
+				in = true;
+			}
+			section[i] = in;
+			if (in && isCommentEnd(key(lines.get(i).text))) {
+				in = false;
+			}
+		}
+		return section;
+	}
+
+	/**
+	 * Returns whether the specified line is a {@code Comment:} line without a
+	 * value, which starts a comment that runs up to a {@code Comment-End:}
+	 * line.
+	 */
+	private static boolean startsComment(String text) {
+		return "comment".equalsIgnoreCase(key(text)) && value(text).isEmpty();
+	}
+
+	private static boolean isCommentEnd(String key) {
+		return "comment-end".equalsIgnoreCase(key) || "comment_end".equalsIgnoreCase(key);
+	}
+
+	/**
+	 * Returns the index of the first of the specified lines between two boards,
+	 * or before the first board, that belongs to the level below.
+	 */
+	private static int split(List<Line> lines, boolean afterBoard) {
+		boolean[] section = commentSections(lines);
+		boolean[] blank = new boolean[lines.size()];
+		for (int i = 0; i < lines.size(); i++) {
+			blank[i] = !section[i] && lines.get(i).text.isBlank();
+		}
+		// the last block of lines without a blank line
+		int end = lines.size();
+		while (end > 0 && blank[end - 1]) {
+			end--;
+		}
+		int start = end;
+		while (start > 0 && !blank[start - 1]) {
+			start--;
+		}
+		if (end == 0 || !afterBoard || start > 0) {
+			return end == 0 ? lines.size() : start;
+		}
+		if (end < lines.size()) {
+			// the block is right below the board above and apart from the next
+			return lines.size();
+		}
+		// no blank line: the metadata right below the board stays with it
+		int i = 0;
+		while (i < lines.size() && (section[i] || key(lines.get(i).text) != null)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the key of the specified metadata line, or {@code null} if it is
+	 * not a metadata line. A key is one or two words starting with a letter.
+	 */
+	private static String key(String text) {
+		int colon = text.indexOf(':');
+		if (colon <= 0 || !Character.isLetter(text.charAt(0))) {
+			return null;
+		}
+		int words = 1;
+		for (int i = 1; i < colon; i++) {
+			char c = text.charAt(i);
+			if (c == ' ') {
+				if (++words > 2 || i + 1 == colon || !Character.isLetter(text.charAt(i + 1))) {
+					return null;
+				}
+			} else if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+				return null;
+			}
+		}
+		return text.substring(0, colon);
+	}
+
+	private static String value(String text) {
+		return text.substring(text.indexOf(':') + 1).strip();
+	}
+
+	private static List<String> texts(List<Line> lines) {
+		List<String> texts = new ArrayList<>(lines.size());
+		for (Line line : lines) {
+			texts.add(line.text);
+		}
+		return texts;
+	}
+
+	/**
+	 * Returns the level of the header and rows read so far and the specified
+	 * lines below its board.
+	 */
+	private Level finish(List<Line> trailer) {
+		String title = null;
+		Map<String, String> metadata = new LinkedHashMap<>();
+		List<String> texts = new ArrayList<>();
+		StringBuilder section = null;
+		List<Line> lines = new ArrayList<>(this.header);
+		lines.addAll(trailer);
+		long end = this.boardEnd;
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			if (i >= this.header.size() && !line.text.isBlank()) {
+				end = line.end;
+			}
+			String key = key(line.text);
+			if (section != null) {
+				if (isCommentEnd(key)) {
+					metadata.merge("Comment", section.toString(), (a, b) -> a + "\n" + b);
+					section = null;
+				} else {
+					section.append(section.length() == 0 ? "" : "\n").append(line.text);
+				}
+				continue;
+			}
+			String text = line.text.strip();
+			if (text.isEmpty()) {
+				continue;
+			}
+			if (key != null) {
+				String value = value(text);
+				if (key.equalsIgnoreCase("title")) {
+					title = value;
+				} else if (key.equalsIgnoreCase("comment") && value.isEmpty()) {
+					section = new StringBuilder();
+				} else {
+					metadata.merge(key, value, (a, b) -> a + "\n" + b);
+				}
+				continue;
+			}
+			if (text.startsWith(";")) {
+				text = text.substring(1).strip();
+				if (text.isEmpty()) {
+					continue;
+				}
+			}
+			texts.add(text);
+		}
+		if (section != null) {
+			// a comment without its end line runs to the next level
+			metadata.merge("Comment", section.toString(), (a, b) -> a + "\n" + b);
+		}
+		if (title == null && !texts.isEmpty()) {
+			title = texts.remove(0);
+		}
+		if (!texts.isEmpty()) {
+			metadata.merge("Comment", String.join("\n", texts), (a, b) -> a + "\n" + b);
+		}
+		long start = this.header.isEmpty() ? this.boardStart : this.header.get(0).start;
+		this.count++;
+		return new Level(this.count, title, metadata, this.rows, start, end - start);
+	}
+}
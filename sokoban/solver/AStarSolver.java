@@ -0,0 +1,195 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A push-optimal solver that uses A* search with the {@code AssignmentBound}
+ * lower bound.
+ *
+ * <p>
+ * Positions are the same as in {@code BfsSolver} and are stored in a
+ * {@code StateTable}. The search always expands a position with the smallest
+ * sum of pushes made so far and the bound on the pushes still needed. When a
+ * position is expanded its assignment is computed from scratch; the bounds of
+ * its children are derived from that assignment incrementally, one push at a
+ * time. Because the bound is consistent, the first solved position expanded is
+ * reached with the fewest pushes. Positions whose bound shows that some box
+ * cannot reach a storage location are not stored at all. A macro push of the
+ * maze is one step of the search that costs as many pushes as it makes, so
+ * in a maze built with macros the solution is only the shortest that keeps to
+ * the macros, and may not be push-optimal.
+ */
+public class AStarSolver implements Solver {
+	private final int maxStates;
+
+	/**
+	 * Initializes a solver that searches until the level is solved or the
+	 * search space is exhausted.
+	 */
+	public AStarSolver() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a solver that gives up once it has stored the specified number
+	 * of positions.
+	 *
+	 * @param maxStates the maximum number of positions to store
+	 */
+	public AStarSolver(int maxStates) {
+		this.maxStates = maxStates;
+	}
+
+	@Override
+	public String name() {
+		return "astar";
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		int n = maze.boxCount();
+		int words = maze.packedWords();
+		if (maze.goalCount() > n) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, 0, 0, System.nanoTime() - start,
+					0);
+		}
+		Expander ex = new Expander(maze);
+		FreezeDeadlock freeze = new FreezeDeadlock(maze, metrics);
+		AssignmentBound bound = new AssignmentBound(maze);
+		StateTable table = new StateTable(words);
+		BucketQueue open = new BucketQueue();
+		int[] boxes = maze.startBoxes();
+		int[] child = new int[words];
+		Macros macros = maze.macros();
+		int[] macro = new int[macros != null ? macros.maxPushes() : 1];
+
+		// pushes made so far and bound of every stored position, and whether
+		// the position has been expanded
+		int[] g = new int[1024];
+		int[] h = new int[1024];
+		boolean[] closed = new boolean[1024];
+
+		int h0 = bound.compute(boxes);
+		if (h0 >= AssignmentBound.INFINITE) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, 0, 0, System.nanoTime() - start,
+					table.bytes());
+		}
+		maze.pack(boxes, 0, n, child, 0);
+		ex.load(maze.startPlayer(), boxes, 0, n);
+		table.add(-1, -1, ex.normalizedPlayer(), child);
+		h[0] = h0;
+		open.add(h0, 0);
+
+		long expanded = 0;
+		long generated = 0;
+		metrics.startPhase("search");
+		while (!open.isEmpty()) {
+			int f = open.lowestPriority();
+			int node = open.poll();
+			if (closed[node] || g[node] + h[node] != f) {
+				// a stale entry of a position reached again with fewer pushes
+				continue;
+			}
+			closed[node] = true;
+			if (h[node] == 0 && maze.isSolved(this.unpack(maze, table, node, boxes), 0, n)) {
+				metrics.startPhase("path");
+				int[] path = BfsSolver.pushesTo(table, node);
+				String moves = Solution.movesOf(maze, maze.macros(), path);
+				metrics.finish();
+				return new Solution(this.name(), Solution.Status.SOLVED, moves, path.length, expanded, generated,
+						System.nanoTime() - start, this.bytes(table, g, open));
+			}
+			int[] records = table.records();
+			int at = table.offset(node);
+			maze.unpack(records, at + StateTable.BOXES, boxes);
+			ex.load(records[at + StateTable.PLAYER], boxes, 0, n);
+			ex.findPiCorral();
+			freeze.load(boxes, 0, n);
+			bound.compute(boxes);
+			expanded++;
+			metrics.addExpanded();
+			metrics.setFrontier(open.size());
+			for (int i = 0; i < n; i++) {
+				int from = boxes[i];
+				for (int d = 0; d < 4; d++) {
+					int to = from + maze.step(d);
+					if (!ex.canPush(from, d)) {
+						continue;
+					}
+					if (!ex.allowsPushTo(to)) {
+						metrics.addPrune(SolverMetrics.Prune.CORRAL);
+						continue;
+					}
+					int cost = 1;
+					int pusher = from;
+					if (macros != null) {
+						cost = macros.expand(ex, from, d, macro);
+						pusher = macro[cost - 1] >> 2;
+						to = pusher + maze.step(macro[cost - 1] & 3);
+					}
+					if (maze.isDead(to)) {
+						metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+						continue;
+					}
+					if (freeze.isDeadlockedAfterPush(from, to)) {
+						continue;
+					}
+					int hc = bound.afterPush(i, to);
+					generated++;
+					metrics.addGenerated();
+					if (hc >= AssignmentBound.INFINITE) {
+						metrics.addPrune(SolverMetrics.Prune.BOUND);
+						continue;
+					}
+					System.arraycopy(records, at + StateTable.BOXES, child, 0, words);
+					int fi = maze.floorIndex(from);
+					int ti = maze.floorIndex(to);
+					child[fi >>> 5] &= ~(1 << fi);
+					child[ti >>> 5] |= 1 << ti;
+					int player = ex.normalizedAfterPush(from, to, pusher);
+					int gc = g[node] + cost;
+					int added = table.add(node, 4 * from + d, player, child);
+					if (added >= 0) {
+						if (added == g.length) {
+							g = Arrays.copyOf(g, 2 * g.length);
+							h = Arrays.copyOf(h, 2 * h.length);
+							closed = Arrays.copyOf(closed, 2 * closed.length);
+						}
+						g[added] = gc;
+						h[added] = hc;
+						open.add(gc + hc, added);
+						if (table.size() >= this.maxStates) {
+							metrics.finish();
+							return new Solution(this.name(), Solution.Status.GAVE_UP, "", 0, expanded, generated,
+									System.nanoTime() - start, this.bytes(table, g, open));
+						}
+					} else {
+						int existing = -1 - added;
+						if (!closed[existing] && gc < g[existing]) {
+							table.setParent(existing, node, 4 * from + d);
+							g[existing] = gc;
+							open.add(gc + hc, existing);
+						}
+					}
+				}
+			}
+		}
+		metrics.finish();
+		return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, expanded, generated,
+				System.nanoTime() - start, this.bytes(table, g, open));
+	}
+
+	private long bytes(StateTable table, int[] g, BucketQueue open) {
+		// g and h take four bytes per stored position, closed one more
+		return table.bytes() + 9L * g.length + 4 * open.size();
+	}
+
+	private int[] unpack(Maze maze, StateTable table, int node, int[] boxes) {
+		maze.unpack(table.records(), table.offset(node) + StateTable.BOXES, boxes);
+		return boxes;
+	}
+}
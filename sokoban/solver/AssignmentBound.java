@@ -0,0 +1,246 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A lower bound on the number of pushes needed to solve a position: the cost
+ * of a minimum-cost assignment of the boxes to the storage locations, where
+ * the cost of moving a box to a storage location is its push distance.
+ *
+ * <p>
+ * The push distance from a cell to a storage location is the number of pushes
+ * needed to move a box from the cell to the storage location when the other
+ * boxes are ignored. The distances are computed once per maze by pulling a box
+ * backwards from every storage location. Because a push moves one box one
+ * cell, it changes the bound by at most one; the bound is therefore admissible
+ * and consistent, and A* with it finds push-optimal solutions.
+ *
+ * <p>
+ * The assignment is computed with the Hungarian method in its shortest
+ * augmenting path form. {@code compute} solves the assignment of a position
+ * from scratch in O(n^3) for n boxes and keeps the optimal matching and the
+ * dual potentials. {@code afterPush} then finds the bound of a position that
+ * differs from it by one push in O(n^2): it replaces the row of the pushed box
+ * and repairs the matching with a single augmenting path, leaving the kept
+ * state untouched so that every push of the position can be evaluated.
+ *
+ * <p>
+ * If there are more boxes than storage locations, the extra boxes are
+ * assigned to dummy storage locations at no cost. An instance is not
+ * thread-safe.
+ */
+final class AssignmentBound {
+
+	/**
+	 * The bound of a position in which some box cannot reach any storage
+	 * location left to it. Every bound at least this large means the position
+	 * cannot be solved.
+	 */
+	static final int INFINITE = 1 << 16;
+
+	private static final int UNBOUNDED = Integer.MAX_VALUE / 4;
+
+	private final int n;
+	private final int goalCount;
+	private final int[][] distance;
+
+	// the kept state, 1-based as in the usual formulation of the method
+	private final int[] rowCell;
+	private final int[] u;
+	private final int[] v;
+	private final int[] p;
+	private int cost;
+
+	// scratch state of afterPush
+	private final int[] rowCell2;
+	private final int[] u2;
+	private final int[] v2;
+	private final int[] p2;
+	private final int[] way;
+	private final int[] minv;
+	private final boolean[] used;
+
+	/**
+	 * Initializes the bound for the specified maze and computes the push
+	 * distances.
+	 *
+	 * @param maze a maze
+	 */
+	AssignmentBound(Maze maze) {
+		this.n = maze.boxCount();
+		this.goalCount = Math.min(maze.goalCount(), this.n);
+		this.distance = pushDistances(maze);
+		this.rowCell = new int[this.n + 1];
+		this.u = new int[this.n + 1];
+		this.v = new int[this.n + 1];
+		this.p = new int[this.n + 1];
+		this.rowCell2 = new int[this.n + 1];
+		this.u2 = new int[this.n + 1];
+		this.v2 = new int[this.n + 1];
+		this.p2 = new int[this.n + 1];
+		this.way = new int[this.n + 1];
+		this.minv = new int[this.n + 1];
+		this.used = new boolean[this.n + 1];
+	}
+
+	/**
+	 * Returns the push distances from every cell to every storage location,
+	 * indexed by storage location and then by cell, with {@code INFINITE} for
+	 * cells from which a storage location cannot be reached.
+	 */
+	static int[][] pushDistances(Maze maze) {
+		int[] goals = maze.goals();
+		int[][] distance = new int[goals.length][maze.size()];
+		int[] queue = new int[maze.size()];
+		for (int g = 0; g < goals.length; g++) {
+			int[] dist = distance[g];
+			Arrays.fill(dist, INFINITE);
+			dist[goals[g]] = 0;
+			int tail = 0;
+			queue[tail++] = goals[g];
+			for (int head = 0; head < tail; head++) {
+				int cell = queue[head];
+				for (int d = 0; d < 4; d++) {
+					int step = maze.step(d);
+					int from = cell - step;
+					if (dist[from] == INFINITE && maze.isFloor(from) && maze.isFloor(from - step)) {
+						dist[from] = dist[cell] + 1;
+						queue[tail++] = from;
+					}
+				}
+			}
+		}
+		return distance;
+	}
+
+	/**
+	 * Returns the push distance from the specified cell to the storage location
+	 * with the specified index in {@code Maze.goals()}.
+	 *
+	 * @param goal the index of a storage location
+	 * @param cell a cell index
+	 * @return the push distance, or {@code INFINITE}
+	 */
+	int distance(int goal, int cell) {
+		return this.distance[goal][cell];
+	}
+
+	private int cost(int[] rows, int i, int j) {
+		return j <= this.goalCount ? this.distance[j - 1][rows[i]] : 0;
+	}
+
+	/**
+	 * Computes the bound of the position with the specified boxes from scratch
+	 * and keeps its assignment for {@code afterPush}.
+	 *
+	 * @param boxes the box cells
+	 * @return the bound, or a value of at least {@code INFINITE}
+	 */
+	int compute(int[] boxes) {
+		Arrays.fill(this.u, 0);
+		Arrays.fill(this.v, 0);
+		Arrays.fill(this.p, 0);
+		for (int i = 1; i <= this.n; i++) {
+			this.rowCell[i] = boxes[i - 1];
+		}
+		for (int i = 1; i <= this.n; i++) {
+			this.augment(i, this.rowCell, this.u, this.v, this.p);
+		}
+		this.cost = this.total(this.rowCell, this.p);
+		return this.cost;
+	}
+
+	/**
+	 * Returns the bound of the last computed position. The value is the same as
+	 * that returned by {@code compute}.
+	 *
+	 * @return the bound of the last computed position
+	 */
+	int current() {
+		return this.cost;
+	}
+
+	/**
+	 * Returns the bound of the position that results from pushing the box with
+	 * the specified index in the array passed to {@code compute} to the
+	 * specified cell. The kept assignment is not changed.
+	 *
+	 * @param box the index of the pushed box
+	 * @param to  the cell the box is pushed to
+	 * @return the bound of the position after the push, or a value of at least
+	 *         {@code INFINITE}
+	 */
+	int afterPush(int box, int to) {
+		System.arraycopy(this.rowCell, 0, this.rowCell2, 0, this.n + 1);
+		System.arraycopy(this.u, 0, this.u2, 0, this.n + 1);
+		System.arraycopy(this.v, 0, this.v2, 0, this.n + 1);
+		System.arraycopy(this.p, 0, this.p2, 0, this.n + 1);
+		int row = box + 1;
+		this.rowCell2[row] = to;
+		for (int j = 1; j <= this.n; j++) {
+			if (this.p2[j] == row) {
+				this.p2[j] = 0;
+				break;
+			}
+		}
+		// the potentials of the other rows stay feasible; restart the changed row
+		this.u2[row] = 0;
+		for (int j = 1; j <= this.n; j++) {
+			this.u2[row] = Math.min(this.u2[row], this.cost(this.rowCell2, row, j) - this.v2[j]);
+		}
+		this.augment(row, this.rowCell2, this.u2, this.v2, this.p2);
+		return this.total(this.rowCell2, this.p2);
+	}
+
+	private int total(int[] rows, int[] match) {
+		int sum = 0;
+		for (int j = 1; j <= this.n; j++) {
+			sum += this.cost(rows, match[j], j);
+		}
+		return Math.min(sum, INFINITE);
+	}
+
+	/**
+	 * Adds row i to the matching with one shortest augmenting path, adjusting
+	 * the potentials (one step of the Hungarian method).
+	 */
+	private void augment(int i, int[] rows, int[] u, int[] v, int[] p) {
+		p[0] = i;
+		int j0 = 0;
+		Arrays.fill(this.minv, UNBOUNDED);
+		Arrays.fill(this.used, false);
+		do {
+			this.used[j0] = true;
+			int i0 = p[j0];
+			int delta = UNBOUNDED;
+			int j1 = 0;
+			for (int j = 1; j <= this.n; j++) {
+				if (!this.used[j]) {
+					int cur = this.cost(rows, i0, j) - u[i0] - v[j];
+					if (cur < this.minv[j]) {
+						this.minv[j] = cur;
+						this.way[j] = j0;
+					}
+					if (this.minv[j] < delta) {
+						delta = this.minv[j];
+						j1 = j;
+					}
+				}
+			}
+			for (int j = 0; j <= this.n; j++) {
+				if (this.used[j]) {
+					u[p[j]] += delta;
+					v[j] -= delta;
+				} else {
+					this.minv[j] -= delta;
+				}
+			}
+			j0 = j1;
+		} while (p[j0] != 0);
+		do {
+			int j1 = this.way[j0];
+			p[j0] = p[j1];
+			j0 = j1;
+		} while (j0 != 0);
+	}
+}
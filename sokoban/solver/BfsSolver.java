@@ -0,0 +1,160 @@
+package sokoban.solver;
+
+/**
+ * A push-optimal solver that searches the positions of a level breadth-first.
+ *
+ * <p>
+ * A position is the set of box cells together with the region of the player,
+ * represented by its smallest cell; positions that differ only in where the
+ * player stands inside the same region are the same position. The search
+ * expands positions in order of the number of pushes from the start, so the
+ * first solution found has the fewest pushes. Between pushes the player walks
+ * along shortest paths.
+ *
+ * <p>
+ * Positions are kept in a {@code StateTable}, which packs the boxes of a
+ * position into a bit set over the floor cells and doubles as the queue of
+ * the search. Pushes onto dead squares of the maze and pushes that freeze a
+ * box off a storage location ({@code FreezeDeadlock}) are never generated.
+ * The macro pushes of the maze are not used, since a macro of several pushes
+ * would break the order of expansion.
+ *
+ * <p>
+ * The search gives up, rather than run out of memory, once the table holds as
+ * many positions as fit in the heap ({@code StateTable.heapCapacity}).
+ */
+public class BfsSolver implements Solver {
+	private final int maxStates;
+
+	/**
+	 * Initializes a solver that searches until the level is solved, the search
+	 * space is exhausted or the positions no longer fit in the heap.
+	 */
+	public BfsSolver() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a solver that gives up once it has stored the specified number
+	 * of positions, or fewer if that many do not fit in the heap.
+	 *
+	 * @param maxStates the maximum number of positions to store
+	 */
+	public BfsSolver(int maxStates) {
+		this.maxStates = maxStates;
+	}
+
+	@Override
+	public String name() {
+		return "bfs";
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		int n = maze.boxCount();
+		int words = maze.packedWords();
+		Expander ex = new Expander(maze);
+		FreezeDeadlock freeze = new FreezeDeadlock(maze, metrics);
+		StateTable table = new StateTable(words);
+		int maxStates = Math.min(this.maxStates, StateTable.heapCapacity(words));
+		int[] boxes = maze.startBoxes();
+		if (maze.isSolved(boxes, 0, n)) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.SOLVED, "", 0, 0, 0, System.nanoTime() - start,
+					table.bytes());
+		}
+		int[] child = new int[words];
+		maze.pack(boxes, 0, n, child, 0);
+		ex.load(maze.startPlayer(), boxes, 0, n);
+		table.add(-1, -1, ex.normalizedPlayer(), child);
+
+		int goals = maze.goalCount();
+		long expanded = 0;
+		long generated = 0;
+		metrics.startPhase("search");
+		for (int node = 0; node < table.size(); node++) {
+			int[] records = table.records();
+			int at = table.offset(node);
+			maze.unpack(records, at + StateTable.BOXES, boxes);
+			ex.load(records[at + StateTable.PLAYER], boxes, 0, n);
+			ex.findPiCorral();
+			freeze.load(boxes, 0, n);
+			expanded++;
+			metrics.addExpanded();
+			metrics.setFrontier(table.size() - node - 1);
+			int onGoal = 0;
+			for (int i = 0; i < n; i++) {
+				if (maze.isGoal(boxes[i])) {
+					onGoal++;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				int from = boxes[i];
+				for (int d = 0; d < 4; d++) {
+					int to = from + maze.step(d);
+					if (!ex.canPush(from, d)) {
+						continue;
+					}
+					if (!ex.allowsPushTo(to)) {
+						metrics.addPrune(SolverMetrics.Prune.CORRAL);
+						continue;
+					}
+					if (maze.isDead(to)) {
+						metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+						continue;
+					}
+					if (freeze.isDeadlockedAfterPush(from, to)) {
+						continue;
+					}
+					System.arraycopy(records, at + StateTable.BOXES, child, 0, words);
+					int f = maze.floorIndex(from);
+					int t = maze.floorIndex(to);
+					child[f >>> 5] &= ~(1 << f);
+					child[t >>> 5] |= 1 << t;
+					int player = ex.normalizedAfterPush(from, to);
+					generated++;
+					metrics.addGenerated();
+					int added = table.add(node, 4 * from + d, player, child);
+					if (added < 0) {
+						continue;
+					}
+					int childOnGoal = onGoal - (maze.isGoal(from) ? 1 : 0) + (maze.isGoal(to) ? 1 : 0);
+					if (childOnGoal == goals) {
+						metrics.startPhase("path");
+						int[] path = pushesTo(table, added);
+						String moves = Solution.movesOf(maze, null, path);
+						metrics.finish();
+						return new Solution(this.name(), Solution.Status.SOLVED, moves, path.length, expanded, generated,
+								System.nanoTime() - start, table.bytes());
+					}
+					if (table.size() >= maxStates) {
+						metrics.finish();
+						return new Solution(this.name(), Solution.Status.GAVE_UP, "", 0, expanded, generated,
+								System.nanoTime() - start, table.bytes());
+					}
+				}
+			}
+		}
+		metrics.finish();
+		return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, expanded, generated,
+				System.nanoTime() - start, table.bytes());
+	}
+
+	/**
+	 * Returns the pushes from the start position to the specified position of
+	 * the table, following the parent links.
+	 */
+	static int[] pushesTo(StateTable table, int node) {
+		int depth = 0;
+		for (int p = node; table.parent(p) >= 0; p = table.parent(p)) {
+			depth++;
+		}
+		int[] pushes = new int[depth];
+		for (int p = node; table.parent(p) >= 0; p = table.parent(p)) {
+			pushes[--depth] = table.push(p);
+		}
+		return pushes;
+	}
+}
@@ -0,0 +1,558 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A push-optimal solver that searches breadth-first from both ends: forwards
+ * from the start position by pushing boxes, and backwards from the solved
+ * positions by pulling them.
+ *
+ * <p>
+ * The backward search plays the reverse game: the boxes start on the storage
+ * locations, with the player in any of the regions next to them, and the
+ * player pulls a box by stepping away from it, so that every pull undoes a
+ * push. Positions of both searches are kept in one {@code StateTable}, each
+ * marked with the search that found it and its depth in that search. When a
+ * search generates a position the other one has found, the two paths meet;
+ * the search finishes the layer it is expanding and keeps the shortest
+ * meeting, which gives the fewest pushes because no position of the two
+ * searches was common before the layer. Each step expands the whole next
+ * layer of the search whose layer is smaller.
+ *
+ * <p>
+ * The forward search prunes like {@code BfsSolver}. The backward search never
+ * pulls a box on to a cell that no box of the start position can be pushed to,
+ * since the pulls that follow could not undo that. Nor does it make a pull
+ * after which a box can never be pulled again off a cell of the start
+ * position: a box can be pulled along a direction if the two cells next to it
+ * in that direction are floor, and a box whose every direction is blocked by
+ * walls or by such frozen boxes stays where it is. The walls and the frozen
+ * boxes close off regions of the maze that no box can leave or enter, and a
+ * pull that leaves a region with another number of boxes than the start
+ * position has there is not made either, nor is a pull after which the player
+ * has no room to pull again, unless it brings every box back to its cell of
+ * the start position. The backward search only needs the solved positions to
+ * have as many boxes as storage locations; on other levels it stays empty and
+ * the solver is a plain breadth-first search. The statistics of the meeting
+ * are reported as {@code MeetStats}.
+ *
+ * <p>
+ * The two searches keep every position they find in the heap, and the solver
+ * gives up once it has stored as many positions as fit in the heap, or the
+ * maximum number of positions it was given if that is smaller.
+ */
+public class BidirectionalSolver implements Solver {
+	private final int maxStates;
+
+	/**
+	 * Initializes a solver that searches until the level is solved, the search
+	 * space is exhausted or the heap is full.
+	 */
+	public BidirectionalSolver() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a solver that gives up once it has stored the specified number
+	 * of positions, counting both searches, or once the heap is full.
+	 *
+	 * @param maxStates the maximum number of positions to store
+	 */
+	public BidirectionalSolver(int maxStates) {
+		this.maxStates = maxStates;
+	}
+
+	@Override
+	public String name() {
+		return "bidir";
+	}
+
+	/**
+	 * The state of one search of the shared table.
+	 */
+	private final class Search {
+		private final Maze maze;
+		private final int n;
+		private final int words;
+		private final Expander ex;
+		private final FreezeDeadlock freeze;
+		private final SolverMetrics metrics;
+		private final StateTable table;
+		private final int maxStates;
+		private final boolean reverse;
+		private final int[] boxes;
+		private final int[] child;
+
+		// for the backward search, the cells no box of the start position can
+		// be pushed to, where a pulled box can never get back to the start
+		private final boolean[] unreachable;
+
+		// for the backward search, the cells of the boxes of the start
+		// position, and of the position being expanded and the frozen boxes and
+		// regions of a pull from it
+		private final boolean[] start;
+		private final boolean[] occupied;
+		private final boolean[] frozen;
+		private final int[] region;
+		private final int[] cells;
+
+		// the positions of the search in the order they were found; the
+		// current layer runs from layerStart to layerEnd
+		private int[] queue = new int[1024];
+		private int count;
+		private int layerStart;
+		private int layerEnd;
+		private int depth;
+		private long expanded;
+		private long generated;
+
+		Search(Maze maze, StateTable table, int maxStates, boolean reverse, SolverMetrics metrics) {
+			this.maze = maze;
+			this.n = maze.boxCount();
+			this.words = maze.packedWords();
+			this.ex = new Expander(maze);
+			this.freeze = new FreezeDeadlock(maze, metrics);
+			this.metrics = metrics;
+			this.table = table;
+			this.maxStates = maxStates;
+			this.reverse = reverse;
+			this.boxes = new int[this.n];
+			this.child = new int[this.words];
+			this.unreachable = reverse ? unreachableCells(maze) : null;
+			this.start = new boolean[maze.size()];
+			for (int box : maze.startBoxes()) {
+				this.start[box] = true;
+			}
+			this.occupied = new boolean[maze.size()];
+			this.frozen = new boolean[maze.size()];
+			this.region = new int[maze.size()];
+			this.cells = new int[maze.size()];
+		}
+
+		void append(int node) {
+			if (this.count == this.queue.length) {
+				this.queue = Arrays.copyOf(this.queue, 2 * this.count);
+			}
+			this.queue[this.count++] = node;
+		}
+
+		/**
+		 * Returns the number of positions of the next layer to expand.
+		 */
+		int layerSize() {
+			return this.count - this.layerEnd;
+		}
+
+		/**
+		 * Expands the next layer, adding the new positions to the table and
+		 * recording the meetings with the other search in meeting.
+		 */
+		void expandLayer(Meeting meeting, Tags tags) {
+			this.layerStart = this.layerEnd;
+			this.layerEnd = this.count;
+			for (int q = this.layerStart; q < this.layerEnd; q++) {
+				this.metrics.setFrontier(this.count - q - 1);
+				this.expand(this.queue[q], meeting, tags);
+				if (tags.full || meeting.solvedNode >= 0) {
+					break;
+				}
+			}
+			this.depth++;
+		}
+
+		private void expand(int node, Meeting meeting, Tags tags) {
+			int[] records = this.table.records();
+			int at = this.table.offset(node);
+			this.maze.unpack(records, at + StateTable.BOXES, this.boxes);
+			this.ex.load(records[at + StateTable.PLAYER], this.boxes, 0, this.n);
+			this.expanded++;
+			this.metrics.addExpanded();
+			// the boxes on the cells where the search ends: the storage
+			// locations forwards, the cells of the start position backwards
+			int atEnd = 0;
+			if (this.reverse) {
+				Arrays.fill(this.occupied, false);
+				for (int i = 0; i < this.n; i++) {
+					this.occupied[this.boxes[i]] = true;
+					if (this.start[this.boxes[i]]) {
+						atEnd++;
+					}
+				}
+			} else {
+				this.ex.findPiCorral();
+				this.freeze.load(this.boxes, 0, this.n);
+				for (int i = 0; i < this.n; i++) {
+					if (this.maze.isGoal(this.boxes[i])) {
+						atEnd++;
+					}
+				}
+			}
+			for (int i = 0; i < this.n; i++) {
+				int from = this.boxes[i];
+				for (int d = 0; d < 4; d++) {
+					int step = this.maze.step(d);
+					int to;
+					int player;
+					int push;
+					if (this.reverse) {
+						// the player stands on to, in direction d of the box, and
+						// steps on to the next cell, pulling the box on to to
+						to = from + step;
+						if (!this.ex.isReachable(to) || !this.ex.isReachable(to + step)) {
+							continue;
+						}
+						if (this.unreachable[to]) {
+							// the dead squares of pulling
+							this.metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+							continue;
+						}
+						SolverMetrics.Prune prune = this.deadAfterPull(from, to);
+						if (prune != null) {
+							this.metrics.addPrune(prune);
+							continue;
+						}
+						player = this.ex.normalizedAfterPush(from, to, to + step);
+						if (!this.ex.canPullAfterPush(from, to) && atEnd - (this.start[from] ? 1 : 0)
+								+ (this.start[to] ? 1 : 0) != this.n) {
+							// no pull can follow, so only the start position may end
+							// the backward search there
+							this.metrics.addPrune(SolverMetrics.Prune.CORRAL);
+							continue;
+						}
+						// the forward push undone by the pull
+						push = 4 * to + (d ^ 1);
+					} else {
+						to = from + step;
+						if (!this.ex.canPush(from, d)) {
+							continue;
+						}
+						if (!this.ex.allowsPushTo(to)) {
+							this.metrics.addPrune(SolverMetrics.Prune.CORRAL);
+							continue;
+						}
+						if (this.maze.isDead(to)) {
+							this.metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+							continue;
+						}
+						if (this.freeze.isDeadlockedAfterPush(from, to)) {
+							continue;
+						}
+						player = this.ex.normalizedAfterPush(from, to);
+						push = 4 * from + d;
+					}
+					this.generated++;
+					this.metrics.addGenerated();
+					records = this.table.records();
+					System.arraycopy(records, at + StateTable.BOXES, this.child, 0, this.words);
+					int f = this.maze.floorIndex(from);
+					int t = this.maze.floorIndex(to);
+					this.child[f >>> 5] &= ~(1 << f);
+					this.child[t >>> 5] |= 1 << t;
+					int added = this.table.add(node, push, player, this.child);
+					if (added >= 0) {
+						tags.tag(added, this.reverse, this.depth + 1);
+						this.append(added);
+						if (!this.reverse && atEnd - (this.maze.isGoal(from) ? 1 : 0)
+								+ (this.maze.isGoal(to) ? 1 : 0) == this.maze.goalCount()) {
+							meeting.solvedNode = added;
+							return;
+						}
+						if (this.table.size() >= this.maxStates) {
+							tags.full = true;
+							return;
+						}
+						continue;
+					}
+					int existing = -1 - added;
+					if (tags.reverse[existing] != this.reverse) {
+						// the depths of the common position in the two searches
+						int mine = this.depth + 1;
+						int theirs = tags.depth[existing];
+						meeting.offer(this.reverse, node, push, existing, this.reverse ? theirs : mine,
+								this.reverse ? mine : theirs);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the kind of pruning that leaves out the pull of the box on
+		 * from on to to in the backward search, or null if the pull can be
+		 * made. The position expanded must be in occupied.
+		 */
+		private SolverMetrics.Prune deadAfterPull(int from, int to) {
+			this.occupied[from] = false;
+			this.occupied[to] = true;
+			try {
+				// every box starts frozen, and a box with a direction to be pulled
+				// along past walls and frozen boxes is not, until none changes
+				for (int i = 0; i < this.n; i++) {
+					this.frozen[this.boxes[i] == from ? to : this.boxes[i]] = true;
+				}
+				int frozenCount = this.n;
+				for (boolean changed = true; changed;) {
+					changed = false;
+					for (int i = 0; i < this.n; i++) {
+						int box = this.boxes[i] == from ? to : this.boxes[i];
+						if (this.frozen[box] && this.canBePulled(box)) {
+							this.frozen[box] = false;
+							frozenCount--;
+							changed = true;
+						}
+					}
+				}
+				if (frozenCount == 0) {
+					return null;
+				}
+				for (int i = 0; i < this.n; i++) {
+					int box = this.boxes[i] == from ? to : this.boxes[i];
+					if (this.frozen[box] && !this.start[box]) {
+						return SolverMetrics.Prune.FREEZE;
+					}
+				}
+				return this.regionsMatchStart() ? null : SolverMetrics.Prune.CORRAL;
+			} finally {
+				for (int i = 0; i < this.n; i++) {
+					this.frozen[this.boxes[i]] = false;
+				}
+				this.frozen[to] = false;
+				this.occupied[to] = false;
+				this.occupied[from] = true;
+			}
+		}
+
+		private boolean canBePulled(int box) {
+			for (int d = 0; d < 4; d++) {
+				int step = this.maze.step(d);
+				if (this.isOpen(box + step) && this.isOpen(box + 2 * step)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isOpen(int cell) {
+			return this.maze.isFloor(cell) && !this.frozen[cell];
+		}
+
+		/**
+		 * Returns whether every region closed off by the walls and the frozen
+		 * boxes holds as many of the other boxes as the start position has
+		 * boxes there.
+		 */
+		private boolean regionsMatchStart() {
+			Arrays.fill(this.region, 0);
+			int regions = 0;
+			for (int cell = 0; cell < this.maze.size(); cell++) {
+				if (!this.isOpen(cell) || this.region[cell] != 0) {
+					continue;
+				}
+				regions++;
+				this.region[cell] = regions;
+				this.cells[0] = cell;
+				int tail = 1;
+				int balance = 0;
+				for (int head = 0; head < tail; head++) {
+					int c = this.cells[head];
+					balance += (this.occupied[c] ? 1 : 0) - (this.start[c] ? 1 : 0);
+					for (int d = 0; d < 4; d++) {
+						int next = c + this.maze.step(d);
+						if (this.isOpen(next) && this.region[next] == 0) {
+							this.region[next] = regions;
+							this.cells[tail++] = next;
+						}
+					}
+				}
+				if (balance != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The search and depth of every position of the shared table.
+	 */
+	private static final class Tags {
+		private boolean[] reverse = new boolean[1024];
+		private int[] depth = new int[1024];
+		private boolean full;
+
+		void tag(int node, boolean reverse, int depth) {
+			if (node == this.depth.length) {
+				this.reverse = Arrays.copyOf(this.reverse, 2 * node);
+				this.depth = Arrays.copyOf(this.depth, 2 * node);
+			}
+			this.reverse[node] = reverse;
+			this.depth[node] = depth;
+		}
+
+		long bytes() {
+			return 5L * this.depth.length;
+		}
+	}
+
+	/**
+	 * The shortest meeting of the two searches found so far: a push or pull
+	 * from a position of one search to a position of the other.
+	 */
+	private static final class Meeting {
+		private int pushes = Integer.MAX_VALUE;
+		private int forwardNode = -1;
+		private int reverseNode = -1;
+		private int push;
+		private int forwardDepth;
+		private int reverseDepth;
+		private long meetings;
+
+		// a position solved by the forward search alone, on levels whose
+		// backward search is empty
+		private int solvedNode = -1;
+
+		void offer(boolean fromReverse, int node, int push, int existing, int forwardDepth, int reverseDepth) {
+			this.meetings++;
+			if (forwardDepth + reverseDepth >= this.pushes) {
+				return;
+			}
+			this.pushes = forwardDepth + reverseDepth;
+			this.forwardDepth = forwardDepth;
+			this.reverseDepth = reverseDepth;
+			this.push = push;
+			this.forwardNode = fromReverse ? existing : node;
+			this.reverseNode = fromReverse ? node : existing;
+		}
+
+		boolean found() {
+			return this.forwardNode >= 0;
+		}
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		int n = maze.boxCount();
+		int words = maze.packedWords();
+		StateTable table = new StateTable(words);
+		Tags tags = new Tags();
+		Meeting meeting = new Meeting();
+		// the tags and the queue of a search take nine bytes per position
+		int maxStates = Math.min(this.maxStates, StateTable.heapCapacity(words, 9));
+		Search forward = new Search(maze, table, maxStates, false, metrics);
+		Search backward = new Search(maze, table, maxStates, true, metrics);
+		int[] boxes = maze.startBoxes();
+		if (maze.isSolved(boxes, 0, n)) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.SOLVED, "", 0, 0, 0, System.nanoTime() - start,
+					table.bytes());
+		}
+		int[] packed = new int[words];
+		maze.pack(boxes, 0, n, packed, 0);
+		Expander ex = new Expander(maze);
+		ex.load(maze.startPlayer(), boxes, 0, n);
+		tags.tag(table.add(-1, -1, ex.normalizedPlayer(), packed), false, 0);
+		forward.append(0);
+		if (maze.goalCount() == n) {
+			this.addSolvedPositions(maze, table, tags, backward, ex);
+		}
+
+		Solution.Status status = Solution.Status.UNSOLVABLE;
+		metrics.startPhase("search");
+		while (forward.layerSize() > 0 && (backward.layerSize() > 0 || maze.goalCount() != n)) {
+			Search next = maze.goalCount() == n && backward.layerSize() < forward.layerSize() ? backward : forward;
+			next.expandLayer(meeting, tags);
+			if (meeting.found() || meeting.solvedNode >= 0) {
+				status = Solution.Status.SOLVED;
+				break;
+			}
+			if (tags.full) {
+				status = Solution.Status.GAVE_UP;
+				break;
+			}
+		}
+		metrics.startPhase("path");
+		int[] path = new int[0];
+		if (meeting.solvedNode >= 0) {
+			path = BfsSolver.pushesTo(table, meeting.solvedNode);
+			meeting.forwardDepth = path.length;
+		} else if (meeting.found()) {
+			int[] head = BfsSolver.pushesTo(table, meeting.forwardNode);
+			path = Arrays.copyOf(head, meeting.pushes);
+			path[head.length] = meeting.push;
+			int k = head.length + 1;
+			for (int p = meeting.reverseNode; table.parent(p) >= 0; p = table.parent(p)) {
+				path[k++] = table.push(p);
+			}
+		}
+		String moves = Solution.movesOf(maze, null, path);
+		metrics.finish();
+		MeetStats stats = new MeetStats(forward.expanded, backward.expanded, forward.count, backward.count,
+				forward.depth, backward.depth, meeting.forwardDepth, meeting.reverseDepth, meeting.meetings);
+		long bytes = table.bytes() + tags.bytes() + 4L * (forward.queue.length + backward.queue.length);
+		Solution solution = new Solution(this.name(), status, moves, path.length,
+				forward.expanded + backward.expanded, forward.generated + backward.generated,
+				System.nanoTime() - start, bytes);
+		solution.setMeetStats(stats);
+		return solution;
+	}
+
+	/**
+	 * Returns the cells to which no box of the start position can be pushed,
+	 * even with the other boxes out of the way.
+	 */
+	private static boolean[] unreachableCells(Maze maze) {
+		boolean[] reached = new boolean[maze.size()];
+		int[] queue = new int[maze.size()];
+		int tail = 0;
+		for (int box : maze.startBoxes()) {
+			reached[box] = true;
+			queue[tail++] = box;
+		}
+		for (int head = 0; head < tail; head++) {
+			for (int d = 0; d < 4; d++) {
+				int step = maze.step(d);
+				int to = queue[head] + step;
+				if (!reached[to] && maze.isFloor(to) && maze.isFloor(queue[head] - step)) {
+					reached[to] = true;
+					queue[tail++] = to;
+				}
+			}
+		}
+		boolean[] unreachable = new boolean[maze.size()];
+		for (int cell = 0; cell < maze.size(); cell++) {
+			unreachable[cell] = maze.isFloor(cell) && !reached[cell];
+		}
+		return unreachable;
+	}
+
+	/**
+	 * Adds the solved positions to the table as the first layer of the
+	 * backward search: the boxes on the storage locations, with the player in
+	 * each of the regions next to a box.
+	 */
+	private void addSolvedPositions(Maze maze, StateTable table, Tags tags, Search backward, Expander ex) {
+		int n = maze.boxCount();
+		int[] goals = maze.goals();
+		int[] packed = new int[maze.packedWords()];
+		maze.pack(goals, 0, n, packed, 0);
+		boolean[] covered = new boolean[maze.size()];
+		for (int goal : goals) {
+			for (int d = 0; d < 4; d++) {
+				int cell = goal + maze.step(d);
+				if (!maze.isFloor(cell) || maze.isGoal(cell) || covered[cell]) {
+					continue;
+				}
+				ex.load(cell, goals, 0, n);
+				for (int c = 0; c < maze.size(); c++) {
+					covered[c] |= ex.isReachable(c);
+				}
+				int added = table.add(-1, -1, ex.normalizedPlayer(), packed);
+				if (added >= 0) {
+					tags.tag(added, true, 0);
+					backward.append(added);
+				}
+			}
+		}
+	}
+}
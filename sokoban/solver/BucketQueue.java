@@ -0,0 +1,92 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of position numbers with small non-negative integer
+ * priorities, kept as one stack per priority.
+ *
+ * <p>
+ * Adding and removing take constant time apart from the occasional growth of
+ * a stack. Among the positions with the lowest priority the one added last is
+ * removed first, which makes an A* search prefer the most recently generated,
+ * and therefore deepest, positions among those with equal estimates.
+ */
+final class BucketQueue {
+	private int[][] buckets = new int[64][];
+	private int[] sizes = new int[64];
+	private int lowest = Integer.MAX_VALUE;
+	private long count;
+
+	/**
+	 * Adds a position with the specified priority.
+	 *
+	 * @param priority a non-negative priority
+	 * @param node     the number of a position
+	 */
+	void add(int priority, int node) {
+		if (priority >= this.buckets.length) {
+			int capacity = Math.max(priority + 1, 2 * this.buckets.length);
+			this.buckets = Arrays.copyOf(this.buckets, capacity);
+			this.sizes = Arrays.copyOf(this.sizes, capacity);
+		}
+		int[] bucket = this.buckets[priority];
+		if (bucket == null) {
+			bucket = new int[256];
+			this.buckets[priority] = bucket;
+		} else if (this.sizes[priority] == bucket.length) {
+			bucket = Arrays.copyOf(bucket, 2 * bucket.length);
+			this.buckets[priority] = bucket;
+		}
+		bucket[this.sizes[priority]++] = node;
+		this.lowest = Math.min(this.lowest, priority);
+		this.count++;
+	}
+
+	/**
+	 * Returns {@code true} if the queue is empty.
+	 *
+	 * @return {@code true} if the queue is empty
+	 */
+	boolean isEmpty() {
+		return this.count == 0;
+	}
+
+	/**
+	 * Returns the number of entries in the queue.
+	 *
+	 * @return the number of entries in the queue
+	 */
+	long size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the lowest priority in the queue, which must not be empty.
+	 *
+	 * @return the lowest priority in the queue
+	 */
+	int lowestPriority() {
+		while (this.sizes[this.lowest] == 0) {
+			this.lowest++;
+		}
+		return this.lowest;
+	}
+
+	/**
+	 * Removes and returns a position with the lowest priority. The queue must
+	 * not be empty.
+	 *
+	 * @return the number of a position with the lowest priority
+	 */
+	int poll() {
+		int priority = this.lowestPriority();
+		this.count--;
+		int node = this.buckets[priority][--this.sizes[priority]];
+		if (this.sizes[priority] == 0 && this.buckets[priority].length > 4096) {
+			// release the memory of large buckets once they are drained
+			this.buckets[priority] = null;
+		}
+		return node;
+	}
+}
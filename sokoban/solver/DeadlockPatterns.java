@@ -0,0 +1,237 @@
+package sokoban.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A store of box arrangements that are known to be dead or alive, shared by
+ * the searches of any number of levels and saved to a file between runs.
+ *
+ * <p>
+ * An arrangement is the content of the five by five window of cells around a
+ * pushed box: walls, floor, storage locations and boxes, encoded in base five
+ * as its signature by {@code PatternDeadlock}. It is dead if the boxes of the
+ * window can neither all be pushed onto storage locations of the window nor
+ * out of it, whatever the rest of the level; a position that contains a dead
+ * arrangement can then not be solved, in any level. An arrangement is alive
+ * if its proof did not find it dead, so that it need not be proved again.
+ *
+ * <p>
+ * The store is an open-addressing table of a fixed number of slots, each
+ * holding a signature shifted left by one with the low bit set if the
+ * arrangement is dead, and 0 if the slot is empty. Lookups take constant time
+ * and do not lock. Once three quarters of the slots are taken new
+ * arrangements are dropped. An instance is thread-safe.
+ */
+public final class DeadlockPatterns {
+
+	/**
+	 * The default number of slots of a store: about eight megabytes.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/** The result of a lookup of an arrangement that is not in the store. */
+	public static final int UNKNOWN = 0;
+	/** The result of a lookup of an arrangement that is alive. */
+	public static final int ALIVE = 1;
+	/** The result of a lookup of an arrangement that is dead. */
+	public static final int DEAD = 2;
+
+	private static final int MAGIC = 0x534B4450;
+	private static final int VERSION = 1;
+
+	private final AtomicLongArray slots;
+	private final int mask;
+	private final int limit;
+	private final LongAdder size = new LongAdder();
+	private final LongAdder dead = new LongAdder();
+	private final LongAdder prunes = new LongAdder();
+
+	/**
+	 * Initializes an empty store with {@code DEFAULT_CAPACITY} slots.
+	 */
+	public DeadlockPatterns() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes an empty store with the smallest power of two of slots that
+	 * is at least the specified capacity.
+	 *
+	 * @param capacity the minimum number of slots
+	 */
+	public DeadlockPatterns(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+		this.slots = new AtomicLongArray(slots);
+		this.mask = slots - 1;
+		this.limit = slots / 4 * 3;
+	}
+
+	/**
+	 * Reads a store from the specified file, written by {@code save}, with room
+	 * for at least as many new arrangements as it holds.
+	 *
+	 * @param file a file written by {@code save}
+	 * @return the arrangements of the file
+	 * @throws IOException if the file cannot be read or was not written by
+	 *                     {@code save} with the same window
+	 */
+	public static DeadlockPatterns load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != PatternDeadlock.SIDE
+					|| in.readInt() != PatternDeadlock.MAX_STATES) {
+				throw new IOException(file + " is not a deadlock pattern file of this version");
+			}
+			int count = in.readInt();
+			DeadlockPatterns patterns = new DeadlockPatterns(Math.max(DEFAULT_CAPACITY, 4 * count));
+			for (int i = 0; i < count; i++) {
+				long entry = in.readLong();
+				patterns.add(entry >>> 1, (entry & 1) != 0);
+			}
+			return patterns;
+		}
+	}
+
+	/**
+	 * Writes the arrangements of this store to the specified file, replacing
+	 * it. The file is written next to its final place and then moved there, so
+	 * a failed save leaves the old file intact. Arrangements added while the
+	 * store is being saved may be left out.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		int count = 0;
+		for (int i = 0; i <= this.mask; i++) {
+			if (this.slots.get(i) != 0) {
+				count++;
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(PatternDeadlock.SIDE);
+			out.writeInt(PatternDeadlock.MAX_STATES);
+			out.writeInt(count);
+			for (int i = 0; i <= this.mask && count > 0; i++) {
+				long entry = this.slots.get(i);
+				if (entry != 0) {
+					out.writeLong(entry);
+					count--;
+				}
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private int home(long signature) {
+		long h = signature * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+	/**
+	 * Returns whether the arrangement with the specified signature is known to
+	 * be dead or alive.
+	 *
+	 * @param signature the signature of an arrangement, which is not 0
+	 * @return {@code DEAD}, {@code ALIVE} or {@code UNKNOWN}
+	 */
+	public int lookup(long signature) {
+		for (int i = this.home(signature);; i = (i + 1) & this.mask) {
+			long entry = this.slots.get(i);
+			if (entry == 0) {
+				return UNKNOWN;
+			}
+			if (entry >>> 1 == signature) {
+				return (entry & 1) != 0 ? DEAD : ALIVE;
+			}
+		}
+	}
+
+	/**
+	 * Records the arrangement with the specified signature as dead or alive,
+	 * unless it is already known or the store is full.
+	 *
+	 * @param signature the signature of an arrangement, which is not 0
+	 * @param dead      {@code true} if the arrangement is dead
+	 */
+	public void add(long signature, boolean dead) {
+		if (this.size.sum() >= this.limit) {
+			return;
+		}
+		long entry = signature << 1 | (dead ? 1 : 0);
+		for (int i = this.home(signature);; i = (i + 1) & this.mask) {
+			long current = this.slots.get(i);
+			if (current == 0) {
+				if (this.slots.compareAndSet(i, 0, entry)) {
+					this.size.increment();
+					if (dead) {
+						this.dead.increment();
+					}
+					return;
+				}
+				current = this.slots.get(i);
+			}
+			if (current >>> 1 == signature) {
+				// another thread proved it first, with the same result
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Counts a push that was not searched because it creates a dead
+	 * arrangement.
+	 */
+	void countPrune() {
+		this.prunes.increment();
+	}
+
+	/**
+	 * Returns the number of arrangements in the store.
+	 *
+	 * @return the number of arrangements
+	 */
+	public long size() {
+		return this.size.sum();
+	}
+
+	/**
+	 * Returns the number of dead arrangements in the store.
+	 *
+	 * @return the number of dead arrangements
+	 */
+	public long deadCount() {
+		return this.dead.sum();
+	}
+
+	/**
+	 * Returns the number of pushes the searches left out because they create a
+	 * dead arrangement, since the store was created.
+	 *
+	 * @return the number of pushes pruned by the store
+	 */
+	public long prunes() {
+		return this.prunes.sum();
+	}
+
+	/**
+	 * Returns a one-line summary of the content of the store.
+	 *
+	 * @return a one-line summary of the store
+	 */
+	@Override
+	public String toString() {
+		return String.format("patterns=%d dead=%d prunes=%d", this.size(), this.deadCount(), this.prunes());
+	}
+}
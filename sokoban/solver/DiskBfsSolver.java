@@ -0,0 +1,500 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A push-optimal breadth-first solver that keeps its positions in files on
+ * disk instead of on the heap, for levels with more positions than fit in
+ * memory.
+ *
+ * <p>
+ * Every layer of the search, the positions at one number of pushes from the
+ * start, is a {@code RecordFile} of records sorted by position: the packed
+ * boxes and the normalized player cell, followed by the push that led to the
+ * position. To expand a layer the solver reads it in order and collects the
+ * children in a buffer of a fixed number of positions; whenever the buffer is
+ * full it is sorted and written out as a run file. The runs are then merged
+ * into the next layer, dropping duplicates within the runs and, by walking
+ * every earlier layer in step with the merge, the positions found before.
+ * There are no random lookups: all the files are read and written
+ * sequentially, and the heap only holds the buffer.
+ *
+ * <p>
+ * The positions do not record their parents. When a push solves the level,
+ * the solver undoes the pushes one layer at a time, finding each earlier
+ * position by binary search in its layer. It prunes like {@code BfsSolver}.
+ * The files are created in a new directory that is deleted at the end of the
+ * search.
+ */
+public class DiskBfsSolver implements Solver {
+
+	/**
+	 * The default number of positions the buffer of children holds.
+	 */
+	public static final int DEFAULT_BUFFER_STATES = 1 << 20;
+
+	private final long maxStates;
+	private final Path directory;
+	private final int bufferStates;
+
+	/**
+	 * Initializes a solver that searches until the level is solved or the
+	 * search space is exhausted, with its files in the temporary directory.
+	 */
+	public DiskBfsSolver() {
+		this(Long.MAX_VALUE, Paths.get(System.getProperty("java.io.tmpdir")), DEFAULT_BUFFER_STATES);
+	}
+
+	/**
+	 * Initializes a solver that gives up once it has stored the specified number
+	 * of positions.
+	 *
+	 * @param maxStates    the maximum number of positions to store
+	 * @param directory    the directory in which to create the files
+	 * @param bufferStates the number of positions the buffer of children holds
+	 */
+	public DiskBfsSolver(long maxStates, Path directory, int bufferStates) {
+		this.maxStates = maxStates;
+		this.directory = directory;
+		this.bufferStates = bufferStates;
+	}
+
+	@Override
+	public String name() {
+		return "disk";
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		if (maze.isSolved(maze.startBoxes(), 0, maze.boxCount())) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.SOLVED, "", 0, 0, 0, System.nanoTime() - start, 0);
+		}
+		Path dir = null;
+		try {
+			dir = Files.createTempDirectory(this.directory, "sokoban-bfs");
+			return new Search(maze, dir, metrics).run(start);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			metrics.finish();
+			if (dir != null) {
+				try {
+					Files.deleteIfExists(dir);
+				} catch (IOException e) {
+					// the files are deleted; an empty directory may stay behind
+				}
+			}
+		}
+	}
+
+	/**
+	 * One search, with its files.
+	 */
+	private final class Search {
+		private final Maze maze;
+		private final Path dir;
+		private final int n;
+		private final int words;
+		// a record is the packed boxes, the player cell and the push; the
+		// first keyInts of them are the position
+		private final int keyInts;
+		private final int recordInts;
+		private final Expander ex;
+		private final FreezeDeadlock freeze;
+		private final SolverMetrics metrics;
+		private final List<RecordFile> layers = new ArrayList<>();
+		private final int[] buffer;
+		private final int[] order;
+		private final int[] record;
+		private final int[] boxes;
+		private final int[] next;
+		private int buffered;
+		private int files;
+		private long expanded;
+		private long generated;
+		private long stored;
+		private long diskBytes;
+
+		Search(Maze maze, Path dir, SolverMetrics metrics) {
+			this.maze = maze;
+			this.dir = dir;
+			this.n = maze.boxCount();
+			this.words = maze.packedWords();
+			this.keyInts = this.words + 1;
+			this.recordInts = this.words + 2;
+			this.ex = new Expander(maze);
+			this.freeze = new FreezeDeadlock(maze, metrics);
+			this.metrics = metrics;
+			this.buffer = new int[DiskBfsSolver.this.bufferStates * this.recordInts];
+			this.order = new int[DiskBfsSolver.this.bufferStates];
+			this.record = new int[this.recordInts];
+			this.boxes = new int[this.n];
+			this.next = new int[this.n];
+		}
+
+		private RecordFile newFile() throws IOException {
+			return new RecordFile(this.dir.resolve("f" + this.files++), this.recordInts);
+		}
+
+		Solution run(long start) throws IOException {
+			List<RecordFile> runs = new ArrayList<>();
+			try {
+				RecordFile first = this.newFile();
+				this.layers.add(first);
+				this.ex.load(this.maze.startPlayer(), this.maze.startBoxes(), 0, this.n);
+				this.maze.pack(this.maze.startBoxes(), 0, this.n, this.record, 0);
+				this.record[this.words] = this.ex.normalizedPlayer();
+				this.record[this.words + 1] = -1;
+				first.append(this.record, 0);
+				first.finish();
+				this.stored = 1;
+				for (int depth = 0;; depth++) {
+					RecordFile layer = this.layers.get(depth);
+					this.metrics.startPhase("expand");
+					for (long i = 0; i < layer.size(); i++) {
+						this.metrics.setFrontier(layer.size() - i - 1);
+						layer.get(i, this.record, 0);
+						int push = this.expand(runs);
+						if (push >= 0) {
+							this.metrics.startPhase("path");
+							int[] path = this.pathTo(depth, this.record, push);
+							return this.solution(Solution.Status.SOLVED, path, start);
+						}
+					}
+					this.metrics.startPhase("merge");
+					this.spill(runs);
+					RecordFile merged = this.merge(runs);
+					for (RecordFile r : runs) {
+						r.close();
+					}
+					runs.clear();
+					if (merged.size() == 0) {
+						merged.close();
+						return this.solution(Solution.Status.UNSOLVABLE, new int[0], start);
+					}
+					this.layers.add(merged);
+					this.stored += merged.size();
+					if (this.stored >= DiskBfsSolver.this.maxStates) {
+						return this.solution(Solution.Status.GAVE_UP, new int[0], start);
+					}
+				}
+			} finally {
+				for (RecordFile r : runs) {
+					r.close();
+				}
+				for (RecordFile r : this.layers) {
+					r.close();
+				}
+			}
+		}
+
+		private Solution solution(Solution.Status status, int[] path, long start) {
+			String moves = Solution.movesOf(this.maze, null, path);
+			// the heap only holds the buffer; the files are reported apart
+			long bytes = 4L * this.buffer.length + 4L * this.order.length;
+			Solution solution = new Solution(DiskBfsSolver.this.name(), status, moves, path.length, this.expanded,
+					this.generated, System.nanoTime() - start, bytes);
+			solution.setDiskStats(new DiskStats(this.layers.size(), this.stored, this.diskBytes, this.files));
+			return solution;
+		}
+
+		/**
+		 * Expands the position in record, adding its children to the buffer,
+		 * and returns the push that solves the level from it, or -1.
+		 */
+		private int expand(List<RecordFile> runs) throws IOException {
+			this.maze.unpack(this.record, 0, this.boxes);
+			this.ex.load(this.record[this.words], this.boxes, 0, this.n);
+			this.ex.findPiCorral();
+			this.freeze.load(this.boxes, 0, this.n);
+			this.expanded++;
+			this.metrics.addExpanded();
+			int onGoal = 0;
+			for (int i = 0; i < this.n; i++) {
+				if (this.maze.isGoal(this.boxes[i])) {
+					onGoal++;
+				}
+			}
+			for (int i = 0; i < this.n; i++) {
+				int from = this.boxes[i];
+				for (int d = 0; d < 4; d++) {
+					int to = from + this.maze.step(d);
+					if (!this.ex.canPush(from, d)) {
+						continue;
+					}
+					if (!this.ex.allowsPushTo(to)) {
+						this.metrics.addPrune(SolverMetrics.Prune.CORRAL);
+						continue;
+					}
+					if (this.maze.isDead(to)) {
+						this.metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+						continue;
+					}
+					if (this.freeze.isDeadlockedAfterPush(from, to)) {
+						continue;
+					}
+					this.generated++;
+					this.metrics.addGenerated();
+					if (onGoal - (this.maze.isGoal(from) ? 1 : 0) + (this.maze.isGoal(to) ? 1 : 0) == this.maze
+							.goalCount()) {
+						return 4 * from + d;
+					}
+					if (this.buffered == this.order.length) {
+						this.spill(runs);
+					}
+					int at = this.buffered++ * this.recordInts;
+					System.arraycopy(this.record, 0, this.buffer, at, this.words);
+					int f = this.maze.floorIndex(from);
+					int t = this.maze.floorIndex(to);
+					this.buffer[at + (f >>> 5)] &= ~(1 << f);
+					this.buffer[at + (t >>> 5)] |= 1 << t;
+					this.buffer[at + this.words] = this.ex.normalizedAfterPush(from, to);
+					this.buffer[at + this.words + 1] = 4 * from + d;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Sorts the buffered children and writes them to a new run, without
+		 * duplicates.
+		 */
+		private void spill(List<RecordFile> runs) throws IOException {
+			if (this.buffered == 0) {
+				return;
+			}
+			for (int i = 0; i < this.buffered; i++) {
+				this.order[i] = i;
+			}
+			this.sort(0, this.buffered - 1);
+			RecordFile run = this.newFile();
+			int last = -1;
+			for (int i = 0; i < this.buffered; i++) {
+				int r = this.order[i];
+				if (last >= 0 && this.compare(this.buffer, last * this.recordInts, this.buffer,
+						r * this.recordInts) == 0) {
+					continue;
+				}
+				run.append(this.buffer, r * this.recordInts);
+				last = r;
+			}
+			run.finish();
+			this.diskBytes += run.bytes();
+			runs.add(run);
+			this.buffered = 0;
+		}
+
+		private int compare(int[] a, int i, int[] b, int j) {
+			for (int k = 0; k < this.keyInts; k++) {
+				if (a[i + k] != b[j + k]) {
+					return a[i + k] < b[j + k] ? -1 : 1;
+				}
+			}
+			return 0;
+		}
+
+		private int compareBuffered(int x, int y) {
+			return this.compare(this.buffer, x * this.recordInts, this.buffer, y * this.recordInts);
+		}
+
+		/**
+		 * Sorts order[lo..hi] by the positions of the buffered records.
+		 */
+		private void sort(int lo, int hi) {
+			while (lo < hi) {
+				int pivot = this.order[(lo + hi) >>> 1];
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (this.compareBuffered(this.order[i], pivot) < 0) {
+						i++;
+					}
+					while (this.compareBuffered(this.order[j], pivot) > 0) {
+						j--;
+					}
+					if (i <= j) {
+						int t = this.order[i];
+						this.order[i++] = this.order[j];
+						this.order[j--] = t;
+					}
+				}
+				// recurse into the smaller part so the stack stays shallow
+				if (j - lo < hi - i) {
+					this.sort(lo, j);
+					lo = i;
+				} else {
+					this.sort(i, hi);
+					hi = j;
+				}
+			}
+		}
+
+		/**
+		 * Merges the sorted runs into a new layer, dropping the positions that
+		 * appear in more than one run or in an earlier layer.
+		 */
+		private RecordFile merge(List<RecordFile> runs) throws IOException {
+			int k = runs.size();
+			int[] heads = new int[k * this.recordInts];
+			long[] positions = new long[k];
+			// a binary heap of the runs that are not exhausted, by head
+			int[] heap = new int[k];
+			int size = 0;
+			for (int r = 0; r < k; r++) {
+				runs.get(r).get(0, heads, r * this.recordInts);
+				heap[size] = r;
+				this.siftUp(heap, size++, heads);
+			}
+			int layers = this.layers.size();
+			int[] seen = new int[layers * this.recordInts];
+			long[] seenAt = new long[layers];
+			for (int l = 0; l < layers; l++) {
+				this.layers.get(l).get(0, seen, l * this.recordInts);
+			}
+			RecordFile merged = this.newFile();
+			int[] last = new int[this.recordInts];
+			boolean any = false;
+			while (size > 0) {
+				int r = heap[0];
+				int at = r * this.recordInts;
+				if (!any || this.compare(last, 0, heads, at) != 0) {
+					System.arraycopy(heads, at, last, 0, this.recordInts);
+					any = true;
+					if (!this.seenBefore(last, seen, seenAt)) {
+						merged.append(last, 0);
+					}
+				}
+				if (++positions[r] < runs.get(r).size()) {
+					runs.get(r).get(positions[r], heads, at);
+				} else {
+					heap[0] = heap[--size];
+				}
+				this.siftDown(heap, size, heads);
+			}
+			merged.finish();
+			this.diskBytes += merged.bytes();
+			return merged;
+		}
+
+		/**
+		 * Returns {@code true} if the position of record is in an earlier
+		 * layer, advancing the cursor of every layer up to it.
+		 */
+		private boolean seenBefore(int[] record, int[] seen, long[] seenAt) {
+			boolean found = false;
+			for (int l = 0; l < seenAt.length; l++) {
+				RecordFile layer = this.layers.get(l);
+				int at = l * this.recordInts;
+				int c;
+				while (seenAt[l] < layer.size() && (c = this.compare(seen, at, record, 0)) <= 0) {
+					if (c == 0) {
+						found = true;
+						break;
+					}
+					if (++seenAt[l] < layer.size()) {
+						layer.get(seenAt[l], seen, at);
+					}
+				}
+				if (found) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void siftUp(int[] heap, int i, int[] heads) {
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (this.compare(heads, heap[parent] * this.recordInts, heads, heap[i] * this.recordInts) <= 0) {
+					return;
+				}
+				int t = heap[parent];
+				heap[parent] = heap[i];
+				heap[i] = t;
+				i = parent;
+			}
+		}
+
+		private void siftDown(int[] heap, int size, int[] heads) {
+			int i = 0;
+			while (true) {
+				int c = 2 * i + 1;
+				if (c >= size) {
+					return;
+				}
+				if (c + 1 < size && this.compare(heads, heap[c + 1] * this.recordInts, heads,
+						heap[c] * this.recordInts) < 0) {
+					c++;
+				}
+				if (this.compare(heads, heap[i] * this.recordInts, heads, heap[c] * this.recordInts) <= 0) {
+					return;
+				}
+				int t = heap[c];
+				heap[c] = heap[i];
+				heap[i] = t;
+				i = c;
+			}
+		}
+
+		/**
+		 * Returns the pushes from the start to the position in record at the
+		 * specified depth, followed by the specified push, undoing one push at
+		 * a time and finding the position it was made from in the layer
+		 * before.
+		 */
+		private int[] pathTo(int depth, int[] record, int last) {
+			int[] path = new int[depth + 1];
+			path[depth] = last;
+			int[] key = record.clone();
+			for (int j = depth; j > 0; j--) {
+				int push = key[this.words + 1];
+				path[j - 1] = push;
+				int from = push >> 2;
+				int step = this.maze.step(push & 3);
+				this.maze.unpack(key, 0, this.boxes);
+				Expander.replace(this.boxes, 0, this.n, from + step, from, this.next);
+				this.ex.load(from - step, this.next, 0, this.n);
+				this.maze.pack(this.next, 0, this.n, key, 0);
+				key[this.words] = this.ex.normalizedPlayer();
+				if (!this.find(this.layers.get(j - 1), key)) {
+					throw new IllegalStateException("position before push " + push + " missing from layer " + (j - 1));
+				}
+			}
+			return path;
+		}
+
+		/**
+		 * Looks the position of key up in the sorted layer and, if it is there,
+		 * copies its record into key.
+		 */
+		private boolean find(RecordFile layer, int[] key) {
+			int[] probe = new int[this.recordInts];
+			long lo = 0;
+			long hi = layer.size() - 1;
+			while (lo <= hi) {
+				long mid = (lo + hi) >>> 1;
+				layer.get(mid, probe, 0);
+				int c = this.compare(probe, 0, key, 0);
+				if (c == 0) {
+					System.arraycopy(probe, 0, key, 0, this.recordInts);
+					return true;
+				}
+				if (c < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return false;
+		}
+	}
+}
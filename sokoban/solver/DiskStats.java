@@ -0,0 +1,68 @@
+package sokoban.solver;
+
+/**
+ * The statistics of a search that keeps its positions on disk: how many
+ * layers and positions it stored and how much it wrote.
+ */
+public final class DiskStats {
+	private final int layers;
+	private final long states;
+	private final long bytesWritten;
+	private final int files;
+
+	DiskStats(int layers, long states, long bytesWritten, int files) {
+		this.layers = layers;
+		this.states = states;
+		this.bytesWritten = bytesWritten;
+		this.files = files;
+	}
+
+	/**
+	 * Returns the number of layers the search stored, the start layer
+	 * included.
+	 *
+	 * @return the number of layers
+	 */
+	public int layers() {
+		return this.layers;
+	}
+
+	/**
+	 * Returns the number of distinct positions the layers held.
+	 *
+	 * @return the number of positions stored
+	 */
+	public long states() {
+		return this.states;
+	}
+
+	/**
+	 * Returns the number of bytes of records written to the runs and the
+	 * layers.
+	 *
+	 * @return the number of bytes written
+	 */
+	public long bytesWritten() {
+		return this.bytesWritten;
+	}
+
+	/**
+	 * Returns the number of files the search created, runs and layers.
+	 *
+	 * @return the number of files
+	 */
+	public int files() {
+		return this.files;
+	}
+
+	/**
+	 * Returns a one-line summary of these statistics.
+	 *
+	 * @return a one-line summary of these statistics
+	 */
+	@Override
+	public String toString() {
+		return String.format("layers=%d states=%d disk=%.1fMB files=%d", this.layers, this.states,
+				this.bytesWritten / 1048576.0, this.files);
+	}
+}
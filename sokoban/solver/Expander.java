@@ -0,0 +1,463 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+import sokoban.Direction;
+
+/**
+ * Scratch state for expanding search positions of a {@code Maze}.
+ *
+ * <p>
+ * An expander holds one position at a time: the boxes, set by {@code load},
+ * and the region the player can reach from its cell without pushing. It
+ * enumerates the legal pushes of that position and computes the normalized
+ * player cell of the position after each push. All work arrays are allocated
+ * once, so loading and expanding a position allocates no objects.
+ *
+ * <p>
+ * The solvers follow the standard Sokoban rules and push one box at a time.
+ * {@code Board} also lets the player push a line of boxes, but every
+ * single-box push is a legal move on a {@code Board}, so every solution found
+ * with these rules can be played there.
+ *
+ * <p>
+ * An expander is not thread-safe; every thread needs its own.
+ */
+final class Expander {
+	private final Maze maze;
+	private final int[] steps = new int[4];
+	private final int[] queue;
+
+	// blocked[cell] if cell is not floor or has a box of the loaded position
+	private final boolean[] blocked;
+	private final int[] loaded;
+	private int loadedCount;
+
+	// reachMark[cell] == reachStamp if the player can reach cell
+	private final int[] reachMark;
+	private int reachStamp;
+
+	// work marks of the flood fills of other positions
+	private final int[] fillMark;
+	private int fillStamp;
+
+	// regionMark[cell] == regionStamp if cell is in the corral region[cell];
+	// boxMark marks the boxes already looked at for a corral
+	private final int[] regionMark;
+	private final int[] region;
+	private int regionStamp;
+	private final int[] boxMark;
+	private int boxStamp;
+	private int corral = -1;
+
+	private int player;
+	private int top;
+	private long boxHash;
+
+	/**
+	 * Initializes an expander for positions of the specified maze.
+	 *
+	 * @param maze a maze
+	 */
+	Expander(Maze maze) {
+		this.maze = maze;
+		for (int d = 0; d < 4; d++) {
+			this.steps[d] = maze.step(d);
+		}
+		this.queue = new int[maze.size()];
+		this.blocked = new boolean[maze.size()];
+		for (int cell = 0; cell < maze.size(); cell++) {
+			this.blocked[cell] = !maze.isFloor(cell);
+		}
+		this.loaded = new int[maze.boxCount()];
+		this.reachMark = new int[maze.size()];
+		this.fillMark = new int[maze.size()];
+		this.regionMark = new int[maze.size()];
+		this.region = new int[maze.size()];
+		this.boxMark = new int[maze.size()];
+	}
+
+	Maze maze() {
+		return this.maze;
+	}
+
+	private static int next(int stamp, int[] marks) {
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(marks, 0);
+			return 1;
+		}
+		return stamp + 1;
+	}
+
+	/**
+	 * Loads a position and computes the region of the player.
+	 *
+	 * @param player the cell of the player
+	 * @param boxes  an array holding the box cells
+	 * @param from   the index of the first box cell
+	 * @param count  the number of boxes
+	 */
+	void load(int player, int[] boxes, int from, int count) {
+		for (int i = 0; i < this.loadedCount; i++) {
+			this.blocked[this.loaded[i]] = false;
+		}
+		long h = 0;
+		for (int i = from; i < from + count; i++) {
+			this.blocked[boxes[i]] = true;
+			this.loaded[i - from] = boxes[i];
+			h ^= this.maze.boxKey(boxes[i]);
+		}
+		this.loadedCount = count;
+		this.boxHash = h;
+		this.player = player;
+		this.reachStamp = next(this.reachStamp, this.reachMark);
+		this.top = this.fill(player, this.reachMark, this.reachStamp);
+		this.corral = -1;
+	}
+
+	/**
+	 * Flood fills the cells reachable from start without pushing, marking them
+	 * with stamp in marks, and returns the smallest reachable cell.
+	 */
+	private int fill(int start, int[] marks, int stamp) {
+		int head = 0;
+		int tail = 0;
+		int min = start;
+		this.queue[tail++] = start;
+		marks[start] = stamp;
+		while (head < tail) {
+			int cell = this.queue[head++];
+			if (cell < min) {
+				min = cell;
+			}
+			for (int d = 0; d < 4; d++) {
+				int n = cell + this.steps[d];
+				if (marks[n] != stamp && !this.blocked[n]) {
+					marks[n] = stamp;
+					this.queue[tail++] = n;
+				}
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the normalized player cell of the loaded position: the smallest
+	 * cell the player can reach.
+	 *
+	 * @return the normalized player cell of the loaded position
+	 */
+	int normalizedPlayer() {
+		return this.top;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the boxes of the loaded position.
+	 *
+	 * @return the Zobrist hash of the boxes of the loaded position
+	 */
+	long boxHash() {
+		return this.boxHash;
+	}
+
+	/**
+	 * Returns {@code true} if the player can reach the specified cell in the
+	 * loaded position.
+	 *
+	 * @param cell a cell index
+	 * @return {@code true} if the player can reach the cell
+	 */
+	boolean isReachable(int cell) {
+		return this.reachMark[cell] == this.reachStamp;
+	}
+
+	/**
+	 * Returns {@code true} if there is a box on the specified cell in the loaded
+	 * position.
+	 *
+	 * @param cell a cell index
+	 * @return {@code true} if there is a box on the cell
+	 */
+	boolean hasBox(int cell) {
+		return this.blocked[cell] && this.maze.isFloor(cell);
+	}
+
+	/**
+	 * Returns {@code true} if the box on the specified cell can be pushed in the
+	 * specified direction in the loaded position: the player can reach the cell
+	 * behind the box and the cell in front of it is free floor.
+	 *
+	 * @param box       the cell of a box
+	 * @param direction the ordinal of a direction
+	 * @return {@code true} if the box can be pushed in the direction
+	 */
+	boolean canPush(int box, int direction) {
+		int step = this.steps[direction];
+		int to = box + step;
+		return this.reachMark[box - step] == this.reachStamp && !this.blocked[to];
+	}
+
+	/**
+	 * Looks for a PI-corral in the loaded position and, if there is one,
+	 * restricts {@code allowsPushTo} to the pushes into it.
+	 *
+	 * <p>
+	 * A corral is a connected region of free floor the player cannot reach. Its
+	 * boxes are the boxes next to the region; those the player can also reach
+	 * are on its border. The corral is a PI-corral if every push of a border box
+	 * the player can make now, except onto a dead square, goes into the region
+	 * (the I condition), and if the player can reach the cell behind every
+	 * border box that a push into the region would need (the P condition).
+	 * Corrals whose boxes are all on storage locations and that hold no storage
+	 * location are left alone, since nothing has to happen in them.
+	 *
+	 * <p>
+	 * Every solution has to push into such a corral sooner or later, and the
+	 * pushes elsewhere cannot make those pushes possible or others impossible,
+	 * so they can wait: only the pushes into the corral need be searched, which
+	 * keeps every optimal solution. When there are several PI-corrals, the one
+	 * with the fewest pushes is chosen.
+	 *
+	 * @return {@code true} if a PI-corral was found
+	 */
+	boolean findPiCorral() {
+		this.corral = -1;
+		this.regionStamp = next(this.regionStamp, this.regionMark);
+		int fewest = Integer.MAX_VALUE;
+		int id = 0;
+		for (int start = 0; start < this.maze.size(); start++) {
+			if (this.blocked[start] || this.reachMark[start] == this.reachStamp
+					|| this.regionMark[start] == this.regionStamp) {
+				continue;
+			}
+			int cells = this.fillRegion(start, id);
+			int pushes = this.corralPushes(cells, id);
+			if (pushes > 0 && pushes < fewest) {
+				fewest = pushes;
+				this.corral = id;
+			}
+			id++;
+		}
+		return this.corral >= 0;
+	}
+
+	/**
+	 * Marks the region of free cells the player cannot reach around start as
+	 * region id, leaving its cells at the start of the queue, and returns their
+	 * number.
+	 */
+	private int fillRegion(int start, int id) {
+		int head = 0;
+		int tail = 0;
+		this.queue[tail++] = start;
+		this.regionMark[start] = this.regionStamp;
+		this.region[start] = id;
+		while (head < tail) {
+			int cell = this.queue[head++];
+			for (int d = 0; d < 4; d++) {
+				int n = cell + this.steps[d];
+				if (this.regionMark[n] != this.regionStamp && !this.blocked[n]) {
+					this.regionMark[n] = this.regionStamp;
+					this.region[n] = id;
+					this.queue[tail++] = n;
+				}
+			}
+		}
+		return tail;
+	}
+
+	private boolean inRegion(int cell, int id) {
+		return this.regionMark[cell] == this.regionStamp && this.region[cell] == id;
+	}
+
+	/**
+	 * Returns the number of pushes the player can make into the corral made of
+	 * the first cells of the queue if it is a PI-corral with something to do,
+	 * or 0 if it is not.
+	 */
+	private int corralPushes(int cells, int id) {
+		this.boxStamp = next(this.boxStamp, this.boxMark);
+		boolean work = false;
+		int pushes = 0;
+		for (int i = 0; i < cells; i++) {
+			int cell = this.queue[i];
+			work |= this.maze.isGoal(cell);
+			for (int d = 0; d < 4; d++) {
+				int b = cell + this.steps[d];
+				if (!this.hasBox(b) || this.boxMark[b] == this.boxStamp) {
+					continue;
+				}
+				this.boxMark[b] = this.boxStamp;
+				work |= !this.maze.isGoal(b);
+				if (!this.isBorder(b)) {
+					continue;
+				}
+				for (int e = 0; e < 4; e++) {
+					int to = b + this.steps[e];
+					int behind = b - this.steps[e];
+					if (this.blocked[to] || this.maze.isDead(to)) {
+						continue;
+					}
+					boolean reachable = this.reachMark[behind] == this.reachStamp;
+					if (this.inRegion(to, id)) {
+						if (!this.maze.isFloor(behind)) {
+							continue;
+						}
+						if (!reachable) {
+							return 0;
+						}
+						pushes++;
+					} else if (reachable) {
+						return 0;
+					}
+				}
+			}
+		}
+		return work ? pushes : 0;
+	}
+
+	private boolean isBorder(int box) {
+		for (int d = 0; d < 4; d++) {
+			if (this.reachMark[box + this.steps[d]] == this.reachStamp) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@code false} if the last call to {@code findPiCorral} found a
+	 * PI-corral and the specified cell is not in it: a push to the cell need not
+	 * be searched.
+	 *
+	 * @param cell the cell a box would be pushed to
+	 * @return {@code true} if a push to the cell is to be searched
+	 */
+	boolean allowsPushTo(int cell) {
+		return this.corral < 0 || this.inRegion(cell, this.corral);
+	}
+
+	/**
+	 * Returns the normalized player cell of the position reached from the loaded
+	 * position by pushing the box on the cell from to the cell to. The loaded
+	 * position is left unchanged.
+	 *
+	 * @param from the cell of the pushed box
+	 * @param to   the cell the box is pushed to
+	 * @return the smallest cell the player can reach after the push
+	 */
+	int normalizedAfterPush(int from, int to) {
+		return this.normalizedAfterPush(from, to, from);
+	}
+
+	/**
+	 * Returns the normalized player cell of the position reached from the loaded
+	 * position by moving the box on the cell from to the cell to with the
+	 * player ending on the specified cell, as after a macro push. The loaded
+	 * position is left unchanged.
+	 *
+	 * @param from   the cell of the moved box
+	 * @param to     the cell the box is moved to
+	 * @param player the cell of the player after the move
+	 * @return the smallest cell the player can reach after the move
+	 */
+	int normalizedAfterPush(int from, int to, int player) {
+		this.blocked[from] = false;
+		this.blocked[to] = true;
+		this.fillStamp = next(this.fillStamp, this.fillMark);
+		int min = this.fill(player, this.fillMark, this.fillStamp);
+		this.blocked[to] = false;
+		this.blocked[from] = true;
+		return min;
+	}
+
+	/**
+	 * Returns whether the player can pull a box in the position reached by the
+	 * last call of {@code normalizedAfterPush}, that is, stand next to a box
+	 * with a free cell on its other side to step back on to. This is the test
+	 * for a dead end of the reverse game, in which every pull undoes a push.
+	 *
+	 * @param from the cell of the box moved by that call
+	 * @param to   the cell the box was moved to
+	 * @return {@code true} if the player can pull a box after the move
+	 */
+	boolean canPullAfterPush(int from, int to) {
+		this.blocked[from] = false;
+		this.blocked[to] = true;
+		boolean found = false;
+		for (int i = 0; i < this.loadedCount && !found; i++) {
+			int box = this.loaded[i] == from ? to : this.loaded[i];
+			for (int d = 0; d < 4 && !found; d++) {
+				int cell = box + this.steps[d];
+				found = this.fillMark[cell] == this.fillStamp && !this.blocked[cell + this.steps[d]];
+			}
+		}
+		this.blocked[to] = false;
+		this.blocked[from] = true;
+		return found;
+	}
+
+	/**
+	 * Writes the cells of the specified sorted boxes into out with the box on
+	 * the cell from replaced by a box on the cell to, keeping the cells sorted.
+	 *
+	 * @param boxes  the box cells in increasing order
+	 * @param offset the index of the first box cell in boxes
+	 * @param count  the number of boxes
+	 * @param from   the cell of the pushed box
+	 * @param to     the cell the box is pushed to
+	 * @param out    the array receiving the new box cells from index 0
+	 */
+	static void replace(int[] boxes, int offset, int count, int from, int to, int[] out) {
+		int j = 0;
+		boolean placed = false;
+		for (int i = offset; i < offset + count; i++) {
+			int b = boxes[i];
+			if (b == from) {
+				continue;
+			}
+			if (!placed && to < b) {
+				out[j++] = to;
+				placed = true;
+			}
+			out[j++] = b;
+		}
+		if (!placed) {
+			out[j] = to;
+		}
+	}
+
+	/**
+	 * Appends to moves the shortest walk of the player from the loaded player
+	 * cell to the specified cell, in lowercase move letters.
+	 *
+	 * @param target a cell reachable by the player
+	 * @param moves  the builder receiving the moves
+	 */
+	void appendWalk(int target, StringBuilder moves) {
+		// breadth-first search from the target so the path can be read forwards
+		int[] prev = new int[this.maze.size()];
+		Arrays.fill(prev, -1);
+		int head = 0;
+		int tail = 0;
+		this.queue[tail++] = target;
+		prev[target] = target;
+		while (head < tail && prev[this.player] < 0) {
+			int cell = this.queue[head++];
+			for (int d = 0; d < 4; d++) {
+				int n = cell + this.steps[d];
+				if (prev[n] < 0 && !this.blocked[n]) {
+					prev[n] = cell;
+					this.queue[tail++] = n;
+				}
+			}
+		}
+		for (int cell = this.player; cell != target; cell = prev[cell]) {
+			int d = 0;
+			while (cell + this.steps[d] != prev[cell]) {
+				d++;
+			}
+			moves.append(Direction.of(d).symbol());
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+import sokoban.Board;
+import sokoban.Box;
+
+/**
+ * An incremental check for freeze deadlocks: boxes that can never be moved
+ * again, at least one of them off a storage location.
+ *
+ * <p>
+ * A box is blocked along an axis if one of its two neighbours on that axis is
+ * not floor, if both of them are dead squares, or if one of them holds a box
+ * that is itself frozen; while a box is being checked it counts as a wall, so
+ * that boxes that block each other are found frozen together. A box blocked
+ * along both axes is frozen. The check starts from one box, normally the box
+ * just pushed, and only looks at the boxes next to it and, recursively, at
+ * the boxes next to those that help freeze it, so it takes microseconds
+ * whatever the number of boxes.
+ *
+ * <p>
+ * If the maze has a store of {@code DeadlockPatterns}, a push that does not
+ * freeze the pushed box is also checked against the dead arrangements of the
+ * store by a {@code PatternDeadlock}, unless the maze has more or fewer boxes
+ * than storage locations.
+ *
+ * <p>
+ * The checker keeps its own set of box cells, set by {@code load} and
+ * updated by {@code move}. An instance is not thread-safe.
+ */
+public final class FreezeDeadlock {
+	private final Maze maze;
+	private final int[] steps = new int[4];
+	private final boolean[] box;
+	private final int[] loaded;
+	private int loadedCount;
+
+	// mark[cell] == stamp if the box on cell is being checked or found frozen;
+	// trail holds those boxes in the order they were marked
+	private final int[] mark;
+	private int stamp;
+	private final int[] trail;
+	private int trailSize;
+
+	private final PatternDeadlock patterns;
+	private final SolverMetrics metrics;
+
+	/**
+	 * Initializes a checker for positions of the specified maze.
+	 *
+	 * @param maze a maze
+	 */
+	public FreezeDeadlock(Maze maze) {
+		this(maze, null);
+	}
+
+	/**
+	 * Initializes a checker for positions of the specified maze that counts
+	 * the pushes it finds deadlocked in the specified metrics.
+	 *
+	 * @param maze    a maze
+	 * @param metrics the metrics of the search, or {@code null}
+	 */
+	FreezeDeadlock(Maze maze, SolverMetrics metrics) {
+		this.maze = maze;
+		this.metrics = metrics;
+		for (int d = 0; d < 4; d++) {
+			this.steps[d] = maze.step(d);
+		}
+		this.box = new boolean[maze.size()];
+		this.loaded = new int[maze.boxCount()];
+		this.mark = new int[maze.size()];
+		this.trail = new int[maze.boxCount()];
+		// the proof of an arrangement wants every box on a storage location,
+		// which a level with more boxes than storage locations does not
+		this.patterns = maze.patterns() == null || maze.boxCount() != maze.goalCount() ? null
+				: new PatternDeadlock(maze, maze.patterns());
+	}
+
+	/**
+	 * Sets the box cells of the checked position.
+	 *
+	 * @param boxes an array holding the box cells
+	 * @param from  the index of the first box cell
+	 * @param count the number of boxes
+	 */
+	public void load(int[] boxes, int from, int count) {
+		for (int i = 0; i < this.loadedCount; i++) {
+			this.box[this.loaded[i]] = false;
+		}
+		for (int i = from; i < from + count; i++) {
+			this.box[boxes[i]] = true;
+			this.loaded[i - from] = boxes[i];
+		}
+		this.loadedCount = count;
+	}
+
+	/**
+	 * Sets the box cells of the checked position to those of the boxes of the
+	 * specified board, which must be a board of the level of the maze.
+	 *
+	 * @param board a board
+	 */
+	public void load(Board board) {
+		for (int i = 0; i < this.loadedCount; i++) {
+			this.box[this.loaded[i]] = false;
+		}
+		this.loadedCount = 0;
+		for (Box b : board.getBoxes()) {
+			int cell = board.cellOf(b.location());
+			this.box[cell] = true;
+			this.loaded[this.loadedCount++] = cell;
+		}
+	}
+
+	/**
+	 * Moves the box on the cell from to the cell to in the checked position.
+	 *
+	 * @param from the cell of a box
+	 * @param to   a cell without a box
+	 */
+	public void move(int from, int to) {
+		this.box[from] = false;
+		this.box[to] = true;
+		for (int i = 0; i < this.loadedCount; i++) {
+			if (this.loaded[i] == from) {
+				this.loaded[i] = to;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the box on the specified cell is frozen together
+	 * with boxes of which at least one, possibly itself, is not on a storage
+	 * location. The position can then not be solved.
+	 *
+	 * @param cell the cell of a box of the checked position
+	 * @return {@code true} if the box is part of a freeze deadlock
+	 */
+	public boolean isDeadlocked(int cell) {
+		this.stamp++;
+		if (this.stamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.mark, 0);
+			this.stamp = 1;
+		}
+		this.trailSize = 0;
+		if (!this.isFrozen(cell)) {
+			return false;
+		}
+		for (int i = 0; i < this.trailSize; i++) {
+			if (!this.maze.isGoal(this.trail[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@code true} if pushing the box on the cell from to the cell to
+	 * in the checked position creates a freeze deadlock around the pushed box,
+	 * or a dead arrangement of the deadlock patterns of the maze. The checked
+	 * position is left unchanged.
+	 *
+	 * @param from the cell of a box
+	 * @param to   the cell the box is pushed to
+	 * @return {@code true} if the push creates a deadlock
+	 */
+	public boolean isDeadlockedAfterPush(int from, int to) {
+		this.box[from] = false;
+		this.box[to] = true;
+		boolean deadlocked = this.isDeadlocked(to);
+		if (deadlocked) {
+			if (this.metrics != null) {
+				this.metrics.addPrune(SolverMetrics.Prune.FREEZE);
+			}
+		} else if (this.patterns != null && this.patterns.isDeadlocked(this.box, to)) {
+			deadlocked = true;
+			if (this.metrics != null) {
+				this.metrics.addPrune(SolverMetrics.Prune.PATTERN);
+			}
+		}
+		this.box[to] = false;
+		this.box[from] = true;
+		return deadlocked;
+	}
+
+	private boolean isFrozen(int cell) {
+		if (this.mark[cell] == this.stamp) {
+			// being checked further up, or already found frozen
+			return true;
+		}
+		int start = this.trailSize;
+		this.mark[cell] = this.stamp;
+		this.trail[this.trailSize++] = cell;
+		boolean frozen = this.isBlocked(cell, this.steps[0]) && this.isBlocked(cell, this.steps[2]);
+		if (!frozen) {
+			// the boxes found frozen while this one counted as a wall may not be
+			for (int i = start; i < this.trailSize; i++) {
+				this.mark[this.trail[i]] = 0;
+			}
+			this.trailSize = start;
+		}
+		return frozen;
+	}
+
+	private boolean isBlocked(int cell, int step) {
+		int a = cell - step;
+		int b = cell + step;
+		if (!this.maze.isFloor(a) || !this.maze.isFloor(b)) {
+			return true;
+		}
+		if (this.maze.isDead(a) && this.maze.isDead(b)) {
+			return true;
+		}
+		return this.box[a] && this.isFrozen(a) || this.box[b] && this.isFrozen(b);
+	}
+}
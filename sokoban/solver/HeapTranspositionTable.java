@@ -0,0 +1,125 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A {@code TranspositionTable} kept in two arrays on the Java heap.
+ *
+ * <p>
+ * The table is four-way set associative: a key can live in one of the four
+ * slots of the set chosen by its hash. When the set is full, the entry with
+ * the lowest value is evicted, unless the new value is lower still, in which
+ * case the new entry is dropped. An entry costs twelve bytes.
+ */
+final class HeapTranspositionTable implements TranspositionTable {
+	static final int ENTRY = 12;
+	private static final int WAYS = 4;
+
+	private final long[] keys;
+	private final int[] values;
+	private final int setMask;
+	private long size;
+	private long lookups;
+	private long hits;
+	private long evictions;
+
+	/**
+	 * Initializes a table that holds at least the specified number of entries,
+	 * rounded up to a power of two.
+	 *
+	 * @param entries the number of entries
+	 */
+	HeapTranspositionTable(int entries) {
+		int sets = Integer.highestOneBit(Math.max(1, (entries + WAYS - 1) / WAYS - 1)) << 1;
+		this.keys = new long[sets * WAYS];
+		this.values = new int[sets * WAYS];
+		this.setMask = sets - 1;
+	}
+
+	private int set(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 40) & this.setMask;
+	}
+
+	@Override
+	public int get(long key) {
+		this.lookups++;
+		int base = this.set(key) * WAYS;
+		for (int i = base; i < base + WAYS; i++) {
+			if (this.keys[i] == key) {
+				this.hits++;
+				return this.values[i];
+			}
+		}
+		return MISSING;
+	}
+
+	@Override
+	public void put(long key, int value) {
+		int base = this.set(key) * WAYS;
+		for (int i = base; i < base + WAYS; i++) {
+			if (this.keys[i] == key) {
+				this.values[i] = value;
+				return;
+			}
+		}
+		int victim = base;
+		for (int i = base; i < base + WAYS; i++) {
+			if (this.keys[i] == 0) {
+				victim = i;
+				break;
+			}
+			if (this.values[i] < this.values[victim]) {
+				victim = i;
+			}
+		}
+		if (this.keys[victim] == 0) {
+			this.size++;
+		} else if (this.values[victim] > value) {
+			return;
+		} else {
+			this.evictions++;
+		}
+		this.keys[victim] = key;
+		this.values[victim] = value;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		this.size = 0;
+		this.lookups = 0;
+		this.hits = 0;
+		this.evictions = 0;
+	}
+
+	@Override
+	public long capacity() {
+		return this.keys.length;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public long bytes() {
+		return (long) ENTRY * this.keys.length;
+	}
+
+	@Override
+	public long lookups() {
+		return this.lookups;
+	}
+
+	@Override
+	public long hits() {
+		return this.hits;
+	}
+
+	@Override
+	public long evictions() {
+		return this.evictions;
+	}
+}
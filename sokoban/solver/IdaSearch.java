@@ -0,0 +1,480 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The depth-first searches of one thread of an IDA* solver.
+ *
+ * <p>
+ * A search explores the positions below a position on the current path whose
+ * pushes so far plus {@code AssignmentBound} bound do not exceed the threshold
+ * of the iteration, and records the smallest value above the threshold it
+ * abandoned. It keeps the positions of the current path in arrays indexed by
+ * depth, never generates pushes onto dead squares or into a freeze deadlock,
+ * skips positions that repeat one on the path, and, if it is given a
+ * {@code TranspositionTable}, positions already searched in the iteration with
+ * at most as many pushes. A macro push of the maze is one step of the path
+ * that counts as all the pushes it makes.
+ *
+ * <p>
+ * The searches of several threads can share a transposition table, which must
+ * then be safe for concurrent use, together with a stop flag, a budget of
+ * positions to expand and the solution. The first search to solve the level
+ * stores the pushes of its path and raises the stop flag; the others then
+ * return as soon as possible. An instance itself is not thread-safe.
+ */
+final class IdaSearch {
+
+	/**
+	 * Returned by the searches when they have solved the level.
+	 */
+	static final int FOUND = -1;
+
+	/**
+	 * Returned by the searches when they stopped before searching everything.
+	 */
+	static final int ABORTED = -2;
+
+	// the number of expansions taken from the shared budget at a time
+	private static final int QUOTA = 1024;
+
+	private final Maze maze;
+	private final int n;
+	private final Expander ex;
+	private final FreezeDeadlock freeze;
+	private final AssignmentBound bound;
+	private final TranspositionTable table;
+	private final AtomicBoolean stop;
+	private final AtomicLong budget;
+	private final AtomicReference<int[]> solution;
+	private final Macros macros;
+	private final int[] macro;
+	private final SolverMetrics metrics;
+
+	// the boxes of the position at every depth of the current path, the
+	// pushes that lead to it and the hash of it
+	private int[][] boxes = new int[64][];
+	private int[] path = new int[64];
+	private long[] hashes = new long[64];
+
+	// the pushes of a position, encoded as 4 * box index + direction, with
+	// the bounds and normalized player cells after them, and the cells the
+	// boxes end on and the pushes made when they start macros
+	private int[][] pushes = new int[64][];
+	private int[][] bounds = new int[64][];
+	private int[][] players = new int[64][];
+	private int[][] targets = new int[64][];
+	private int[][] costs = new int[64][];
+
+	private int depths;
+	private int quota;
+	private int threshold;
+	private int iteration;
+	private int next;
+	private long expanded;
+	private long generated;
+
+	// the position prepared by the last call of prepare
+	private int childG;
+	private int childPlayer;
+	private long childBoxHash;
+	private int childOnGoal;
+
+	/**
+	 * Initializes a search of the specified maze.
+	 *
+	 * @param maze     a maze
+	 * @param table    the transposition table, or {@code null} for none
+	 * @param stop     the flag that stops the search when set
+	 * @param budget   the number of positions left to expand
+	 * @param solution receives the pushes of the first solution found
+	 * @param metrics  the metrics of the search
+	 */
+	IdaSearch(Maze maze, TranspositionTable table, AtomicBoolean stop, AtomicLong budget,
+			AtomicReference<int[]> solution, SolverMetrics metrics) {
+		this.maze = maze;
+		this.n = maze.boxCount();
+		this.ex = new Expander(maze);
+		this.freeze = new FreezeDeadlock(maze, metrics);
+		this.metrics = metrics;
+		this.bound = new AssignmentBound(maze);
+		this.table = table;
+		this.stop = stop;
+		this.budget = budget;
+		this.solution = solution;
+		this.macros = maze.macros();
+		this.macro = new int[this.macros != null ? this.macros.maxPushes() : 1];
+	}
+
+	/**
+	 * Returns the hash used for the position with the specified box hash and
+	 * normalized player cell.
+	 *
+	 * @param maze    a maze
+	 * @param boxHash the Zobrist hash of the boxes
+	 * @param player  the normalized player cell
+	 * @return the non-zero hash of the position
+	 */
+	static long key(Maze maze, long boxHash, int player) {
+		long hash = boxHash ^ maze.playerKey(player);
+		// the transposition table reserves the key 0
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * Starts an iteration with the specified threshold.
+	 *
+	 * @param threshold the largest pushes plus bound to search
+	 * @param iteration the number of the iteration, starting at 1
+	 */
+	void startIteration(int threshold, int iteration) {
+		this.threshold = threshold;
+		this.iteration = iteration;
+		this.next = AssignmentBound.INFINITE;
+	}
+
+	/**
+	 * Returns the smallest pushes plus bound above the threshold found in this
+	 * iteration, or {@code AssignmentBound.INFINITE} if there is none.
+	 *
+	 * @return the threshold of the next iteration
+	 */
+	int next() {
+		return this.next;
+	}
+
+	/**
+	 * Returns the number of positions this search expanded.
+	 *
+	 * @return the number of positions expanded
+	 */
+	long expanded() {
+		return this.expanded;
+	}
+
+	/**
+	 * Returns the number of positions this search generated.
+	 *
+	 * @return the number of positions generated
+	 */
+	long generated() {
+		return this.generated;
+	}
+
+	/**
+	 * Returns the number of bytes of the arrays of the deepest path searched,
+	 * not counting the transposition table.
+	 *
+	 * @return the number of bytes of the path arrays
+	 */
+	long bytes() {
+		return (4L * (21 * this.n + 2) + 8) * this.depths;
+	}
+
+	/**
+	 * Makes the position with the specified boxes the one at the specified
+	 * depth of the current path.
+	 *
+	 * @param depth  the depth of the position
+	 * @param boxes  the box cells in increasing order
+	 * @param path   the pushes leading to the position, at least depth of them
+	 * @param hashes the hashes of the positions on the path, at least depth + 1
+	 *               of them
+	 */
+	void place(int depth, int[] boxes, int[] path, long[] hashes) {
+		this.ensureDepth(depth);
+		System.arraycopy(boxes, 0, this.boxes[depth], 0, this.n);
+		System.arraycopy(path, 0, this.path, 0, depth);
+		System.arraycopy(hashes, 0, this.hashes, 0, depth + 1);
+	}
+
+	/**
+	 * Returns the box cells of the position at the specified depth.
+	 *
+	 * @param depth a depth of the current path
+	 * @return the box cells in increasing order
+	 */
+	int[] boxes(int depth) {
+		return this.boxes[depth];
+	}
+
+	/**
+	 * Returns the pushes of the current path; the first depth of them lead to
+	 * the position at that depth.
+	 *
+	 * @return the pushes of the current path
+	 */
+	int[] path() {
+		return this.path;
+	}
+
+	/**
+	 * Returns the hashes of the positions of the current path.
+	 *
+	 * @return the hashes of the positions of the current path
+	 */
+	long[] hashes() {
+		return this.hashes;
+	}
+
+	/**
+	 * Searches the position at the specified depth of the current path,
+	 * reached with g pushes.
+	 *
+	 * @param depth   the depth of the position
+	 * @param g       the pushes made to reach the position
+	 * @param player  the normalized player cell
+	 * @param boxHash the Zobrist hash of the boxes
+	 * @param onGoal  the number of boxes on storage locations
+	 * @return {@code FOUND}, {@code ABORTED} or 0
+	 */
+	int search(int depth, int g, int player, long boxHash, int onGoal) {
+		int count = this.expand(depth, g, player, onGoal);
+		if (count < 0) {
+			return count;
+		}
+		for (int c = 0; c < count; c++) {
+			if (!this.prepare(depth, c, g, boxHash, onGoal)) {
+				continue;
+			}
+			int result = this.search(depth + 1, this.childG, this.childPlayer, this.childBoxHash, this.childOnGoal);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Expands the position at the specified depth: finds its pushes whose
+	 * pushes plus bound stay within the threshold, in order of increasing
+	 * bound, for {@code prepare}.
+	 *
+	 * @param depth  the depth of the position
+	 * @param g      the pushes made to reach the position
+	 * @param player the normalized player cell
+	 * @param onGoal the number of boxes on storage locations
+	 * @return the number of pushes found, {@code FOUND} if the position is
+	 *         solved or {@code ABORTED} if the search must stop
+	 */
+	int expand(int depth, int g, int player, int onGoal) {
+		if (onGoal == this.maze.goalCount()) {
+			if (this.solution.compareAndSet(null, Arrays.copyOf(this.path, depth))) {
+				this.stop.set(true);
+			}
+			return FOUND;
+		}
+		if (this.stop.get() || !this.reserve()) {
+			return ABORTED;
+		}
+		this.expanded++;
+		this.metrics.addExpanded();
+		this.metrics.setFrontier(depth);
+		this.ensureDepth(depth + 1);
+		int[] current = this.boxes[depth];
+		this.ex.load(player, current, 0, this.n);
+		this.ex.findPiCorral();
+		this.freeze.load(current, 0, this.n);
+		this.bound.compute(current);
+		int[] pushes = this.pushes[depth];
+		int[] bounds = this.bounds[depth];
+		int[] players = this.players[depth];
+		int[] targets = this.targets[depth];
+		int[] costs = this.costs[depth];
+		int count = 0;
+		for (int i = 0; i < this.n; i++) {
+			int from = current[i];
+			for (int d = 0; d < 4; d++) {
+				int to = from + this.maze.step(d);
+				if (!this.ex.canPush(from, d)) {
+					continue;
+				}
+				if (!this.ex.allowsPushTo(to)) {
+					this.metrics.addPrune(SolverMetrics.Prune.CORRAL);
+					continue;
+				}
+				int cost = 1;
+				int pusher = from;
+				if (this.macros != null) {
+					cost = this.macros.expand(this.ex, from, d, this.macro);
+					pusher = this.macro[cost - 1] >> 2;
+					to = pusher + this.maze.step(this.macro[cost - 1] & 3);
+				}
+				if (this.maze.isDead(to)) {
+					this.metrics.addPrune(SolverMetrics.Prune.DEAD_SQUARE);
+					continue;
+				}
+				if (this.freeze.isDeadlockedAfterPush(from, to)) {
+					continue;
+				}
+				int hc = this.bound.afterPush(i, to);
+				this.generated++;
+				this.metrics.addGenerated();
+				if (hc >= AssignmentBound.INFINITE) {
+					this.metrics.addPrune(SolverMetrics.Prune.BOUND);
+					continue;
+				}
+				if (g + cost + hc > this.threshold) {
+					this.next = Math.min(this.next, g + cost + hc);
+					continue;
+				}
+				// insert in order of increasing bound
+				int at = count++;
+				while (at > 0 && bounds[at - 1] > hc) {
+					pushes[at] = pushes[at - 1];
+					bounds[at] = bounds[at - 1];
+					players[at] = players[at - 1];
+					targets[at] = targets[at - 1];
+					costs[at] = costs[at - 1];
+					at--;
+				}
+				pushes[at] = 4 * i + d;
+				bounds[at] = hc;
+				players[at] = this.ex.normalizedAfterPush(from, to, pusher);
+				targets[at] = to;
+				costs[at] = cost;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Makes the position reached by the specified push found by
+	 * {@code expand} the one at depth + 1 of the current path, unless it
+	 * repeats a position on the path or the transposition table shows it has
+	 * been searched already.
+	 *
+	 * @param depth   the depth of the expanded position
+	 * @param c       the index of the push
+	 * @param g       the pushes made to reach the expanded position
+	 * @param boxHash the Zobrist hash of the boxes of the expanded position
+	 * @param onGoal  the number of boxes on storage locations in the expanded
+	 *                position
+	 * @return {@code true} if the position is to be searched
+	 */
+	boolean prepare(int depth, int c, int g, long boxHash, int onGoal) {
+		int[] current = this.boxes[depth];
+		int push = this.pushes[depth][c];
+		int from = current[push >> 2];
+		int d = push & 3;
+		int to = this.targets[depth][c];
+		int childG = g + this.costs[depth][c];
+		int player = this.players[depth][c];
+		long childBoxHash = boxHash ^ this.maze.boxKey(from) ^ this.maze.boxKey(to);
+		long hash = key(this.maze, childBoxHash, player);
+		if (this.onPath(hash, depth) || this.seen(hash, childG)) {
+			return false;
+		}
+		Expander.replace(current, 0, this.n, from, to, this.boxes[depth + 1]);
+		this.hashes[depth + 1] = hash;
+		this.path[depth] = 4 * from + d;
+		this.childG = childG;
+		this.childPlayer = player;
+		this.childBoxHash = childBoxHash;
+		this.childOnGoal = onGoal - (this.maze.isGoal(from) ? 1 : 0) + (this.maze.isGoal(to) ? 1 : 0);
+		return true;
+	}
+
+	/**
+	 * Returns the pushes made to reach the position prepared last.
+	 *
+	 * @return the pushes made to reach the position
+	 */
+	int childG() {
+		return this.childG;
+	}
+
+	/**
+	 * Returns the normalized player cell of the position prepared last.
+	 *
+	 * @return the normalized player cell
+	 */
+	int childPlayer() {
+		return this.childPlayer;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the boxes of the position prepared last.
+	 *
+	 * @return the Zobrist hash of the boxes
+	 */
+	long childBoxHash() {
+		return this.childBoxHash;
+	}
+
+	/**
+	 * Returns the number of boxes on storage locations in the position
+	 * prepared last.
+	 *
+	 * @return the number of boxes on storage locations
+	 */
+	int childOnGoal() {
+		return this.childOnGoal;
+	}
+
+	private boolean reserve() {
+		if (this.quota == 0) {
+			if (this.budget.addAndGet(-QUOTA) < -QUOTA) {
+				this.stop.set(true);
+				return false;
+			}
+			this.quota = QUOTA;
+		}
+		this.quota--;
+		return true;
+	}
+
+	private boolean onPath(long hash, int depth) {
+		for (int k = depth; k >= 0; k--) {
+			if (this.hashes[k] == hash) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@code true} if the position with the specified hash has been
+	 * searched in this iteration with at most g pushes, and records it
+	 * otherwise. Later iterations and fewer pushes give higher values, which
+	 * the table prefers to keep.
+	 */
+	private boolean seen(long hash, int g) {
+		if (this.table == null) {
+			return false;
+		}
+		int value = (this.iteration << 16) | (0xFFFF - g);
+		int stored = this.table.get(hash);
+		if (stored != TranspositionTable.MISSING && stored >= value && stored >>> 16 == this.iteration) {
+			return true;
+		}
+		this.table.put(hash, value);
+		return false;
+	}
+
+	private void ensureDepth(int depth) {
+		if (depth >= this.boxes.length) {
+			int capacity = 2 * this.boxes.length;
+			this.boxes = Arrays.copyOf(this.boxes, capacity);
+			this.path = Arrays.copyOf(this.path, capacity);
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.pushes = Arrays.copyOf(this.pushes, capacity);
+			this.bounds = Arrays.copyOf(this.bounds, capacity);
+			this.players = Arrays.copyOf(this.players, capacity);
+			this.targets = Arrays.copyOf(this.targets, capacity);
+			this.costs = Arrays.copyOf(this.costs, capacity);
+		}
+		for (int k = this.depths; k <= depth; k++) {
+			this.boxes[k] = new int[this.n];
+			this.pushes[k] = new int[4 * this.n];
+			this.bounds[k] = new int[4 * this.n];
+			this.players[k] = new int[4 * this.n];
+			this.targets[k] = new int[4 * this.n];
+			this.costs[k] = new int[4 * this.n];
+		}
+		this.depths = Math.max(this.depths, depth + 1);
+	}
+}
@@ -0,0 +1,125 @@
+package sokoban.solver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A push-optimal solver that uses iterative deepening A* (IDA*) with the
+ * {@code AssignmentBound} lower bound, for levels whose search space does not
+ * fit in memory.
+ *
+ * <p>
+ * The search is a series of depth-first searches. Each one abandons every
+ * position whose pushes so far plus bound exceed a threshold, and the next one
+ * raises the threshold to the smallest value that was abandoned. Only the
+ * positions on the current path are kept, so without a transposition table the
+ * memory used grows with the number of pushes of the solution and not with the
+ * number of positions searched. Positions that repeat one on the current path
+ * are skipped. As with {@code AStarSolver}, the solution is push-optimal
+ * unless the maze was built with macros.
+ *
+ * <p>
+ * Optionally, a {@code TranspositionTable} of fixed size, by default outside
+ * the Java heap so that it does not slow down garbage collection, remembers the
+ * positions already searched in the current iteration and the pushes they
+ * were reached with, so that a position reached again with at least as many
+ * pushes is not searched twice. The table is bounded; when it is full it keeps
+ * the entries of the current iteration that were reached with fewer pushes.
+ */
+public class IdaStarSolver implements Solver {
+
+	/**
+	 * The number of bytes of the transposition table of a solver created with
+	 * the default constructor.
+	 */
+	public static final long DEFAULT_TABLE_BYTES = 16 << 20;
+
+	private final long tableBytes;
+	private final boolean offHeap;
+	private final long maxNodes;
+
+	/**
+	 * Initializes a solver with an off-heap transposition table of
+	 * {@code DEFAULT_TABLE_BYTES} bytes that searches until the level is solved
+	 * or shown to be unsolvable.
+	 */
+	public IdaStarSolver() {
+		this(DEFAULT_TABLE_BYTES, true, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a solver with a transposition table of at most the specified
+	 * number of bytes that gives up once it has expanded the specified number
+	 * of positions.
+	 *
+	 * @param tableBytes the byte budget of the transposition table, or 0 to
+	 *                   search without one
+	 * @param offHeap    {@code true} to keep the table outside the Java heap
+	 * @param maxNodes   the maximum number of positions to expand
+	 */
+	public IdaStarSolver(long tableBytes, boolean offHeap, long maxNodes) {
+		this.tableBytes = tableBytes;
+		this.offHeap = offHeap;
+		this.maxNodes = maxNodes;
+	}
+
+	@Override
+	public String name() {
+		return "idastar";
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		int n = maze.boxCount();
+		if (maze.goalCount() > n) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, 0, 0, System.nanoTime() - start,
+					0);
+		}
+		TranspositionTable table = this.tableBytes > 0 ? TranspositionTable.create(this.tableBytes, this.offHeap)
+				: null;
+		if (table != null) {
+			metrics.watch(table);
+		}
+		AtomicReference<int[]> solution = new AtomicReference<>();
+		IdaSearch search = new IdaSearch(maze, table, new AtomicBoolean(), new AtomicLong(this.maxNodes),
+				solution, metrics);
+		int[] root = maze.startBoxes();
+		Expander ex = new Expander(maze);
+		ex.load(maze.startPlayer(), root, 0, n);
+		int player = ex.normalizedPlayer();
+		long boxHash = ex.boxHash();
+		int onGoal = 0;
+		for (int b : root) {
+			if (maze.isGoal(b)) {
+				onGoal++;
+			}
+		}
+		search.place(0, root, new int[0], new long[] { IdaSearch.key(maze, boxHash, player) });
+
+		Solution.Status status = Solution.Status.UNSOLVABLE;
+		int threshold = new AssignmentBound(maze).compute(root);
+		metrics.startPhase("search");
+		for (int iteration = 1; threshold < AssignmentBound.INFINITE; iteration++) {
+			search.startIteration(threshold, iteration);
+			int result = search.search(0, 0, player, boxHash, onGoal);
+			if (result != 0) {
+				status = result == IdaSearch.FOUND ? Solution.Status.SOLVED : Solution.Status.GAVE_UP;
+				break;
+			}
+			threshold = search.next();
+		}
+		metrics.startPhase("path");
+		int[] path = status == Solution.Status.SOLVED ? solution.get() : new int[0];
+		String moves = Solution.movesOf(maze, maze.macros(), path);
+		metrics.finish();
+		long bytes = search.bytes() + (table != null ? table.bytes() : 0);
+		Solution result = new Solution(this.name(), status, moves, path.length, search.expanded(),
+				search.generated(), System.nanoTime() - start, bytes);
+		result.setTableStats(table != null ? new TableStats(table, this.offHeap) : null);
+		return result;
+	}
+}
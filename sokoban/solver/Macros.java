@@ -0,0 +1,347 @@
+package sokoban.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Macro pushes: sequences of pushes that the informed solvers make as one
+ * step of their search because the pushes after the first are forced anyway.
+ *
+ * <p>
+ * A tunnel macro applies when a box is pushed along a corridor that is one
+ * cell wide both where the player stands and where the box lands: the box is
+ * pushed on until it leaves the corridor, reaches a storage location, or the
+ * next cell is a box, a wall or a dead square.
+ *
+ * <p>
+ * A goal room is a part of the level that holds storage locations but no box
+ * and not the player at the start, and that is joined to the rest of the
+ * level by a single entrance cell in a corridor one cell wide. Its storage
+ * locations are given a fill order once, farthest first, such that each of
+ * them can still be reached from the entrance when the earlier ones hold
+ * boxes, and the pushes that bring a box from the entrance to each of them
+ * are stored. When a box is pushed onto the entrance towards the room and the
+ * boxes in the room are exactly the first ones of the fill order, the box is
+ * taken straight to the next storage location of the order. This keeps the
+ * rooms from being searched, but the fixed order can cost pushes on levels
+ * where another order would be shorter.
+ *
+ * <p>
+ * A tunnel macro can cost pushes too, when the shortest solution pushes a box
+ * only part of the way along a tunnel. The macros are therefore only used
+ * when they are asked for; without them the informed solvers are
+ * push-optimal.
+ *
+ * <p>
+ * The macros are found when the {@code Maze} is built. An instance is
+ * immutable and can be shared between threads.
+ */
+final class Macros {
+	private final Maze maze;
+	private final int[] steps = new int[4];
+
+	// room[cell] is the index of the goal room cell is the entrance of, or -1
+	private final int[] room;
+	private final int[] entryDirection;
+	private final int[][] roomCells;
+
+	// rank[cell] is the place of the storage location cell in the fill order
+	// of its room, and paths[r][k] the pushes that bring a box from the
+	// entrance of room r to the k-th storage location of its order
+	private final int[] rank;
+	private final int[][][] paths;
+	private final int maxPushes;
+
+	/**
+	 * Finds the tunnels and goal rooms of the specified maze.
+	 *
+	 * @param maze a maze
+	 */
+	Macros(Maze maze) {
+		this.maze = maze;
+		for (int d = 0; d < 4; d++) {
+			this.steps[d] = maze.step(d);
+		}
+		this.room = new int[maze.size()];
+		Arrays.fill(this.room, -1);
+		this.rank = new int[maze.size()];
+		Arrays.fill(this.rank, Integer.MAX_VALUE);
+		List<int[]> cells = new ArrayList<>();
+		List<int[][]> orders = new ArrayList<>();
+		List<Integer> directions = new ArrayList<>();
+		int longest = 0;
+		for (int entrance = 0; entrance < maze.size(); entrance++) {
+			for (int d = 0; d < 4; d++) {
+				int[] found = this.findRoom(entrance, d);
+				int[][] order = found == null ? null : this.fillOrder(found, entrance, d);
+				if (order == null) {
+					continue;
+				}
+				this.room[entrance] = cells.size();
+				cells.add(found);
+				directions.add(d);
+				orders.add(order);
+				for (int[] path : order) {
+					longest = Math.max(longest, path.length);
+				}
+			}
+		}
+		this.roomCells = cells.toArray(new int[0][]);
+		this.paths = orders.toArray(new int[0][][]);
+		this.entryDirection = new int[directions.size()];
+		for (int r = 0; r < this.paths.length; r++) {
+			this.entryDirection[r] = directions.get(r);
+			for (int k = 0; k < this.paths[r].length; k++) {
+				int[] path = this.paths[r][k];
+				int last = path[path.length - 1];
+				this.rank[(last >> 2) + this.steps[last & 3]] = k;
+			}
+		}
+		// a tunnel is shorter than the maze, and only its last push can lead
+		// into a goal room
+		this.maxPushes = maze.size() + longest;
+	}
+
+	/**
+	 * Returns the number of goal rooms of the maze.
+	 *
+	 * @return the number of goal rooms
+	 */
+	int goalRooms() {
+		return this.roomCells.length;
+	}
+
+	/**
+	 * Returns the largest number of pushes a macro can make, the length
+	 * {@code expand} needs.
+	 *
+	 * @return the largest number of pushes of a macro
+	 */
+	int maxPushes() {
+		return this.maxPushes;
+	}
+
+	private boolean isCorridor(int cell, int direction) {
+		int side = this.steps[direction ^ 2];
+		return !this.maze.isFloor(cell - side) && !this.maze.isFloor(cell + side);
+	}
+
+	/**
+	 * Returns the macro that starts with the push of the box on the cell from
+	 * in the specified direction in the position loaded in ex, which must be a
+	 * legal push. The pushes of the macro, the first one included, are written
+	 * to out, each encoded as {@code 4 * from + direction} where from is the
+	 * cell of the pushed box; the box ends in front of the last of them and the
+	 * player on its cell.
+	 *
+	 * @param ex        an expander holding the position
+	 * @param from      the cell of the pushed box
+	 * @param direction the ordinal of the direction of the push
+	 * @param out       an array of at least {@code maxPushes()} elements
+	 * @return the number of pushes of the macro, at least 1
+	 */
+	int expand(Expander ex, int from, int direction, int[] out) {
+		int step = this.steps[direction];
+		int to = from + step;
+		int count = 0;
+		out[count++] = 4 * from + direction;
+		while (true) {
+			int r = this.room[to];
+			if (r >= 0 && this.entryDirection[r] == direction) {
+				int k = this.filled(ex, r);
+				if (k >= 0) {
+					int[] path = this.paths[r][k];
+					System.arraycopy(path, 0, out, count, path.length);
+					return count + path.length;
+				}
+			}
+			int next = to + step;
+			if (!this.isCorridor(from, direction) || !this.isCorridor(to, direction) || this.maze.isGoal(to)
+					|| !this.maze.isFloor(next) || ex.hasBox(next) || this.maze.isDead(next)) {
+				return count;
+			}
+			from = to;
+			to = next;
+			out[count++] = 4 * from + direction;
+		}
+	}
+
+	/**
+	 * Returns the number of boxes in room r if they are on the first storage
+	 * locations of its fill order and not all of them are taken, or -1.
+	 */
+	private int filled(Expander ex, int r) {
+		int k = 0;
+		int highest = -1;
+		for (int cell : this.roomCells[r]) {
+			if (ex.hasBox(cell)) {
+				k++;
+				highest = Math.max(highest, this.rank[cell]);
+			}
+		}
+		return highest < k && k < this.paths[r].length ? k : -1;
+	}
+
+	/**
+	 * Returns the cells of the room behind the entrance when seen in the
+	 * specified direction, or null if there is no goal room there.
+	 */
+	private int[] findRoom(int entrance, int direction) {
+		int step = this.steps[direction];
+		int inside = entrance + step;
+		int outside = entrance - step;
+		if (!this.maze.isFloor(entrance) || !this.isCorridor(entrance, direction) || !this.maze.isFloor(inside)
+				|| !this.maze.isFloor(outside) || this.isCorridor(inside, direction)) {
+			return null;
+		}
+		boolean[] seen = new boolean[this.maze.size()];
+		seen[entrance] = true;
+		seen[inside] = true;
+		int[] queue = new int[this.maze.size()];
+		int tail = 0;
+		queue[tail++] = inside;
+		boolean goals = false;
+		for (int head = 0; head < tail; head++) {
+			int cell = queue[head];
+			if (cell == outside || cell == this.maze.startPlayer()
+					|| Arrays.binarySearch(this.maze.startBoxes(), cell) >= 0) {
+				return null;
+			}
+			goals |= this.maze.isGoal(cell);
+			for (int d = 0; d < 4; d++) {
+				int n = cell + this.steps[d];
+				if (!seen[n] && this.maze.isFloor(n)) {
+					seen[n] = true;
+					queue[tail++] = n;
+				}
+			}
+		}
+		return goals ? Arrays.copyOf(queue, tail) : null;
+	}
+
+	/**
+	 * Returns the pushes that fill the storage locations of a room one after
+	 * the other, farthest first, or null if they cannot all be filled that
+	 * way.
+	 */
+	private int[][] fillOrder(int[] cells, int entrance, int direction) {
+		boolean[] open = new boolean[this.maze.size()];
+		List<Integer> goals = new ArrayList<>();
+		for (int cell : cells) {
+			open[cell] = true;
+			if (this.maze.isGoal(cell)) {
+				goals.add(cell);
+			}
+		}
+		open[entrance] = true;
+		int outside = entrance - this.steps[direction];
+		int[][] order = new int[goals.size()][];
+		for (int k = 0; k < order.length; k++) {
+			int[] best = null;
+			int bestGoal = -1;
+			for (int goal : goals) {
+				int[] path = this.pushPath(open, entrance, outside, goal);
+				if (path == null || best != null && path.length <= best.length) {
+					continue;
+				}
+				// the other storage locations must stay reachable
+				open[goal] = false;
+				boolean others = true;
+				for (int other : goals) {
+					if (other != goal && this.pushPath(open, entrance, outside, other) == null) {
+						others = false;
+						break;
+					}
+				}
+				open[goal] = true;
+				if (others) {
+					best = path;
+					bestGoal = goal;
+				}
+			}
+			if (best == null) {
+				return null;
+			}
+			open[bestGoal] = false;
+			goals.remove(Integer.valueOf(bestGoal));
+			order[k] = best;
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the fewest pushes that bring a box from the entrance to the goal
+	 * with the player starting outside, the box and the player staying on open
+	 * cells and the cell outside, or null if there are none.
+	 */
+	private int[] pushPath(boolean[] open, int entrance, int outside, int goal) {
+		// positions are box * size + normalized player, mapped to the
+		// position and push they were reached from
+		int size = this.maze.size();
+		Map<Long, long[]> parent = new HashMap<>();
+		List<Long> queue = new ArrayList<>();
+		long start = (long) entrance * size + this.region(open, outside, entrance, null);
+		parent.put(start, null);
+		queue.add(start);
+		boolean[] reach = new boolean[size];
+		for (int head = 0; head < queue.size(); head++) {
+			long position = queue.get(head);
+			int box = (int) (position / size);
+			if (box == goal) {
+				int length = 0;
+				for (long[] p = parent.get(position); p != null; p = parent.get(p[0])) {
+					length++;
+				}
+				int[] path = new int[length];
+				for (long[] p = parent.get(position); p != null; p = parent.get(p[0])) {
+					path[--length] = (int) p[1];
+				}
+				return path;
+			}
+			this.region(open, (int) (position % size), box, reach);
+			for (int d = 0; d < 4; d++) {
+				int behind = box - this.steps[d];
+				int to = box + this.steps[d];
+				if (!reach[behind] || to == entrance || !open[to] || this.maze.isDead(to)) {
+					continue;
+				}
+				long child = (long) to * size + this.region(open, box, to, null);
+				if (!parent.containsKey(child)) {
+					parent.put(child, new long[] { position, 4 * box + d });
+					queue.add(child);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the smallest cell the player can reach from start with a box on
+	 * the cell box, moving over open cells and the cell outside the entrance,
+	 * and marks the reached cells in reach if it is not null.
+	 */
+	private int region(boolean[] open, int start, int box, boolean[] reach) {
+		boolean[] seen = reach != null ? reach : new boolean[this.maze.size()];
+		Arrays.fill(seen, false);
+		int[] queue = new int[this.maze.size()];
+		int tail = 0;
+		queue[tail++] = start;
+		seen[start] = true;
+		int min = start;
+		for (int head = 0; head < tail; head++) {
+			int cell = queue[head];
+			min = Math.min(min, cell);
+			for (int d = 0; d < 4; d++) {
+				int n = cell + this.steps[d];
+				if (!seen[n] && open[n] && n != box) {
+					seen[n] = true;
+					queue[tail++] = n;
+				}
+			}
+		}
+		return min;
+	}
+}
@@ -0,0 +1,443 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+import sokoban.Board;
+import sokoban.Direction;
+import sokoban.Location;
+
+/**
+ * The static part of a Sokoban level as seen by the solvers: which cells are
+ * floor, which are storage locations, and how cells are connected.
+ *
+ * <p>
+ * A {@code Maze} uses the cell numbering of the {@code Board} it was built
+ * from, including the border of cells outside of the level, so that a cell
+ * index can be passed back to {@code Board.locationOf}. It also records the
+ * position of the board at the time it was built as the start position of a
+ * search, and holds the Zobrist keys of the board, so that a position has the
+ * same hash in a search as {@code Board.stateHash} gives for it.
+ *
+ * <p>
+ * A {@code Maze} is immutable and can be shared between threads.
+ */
+public final class Maze {
+	private final int width;
+	private final int height;
+	private final int stride;
+	private final int size;
+	private final int[] steps = new int[4];
+	private final boolean[] floor;
+	private final int[] floorIndex;
+	private final int[] floorCells;
+	private final boolean[] goal;
+	private final boolean[] dead;
+	private final int[] goals;
+	private final int[] startBoxes;
+	private final int startPlayer;
+	private final long[] boxKeys;
+	private final long[] playerKeys;
+	private final Macros macros;
+	private final DeadlockPatterns patterns;
+
+	/**
+	 * Initializes a maze from the walls and storage locations of the specified
+	 * board, taking the current locations of the boxes and of the player as the
+	 * start position. The maze has no macros, so the informed solvers find
+	 * push-optimal solutions in it.
+	 *
+	 * @param board a board
+	 */
+	public Maze(Board board) {
+		this(board, false);
+	}
+
+	/**
+	 * Initializes a maze from the walls and storage locations of the specified
+	 * board, taking the current locations of the boxes and of the player as the
+	 * start position, and finds its tunnel and goal-room macros if asked to.
+	 *
+	 * @param board  a board
+	 * @param macros {@code true} to let the informed solvers use macro pushes
+	 */
+	public Maze(Board board, boolean macros) {
+		this(board, macros, null);
+	}
+
+	/**
+	 * Initializes a maze from the walls and storage locations of the specified
+	 * board, taking the current locations of the boxes and of the player as the
+	 * start position, finds its tunnel and goal-room macros if asked to, and
+	 * lets the solvers check their pushes against the specified store of
+	 * deadlock patterns.
+	 *
+	 * @param board    a board
+	 * @param macros   {@code true} to let the informed solvers use macro pushes
+	 * @param patterns the store of deadlock patterns to check and extend, or
+	 *                 {@code null} for none
+	 */
+	public Maze(Board board, boolean macros, DeadlockPatterns patterns) {
+		this.width = board.width();
+		this.height = board.height();
+		this.stride = board.stride();
+		this.size = board.cellCount();
+		for (Direction d : Direction.values()) {
+			this.steps[d.ordinal()] = board.neighbour(0, d);
+		}
+		this.floor = findFloor(board);
+		this.goal = new boolean[this.size];
+		this.floorIndex = new int[this.size];
+		int floorCount = 0;
+		int goalCount = 0;
+		int boxCount = 0;
+		for (int cell = 0; cell < this.size; cell++) {
+			this.floorIndex[cell] = this.floor[cell] ? floorCount++ : -1;
+			this.goal[cell] = this.floor[cell] && board.hasStorage(cell);
+			if (this.goal[cell]) {
+				goalCount++;
+			}
+			if (board.hasBox(cell)) {
+				boxCount++;
+			}
+		}
+		this.floorCells = new int[floorCount];
+		this.goals = new int[goalCount];
+		this.startBoxes = new int[boxCount];
+		for (int cell = 0, g = 0, b = 0; cell < this.size; cell++) {
+			if (this.floor[cell]) {
+				this.floorCells[this.floorIndex[cell]] = cell;
+			}
+			if (this.goal[cell]) {
+				this.goals[g++] = cell;
+			}
+			if (board.hasBox(cell)) {
+				this.startBoxes[b++] = cell;
+			}
+		}
+		this.startPlayer = board.playerCell();
+		this.dead = new boolean[this.size];
+		for (int cell = 0; cell < this.size; cell++) {
+			this.dead[cell] = board.isDeadSquare(cell);
+		}
+
+		this.boxKeys = new long[this.size];
+		this.playerKeys = new long[this.size];
+		for (int cell = 0; cell < this.size; cell++) {
+			this.boxKeys[cell] = board.boxKey(cell);
+			this.playerKeys[cell] = board.playerKey(cell);
+		}
+		this.patterns = patterns;
+		this.macros = macros ? new Macros(this) : null;
+	}
+
+	/**
+	 * Returns the cells of the board that the player can reach when the boxes
+	 * are ignored, together with the cells of the boxes. The other cells that
+	 * are not walls lie outside of the walls of the level and play no part in a
+	 * search.
+	 */
+	private static boolean[] findFloor(Board board) {
+		int size = board.cellCount();
+		boolean[] floor = new boolean[size];
+		int[] queue = new int[size];
+		int tail = 0;
+		floor[board.playerCell()] = true;
+		queue[tail++] = board.playerCell();
+		for (int head = 0; head < tail; head++) {
+			for (Direction d : Direction.values()) {
+				int n = board.neighbour(queue[head], d);
+				Location loc = board.locationOf(n);
+				boolean inside = loc.x() >= 0 && loc.y() >= 0 && loc.x() < board.width() && loc.y() < board.height();
+				if (!floor[n] && inside && !board.hasWall(n)) {
+					floor[n] = true;
+					queue[tail++] = n;
+				}
+			}
+		}
+		for (int cell = 0; cell < size; cell++) {
+			if (board.hasBox(cell)) {
+				floor[cell] = true;
+			}
+		}
+		return floor;
+	}
+
+	/**
+	 * Returns the width of the level.
+	 *
+	 * @return the width of the level
+	 */
+	public int width() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the height of the level.
+	 *
+	 * @return the height of the level
+	 */
+	public int height() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the difference between the indexes of two vertically adjacent
+	 * cells.
+	 *
+	 * @return the difference between the indexes of two vertically adjacent
+	 *         cells
+	 */
+	public int stride() {
+		return this.stride;
+	}
+
+	/**
+	 * Returns the number of cells, including the border of cells outside of the
+	 * level.
+	 *
+	 * @return the number of cells
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the offset between a cell and its neighbour in the direction with
+	 * the specified ordinal.
+	 *
+	 * @param direction the ordinal of a {@code Direction}
+	 * @return the offset between a cell and its neighbour in that direction
+	 */
+	public int step(int direction) {
+		return this.steps[direction];
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell is on the level and is not a
+	 * wall, {@code false} otherwise.
+	 *
+	 * @param cell a cell index
+	 * @return {@code true} if the cell is floor, {@code false} otherwise
+	 */
+	public boolean isFloor(int cell) {
+		return this.floor[cell];
+	}
+
+	/**
+	 * Returns the number of floor cells.
+	 *
+	 * @return the number of floor cells
+	 */
+	public int floorCount() {
+		return this.floorCells.length;
+	}
+
+	/**
+	 * Returns the position of the specified cell in the numbering of the floor
+	 * cells from 0 to {@code floorCount() - 1} in increasing order, or -1 if the
+	 * cell is not floor.
+	 *
+	 * @param cell a cell index
+	 * @return the floor number of the cell, or -1
+	 */
+	public int floorIndex(int cell) {
+		return this.floorIndex[cell];
+	}
+
+	/**
+	 * Returns the number of {@code int} words of a packed set of box cells,
+	 * that is, of a bit set over the floor cells.
+	 *
+	 * @return the number of words of a packed set of box cells
+	 */
+	public int packedWords() {
+		return (this.floorCells.length + 31) >>> 5;
+	}
+
+	/**
+	 * Packs the specified box cells into a bit set over the floor cells.
+	 *
+	 * @param boxes  an array holding the box cells
+	 * @param from   the index of the first box cell
+	 * @param count  the number of boxes
+	 * @param out    the array receiving the bit set
+	 * @param offset the index of the first word of the bit set in out
+	 */
+	public void pack(int[] boxes, int from, int count, int[] out, int offset) {
+		Arrays.fill(out, offset, offset + this.packedWords(), 0);
+		for (int i = from; i < from + count; i++) {
+			int f = this.floorIndex[boxes[i]];
+			out[offset + (f >>> 5)] |= 1 << f;
+		}
+	}
+
+	/**
+	 * Unpacks a bit set over the floor cells into box cells in increasing order.
+	 *
+	 * @param words  the array holding the bit set
+	 * @param offset the index of the first word of the bit set
+	 * @param boxes  the array receiving the box cells from index 0
+	 * @return the number of boxes
+	 */
+	public int unpack(int[] words, int offset, int[] boxes) {
+		int n = 0;
+		for (int w = 0; w < this.packedWords(); w++) {
+			int bits = words[offset + w];
+			while (bits != 0) {
+				boxes[n++] = this.floorCells[(w << 5) + Integer.numberOfTrailingZeros(bits)];
+				bits &= bits - 1;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns {@code true} if the specified cell is a storage location,
+	 * {@code false} otherwise.
+	 *
+	 * @param cell a cell index
+	 * @return {@code true} if the cell is a storage location, {@code false}
+	 *         otherwise
+	 */
+	public boolean isGoal(int cell) {
+		return this.goal[cell];
+	}
+
+	/**
+	 * Returns {@code true} if a box on the specified floor cell can never reach a
+	 * storage location, whatever the other boxes do, {@code false} otherwise.
+	 *
+	 * @param cell a cell index
+	 * @return {@code true} if the cell is a dead square
+	 */
+	public boolean isDead(int cell) {
+		return this.dead[cell];
+	}
+
+	/**
+	 * Returns the cells of the storage locations in increasing order.
+	 *
+	 * @return the cells of the storage locations
+	 */
+	public int[] goals() {
+		return this.goals.clone();
+	}
+
+	/**
+	 * Returns the number of storage locations.
+	 *
+	 * @return the number of storage locations
+	 */
+	public int goalCount() {
+		return this.goals.length;
+	}
+
+	/**
+	 * Returns the number of boxes.
+	 *
+	 * @return the number of boxes
+	 */
+	public int boxCount() {
+		return this.startBoxes.length;
+	}
+
+	/**
+	 * Returns the cells of the boxes in the start position in increasing
+	 * order.
+	 *
+	 * @return the cells of the boxes in the start position
+	 */
+	public int[] startBoxes() {
+		return this.startBoxes.clone();
+	}
+
+	/**
+	 * Returns the cell of the player in the start position.
+	 *
+	 * @return the cell of the player in the start position
+	 */
+	public int startPlayer() {
+		return this.startPlayer;
+	}
+
+	/**
+	 * Returns the Zobrist key of a box on the specified cell.
+	 *
+	 * @param cell a cell index
+	 * @return the Zobrist key of a box on the cell
+	 */
+	public long boxKey(int cell) {
+		return this.boxKeys[cell];
+	}
+
+	/**
+	 * Returns the Zobrist key of the player on the specified cell.
+	 *
+	 * @param cell a cell index
+	 * @return the Zobrist key of the player on the cell
+	 */
+	public long playerKey(int cell) {
+		return this.playerKeys[cell];
+	}
+
+	/**
+	 * Returns {@code true} if every storage location has a box on it in the
+	 * specified sorted array of box cells, {@code false} otherwise.
+	 *
+	 * @param boxes an array of box cells in increasing order
+	 * @param from  the index of the first box cell
+	 * @param count the number of box cells
+	 * @return {@code true} if every storage location has a box on it
+	 */
+	public boolean isSolved(int[] boxes, int from, int count) {
+		int onGoal = 0;
+		for (int i = from; i < from + count; i++) {
+			if (this.goal[boxes[i]]) {
+				onGoal++;
+			}
+		}
+		return onGoal == this.goals.length;
+	}
+
+	/**
+	 * Returns the macro pushes of the maze, or {@code null} if the solvers are
+	 * to push one box one cell at a time.
+	 *
+	 * @return the macros of the maze, or {@code null}
+	 */
+	Macros macros() {
+		return this.macros;
+	}
+
+	/**
+	 * Returns the store of deadlock patterns the solvers check their pushes
+	 * against, or {@code null} if there is none.
+	 *
+	 * @return the deadlock patterns of the maze, or {@code null}
+	 */
+	DeadlockPatterns patterns() {
+		return this.patterns;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				int cell = (y + 1) * this.stride + (x + 1);
+				int box = Arrays.binarySearch(this.startBoxes, cell);
+				if (!this.floor[cell]) {
+					b.append('#');
+				} else if (box >= 0) {
+					b.append(this.goal[cell] ? '*' : '$');
+				} else if (cell == this.startPlayer) {
+					b.append(this.goal[cell] ? '+' : '@');
+				} else {
+					b.append(this.goal[cell] ? '.' : ' ');
+				}
+			}
+			b.append('\n');
+		}
+		return b.toString();
+	}
+}
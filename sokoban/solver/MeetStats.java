@@ -0,0 +1,127 @@
+package sokoban.solver;
+
+/**
+ * The statistics of a bidirectional search: how much each of its two
+ * searches explored and where they met.
+ */
+public final class MeetStats {
+	private final long forwardExpanded;
+	private final long backwardExpanded;
+	private final long forwardStates;
+	private final long backwardStates;
+	private final int forwardLayers;
+	private final int backwardLayers;
+	private final int forwardDepth;
+	private final int backwardDepth;
+	private final long meetings;
+
+	MeetStats(long forwardExpanded, long backwardExpanded, long forwardStates, long backwardStates,
+			int forwardLayers, int backwardLayers, int forwardDepth, int backwardDepth, long meetings) {
+		this.forwardExpanded = forwardExpanded;
+		this.backwardExpanded = backwardExpanded;
+		this.forwardStates = forwardStates;
+		this.backwardStates = backwardStates;
+		this.forwardLayers = forwardLayers;
+		this.backwardLayers = backwardLayers;
+		this.forwardDepth = forwardDepth;
+		this.backwardDepth = backwardDepth;
+		this.meetings = meetings;
+	}
+
+	/**
+	 * Returns the number of positions the forward search expanded.
+	 *
+	 * @return the number of positions expanded by pushing
+	 */
+	public long forwardExpanded() {
+		return this.forwardExpanded;
+	}
+
+	/**
+	 * Returns the number of positions the backward search expanded.
+	 *
+	 * @return the number of positions expanded by pulling
+	 */
+	public long backwardExpanded() {
+		return this.backwardExpanded;
+	}
+
+	/**
+	 * Returns the number of positions the forward search stored.
+	 *
+	 * @return the number of positions found by pushing
+	 */
+	public long forwardStates() {
+		return this.forwardStates;
+	}
+
+	/**
+	 * Returns the number of positions the backward search stored, the solved
+	 * positions it started from included.
+	 *
+	 * @return the number of positions found by pulling
+	 */
+	public long backwardStates() {
+		return this.backwardStates;
+	}
+
+	/**
+	 * Returns the number of layers the forward search expanded.
+	 *
+	 * @return the number of forward layers
+	 */
+	public int forwardLayers() {
+		return this.forwardLayers;
+	}
+
+	/**
+	 * Returns the number of layers the backward search expanded.
+	 *
+	 * @return the number of backward layers
+	 */
+	public int backwardLayers() {
+		return this.backwardLayers;
+	}
+
+	/**
+	 * Returns the number of pushes of the solution made before the meeting
+	 * position, that is, its depth in the forward search.
+	 *
+	 * @return the forward depth of the meeting
+	 */
+	public int forwardDepth() {
+		return this.forwardDepth;
+	}
+
+	/**
+	 * Returns the number of pushes of the solution made after the meeting
+	 * position, that is, its depth in the backward search.
+	 *
+	 * @return the backward depth of the meeting
+	 */
+	public int backwardDepth() {
+		return this.backwardDepth;
+	}
+
+	/**
+	 * Returns the number of times a search generated a position of the other
+	 * one.
+	 *
+	 * @return the number of meetings
+	 */
+	public long meetings() {
+		return this.meetings;
+	}
+
+	/**
+	 * Returns a one-line summary of these statistics.
+	 *
+	 * @return a one-line summary of these statistics
+	 */
+	@Override
+	public String toString() {
+		return String.format("meet=%d+%d layers=%d/%d states=%d/%d expanded=%d/%d meetings=%d", this.forwardDepth,
+				this.backwardDepth, this.forwardLayers, this.backwardLayers, this.forwardStates, this.backwardStates,
+				this.forwardExpanded, this.backwardExpanded, this.meetings);
+	}
+}
@@ -0,0 +1,168 @@
+package sokoban.solver;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A background thread that samples the {@code SolverMetrics} of a search at a
+ * fixed interval and prints every sample as one line of JSON.
+ *
+ * <p>
+ * A sample holds the label of the sampler, the elapsed time, the current
+ * phase, the counters of the metrics, the positions expanded and generated per
+ * second since the previous sample, the heap in use and the time per phase.
+ * For example, broken over several lines here:
+ *
+ * <pre>
+ * {"label":"level01.txt bfs","elapsedMs":1000.2,"phase":"search","expanded":5120,"generated":10240,
+ *  "expandedPerSecond":5118.9,"generatedPerSecond":10237.9,"frontier":300,"tableLookups":0,
+ *  "tableHitRate":0.000,"prunes":{"deadSquare":12,"freeze":3,"pattern":0,"corral":40,"bound":0},
+ *  "heapUsedMB":12.5,"phaseMs":{"setup":0.4,"search":999.8},"final":false}
+ * </pre>
+ *
+ * <p>
+ * Closing the sampler stops the thread and prints a last
+ * sample with {@code "final":true}.
+ */
+public final class MetricsSampler implements AutoCloseable {
+	private final SolverMetrics metrics;
+	private final String label;
+	private final long intervalMillis;
+	private final PrintStream out;
+	private final Thread thread;
+	private volatile boolean running = true;
+	private long lastNanos;
+	private long lastExpanded;
+	private long lastGenerated;
+
+	/**
+	 * Starts a sampler of the specified metrics.
+	 *
+	 * @param metrics        the metrics of a search
+	 * @param label          the label of the samples, such as the level and the
+	 *                       solver
+	 * @param intervalMillis the time between two samples in milliseconds
+	 * @param out            the stream to print the samples to
+	 */
+	public MetricsSampler(SolverMetrics metrics, String label, long intervalMillis, PrintStream out) {
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("interval must be positive: " + intervalMillis);
+		}
+		this.metrics = metrics;
+		this.label = label;
+		this.intervalMillis = intervalMillis;
+		this.out = out;
+		this.lastNanos = metrics.elapsedNanos();
+		this.thread = new Thread(this::run, "metrics-sampler");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	private void run() {
+		while (this.running) {
+			try {
+				Thread.sleep(this.intervalMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (this.running) {
+				this.sample(false);
+			}
+		}
+	}
+
+	/**
+	 * Prints one sample of the metrics.
+	 */
+	private synchronized void sample(boolean last) {
+		long nanos = this.metrics.elapsedNanos();
+		long expanded = this.metrics.expanded();
+		long generated = this.metrics.generated();
+		double seconds = Math.max(1, nanos - this.lastNanos) / 1e9;
+		StringBuilder b = new StringBuilder(384);
+		b.append("{\"label\":");
+		quote(b, this.label);
+		b.append(String.format(Locale.ROOT, ",\"elapsedMs\":%.1f,\"phase\":", nanos / 1e6));
+		String phase = this.metrics.phase();
+		if (phase == null) {
+			b.append("null");
+		} else {
+			quote(b, phase);
+		}
+		b.append(String.format(Locale.ROOT,
+				",\"expanded\":%d,\"generated\":%d,\"expandedPerSecond\":%.1f,\"generatedPerSecond\":%.1f,\"frontier\":%d",
+				expanded, generated, (expanded - this.lastExpanded) / seconds,
+				(generated - this.lastGenerated) / seconds, this.metrics.frontier()));
+		b.append(String.format(Locale.ROOT, ",\"tableLookups\":%d,\"tableHitRate\":%.3f,\"prunes\":{",
+				this.metrics.tableLookups(), this.metrics.tableHitRate()));
+		for (SolverMetrics.Prune kind : SolverMetrics.Prune.values()) {
+			if (kind.ordinal() > 0) {
+				b.append(',');
+			}
+			quote(b, camelCase(kind.name()));
+			b.append(':').append(this.metrics.prunes(kind));
+		}
+		Runtime runtime = Runtime.getRuntime();
+		b.append(String.format(Locale.ROOT, "},\"heapUsedMB\":%.1f,\"phaseMs\":{",
+				(runtime.totalMemory() - runtime.freeMemory()) / 1048576.0));
+		boolean first = true;
+		for (Map.Entry<String, Long> e : this.metrics.phaseNanos().entrySet()) {
+			if (!first) {
+				b.append(',');
+			}
+			first = false;
+			quote(b, e.getKey());
+			b.append(String.format(Locale.ROOT, ":%.1f", e.getValue() / 1e6));
+		}
+		b.append("},\"final\":").append(last).append('}');
+		this.out.println(b);
+		this.lastNanos = nanos;
+		this.lastExpanded = expanded;
+		this.lastGenerated = generated;
+	}
+
+	private static void quote(StringBuilder b, String s) {
+		b.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if (c < ' ') {
+				b.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		b.append('"');
+	}
+
+	private static String camelCase(String constant) {
+		StringBuilder b = new StringBuilder();
+		boolean upper = false;
+		for (char c : constant.toLowerCase(Locale.ROOT).toCharArray()) {
+			if (c == '_') {
+				upper = true;
+			} else {
+				b.append(upper ? Character.toUpperCase(c) : c);
+				upper = false;
+			}
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Stops the sampler and prints a last sample.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+		this.thread.interrupt();
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.sample(true);
+	}
+}
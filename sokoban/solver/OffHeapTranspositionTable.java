@@ -0,0 +1,160 @@
+package sokoban.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@code TranspositionTable} kept in direct byte buffers outside the Java
+ * heap, so that a large table costs the garbage collector nothing.
+ *
+ * <p>
+ * The table uses open addressing with linear probing: a key lives in one of
+ * the {@code PROBES} slots that follow the slot chosen by its hash. Entries are
+ * never removed one by one, so a lookup stops at the first empty slot. When
+ * all the slots of a key are taken, the entry with the lowest value among them
+ * is replaced, unless the new value is lower still, in which case the new
+ * entry is dropped. An entry costs twelve bytes: the key and the value.
+ */
+final class OffHeapTranspositionTable implements TranspositionTable {
+	private static final int ENTRY = 12;
+	private static final int PROBES = 8;
+
+	// slots per buffer, so that a buffer stays well below 2 GB
+	private static final int CHUNK_BITS = 26;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private final ByteBuffer[] chunks;
+	private final long slotMask;
+	private long size;
+	private long lookups;
+	private long hits;
+	private long evictions;
+
+	/**
+	 * Initializes a table that occupies at most the specified number of bytes:
+	 * the largest power of two of slots that fits, but at least
+	 * {@code PROBES} slots.
+	 *
+	 * @param bytes the byte budget of the table
+	 */
+	OffHeapTranspositionTable(long bytes) {
+		long slots = Long.highestOneBit(Math.max(PROBES, bytes / ENTRY));
+		this.slotMask = slots - 1;
+		int count = (int) ((slots + CHUNK_MASK) >>> CHUNK_BITS);
+		this.chunks = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long chunkSlots = Math.min(slots - ((long) i << CHUNK_BITS), 1 << CHUNK_BITS);
+			this.chunks[i] = ByteBuffer.allocateDirect((int) (chunkSlots * ENTRY)).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	private long home(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (h ^ (h >>> 32)) & this.slotMask;
+	}
+
+	private ByteBuffer chunk(long slot) {
+		return this.chunks[(int) (slot >>> CHUNK_BITS)];
+	}
+
+	private static int offset(long slot) {
+		return ((int) slot & CHUNK_MASK) * ENTRY;
+	}
+
+	@Override
+	public int get(long key) {
+		this.lookups++;
+		long slot = this.home(key);
+		for (int p = 0; p < PROBES; p++, slot = (slot + 1) & this.slotMask) {
+			ByteBuffer chunk = this.chunk(slot);
+			int at = offset(slot);
+			long k = chunk.getLong(at);
+			if (k == key) {
+				this.hits++;
+				return chunk.getInt(at + 8);
+			}
+			if (k == 0) {
+				break;
+			}
+		}
+		return MISSING;
+	}
+
+	@Override
+	public void put(long key, int value) {
+		long slot = this.home(key);
+		long victim = slot;
+		int victimValue = Integer.MAX_VALUE;
+		for (int p = 0; p < PROBES; p++, slot = (slot + 1) & this.slotMask) {
+			ByteBuffer chunk = this.chunk(slot);
+			int at = offset(slot);
+			long k = chunk.getLong(at);
+			if (k == key) {
+				chunk.putInt(at + 8, value);
+				return;
+			}
+			if (k == 0) {
+				chunk.putLong(at, key);
+				chunk.putInt(at + 8, value);
+				this.size++;
+				return;
+			}
+			int v = chunk.getInt(at + 8);
+			if (v < victimValue) {
+				victim = slot;
+				victimValue = v;
+			}
+		}
+		if (victimValue > value) {
+			return;
+		}
+		ByteBuffer chunk = this.chunk(victim);
+		int at = offset(victim);
+		chunk.putLong(at, key);
+		chunk.putInt(at + 8, value);
+		this.evictions++;
+	}
+
+	@Override
+	public void clear() {
+		for (ByteBuffer chunk : this.chunks) {
+			for (int at = 0; at < chunk.capacity(); at += 8) {
+				chunk.putLong(at, 0);
+			}
+		}
+		this.size = 0;
+		this.lookups = 0;
+		this.hits = 0;
+		this.evictions = 0;
+	}
+
+	@Override
+	public long capacity() {
+		return this.slotMask + 1;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public long bytes() {
+		return ENTRY * (this.slotMask + 1);
+	}
+
+	@Override
+	public long lookups() {
+		return this.lookups;
+	}
+
+	@Override
+	public long hits() {
+		return this.hits;
+	}
+
+	@Override
+	public long evictions() {
+		return this.evictions;
+	}
+}
@@ -0,0 +1,255 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A push-optimal solver that runs the iterations of IDA* on several threads of
+ * a work-stealing {@code ForkJoinPool}.
+ *
+ * <p>
+ * Every iteration searches the same tree as {@code IdaStarSolver}. A task
+ * searches the subtree below one position. While the pool has few tasks
+ * waiting, a task expands its position and forks one task per push, which idle
+ * threads steal from the bottom of the deque; otherwise it searches its subtree
+ * depth-first on its own thread. Every thread has its own {@code IdaSearch},
+ * so the threads only share a {@code StripedTranspositionTable} of the
+ * positions searched in the iteration, the budget of positions to expand and
+ * the solution. Every solution found within the threshold of an iteration is
+ * as short as that of {@code IdaStarSolver}, push-optimal unless the maze was
+ * built with macros, so the search stops at the first one.
+ */
+public class ParallelSolver implements Solver {
+
+	// the most forked tasks a thread may have waiting before it stops splitting
+	private static final int SURPLUS = 3;
+
+	private final int threads;
+	private final long tableBytes;
+	private final boolean offHeap;
+	private final long maxNodes;
+
+	/**
+	 * Initializes a solver that uses every available processor and an
+	 * off-heap transposition table of {@code IdaStarSolver.DEFAULT_TABLE_BYTES}
+	 * bytes, and searches until the level is solved or shown to be unsolvable.
+	 */
+	public ParallelSolver() {
+		this(Runtime.getRuntime().availableProcessors(), IdaStarSolver.DEFAULT_TABLE_BYTES, true, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a solver that uses at most the specified number of threads
+	 * and a transposition table of at most the specified number of bytes, and
+	 * gives up once it has expanded about the specified number of positions.
+	 *
+	 * @param threads    the maximum number of threads
+	 * @param tableBytes the byte budget of the transposition table, or 0 to
+	 *                   search without one
+	 * @param offHeap    {@code true} to keep the table outside the Java heap
+	 * @param maxNodes   the maximum number of positions to expand
+	 */
+	public ParallelSolver(int threads, long tableBytes, boolean offHeap, long maxNodes) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		this.threads = threads;
+		this.tableBytes = tableBytes;
+		this.offHeap = offHeap;
+		this.maxNodes = maxNodes;
+	}
+
+	@Override
+	public String name() {
+		return "parallel";
+	}
+
+	/**
+	 * Returns the maximum number of threads of this solver.
+	 *
+	 * @return the maximum number of threads
+	 */
+	public int threads() {
+		return this.threads;
+	}
+
+	@Override
+	public Solution solve(Maze maze, SolverMetrics metrics) {
+		long start = System.nanoTime();
+		metrics.startPhase("setup");
+		int n = maze.boxCount();
+		if (maze.goalCount() > n) {
+			metrics.finish();
+			return new Solution(this.name(), Solution.Status.UNSOLVABLE, "", 0, 0, 0, System.nanoTime() - start,
+					0);
+		}
+		TranspositionTable table = this.tableBytes > 0
+				? new StripedTranspositionTable(this.tableBytes, 16 * this.threads, this.offHeap)
+				: null;
+		if (table != null) {
+			metrics.watch(table);
+		}
+		Shared shared = new Shared(maze, table, this.maxNodes, metrics);
+		int[] root = maze.startBoxes();
+		Expander ex = new Expander(maze);
+		ex.load(maze.startPlayer(), root, 0, n);
+		int player = ex.normalizedPlayer();
+		long boxHash = ex.boxHash();
+		int onGoal = 0;
+		for (int b : root) {
+			if (maze.isGoal(b)) {
+				onGoal++;
+			}
+		}
+		long[] hashes = { IdaSearch.key(maze, boxHash, player) };
+
+		Solution.Status status = Solution.Status.UNSOLVABLE;
+		ForkJoinPool pool = new ForkJoinPool(this.threads);
+		try {
+			int threshold = new AssignmentBound(maze).compute(root);
+			metrics.startPhase("search");
+			for (int iteration = 1; threshold < AssignmentBound.INFINITE; iteration++) {
+				shared.threshold = threshold;
+				shared.iteration = iteration;
+				for (IdaSearch search : shared.searches) {
+					search.startIteration(threshold, iteration);
+				}
+				pool.invoke(new Task(shared, 0, 0, player, boxHash, onGoal, root, new int[0], hashes));
+				if (shared.stop.get()) {
+					status = shared.solution.get() != null ? Solution.Status.SOLVED : Solution.Status.GAVE_UP;
+					break;
+				}
+				threshold = AssignmentBound.INFINITE;
+				for (IdaSearch search : shared.searches) {
+					threshold = Math.min(threshold, search.next());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		long expanded = 0;
+		long generated = 0;
+		long bytes = table != null ? table.bytes() : 0;
+		for (IdaSearch search : shared.searches) {
+			expanded += search.expanded();
+			generated += search.generated();
+			bytes += search.bytes();
+		}
+		metrics.startPhase("path");
+		int[] path = status == Solution.Status.SOLVED ? shared.solution.get() : new int[0];
+		String moves = Solution.movesOf(maze, maze.macros(), path);
+		metrics.finish();
+		Solution solution = new Solution(this.name(), status, moves, path.length, expanded, generated,
+				System.nanoTime() - start, bytes);
+		solution.setTableStats(table != null ? new TableStats(table, this.offHeap) : null);
+		return solution;
+	}
+
+	/**
+	 * The state shared by the tasks of one solve, including the search of
+	 * every thread of the pool.
+	 */
+	private static final class Shared {
+		final Maze maze;
+		final TranspositionTable table;
+		final SolverMetrics metrics;
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicLong budget;
+		final AtomicReference<int[]> solution = new AtomicReference<>();
+		final Queue<IdaSearch> searches = new ConcurrentLinkedQueue<>();
+		final ThreadLocal<IdaSearch> local = ThreadLocal.withInitial(this::newSearch);
+		volatile int threshold;
+		volatile int iteration;
+
+		Shared(Maze maze, TranspositionTable table, long maxNodes, SolverMetrics metrics) {
+			this.maze = maze;
+			this.table = table;
+			this.metrics = metrics;
+			this.budget = new AtomicLong(maxNodes);
+		}
+
+		private IdaSearch newSearch() {
+			IdaSearch search = new IdaSearch(this.maze, this.table, this.stop, this.budget, this.solution,
+					this.metrics);
+			search.startIteration(this.threshold, this.iteration);
+			this.searches.add(search);
+			return search;
+		}
+	}
+
+	/**
+	 * Searches the subtree below one position. The task owns copies of the
+	 * boxes of the position and of the path leading to it, since the search of
+	 * a thread is reused by every task the thread runs.
+	 */
+	private static final class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Shared shared;
+		private final int depth;
+		private final int g;
+		private final int player;
+		private final long boxHash;
+		private final int onGoal;
+		private final int[] boxes;
+		private final int[] path;
+		private final long[] hashes;
+
+		Task(Shared shared, int depth, int g, int player, long boxHash, int onGoal, int[] boxes, int[] path,
+				long[] hashes) {
+			this.shared = shared;
+			this.depth = depth;
+			this.g = g;
+			this.player = player;
+			this.boxHash = boxHash;
+			this.onGoal = onGoal;
+			this.boxes = boxes;
+			this.path = path;
+			this.hashes = hashes;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.shared.stop.get()) {
+				return;
+			}
+			IdaSearch search = this.shared.local.get();
+			search.place(this.depth, this.boxes, this.path, this.hashes);
+			if (getSurplusQueuedTaskCount() > SURPLUS) {
+				search.search(this.depth, this.g, this.player, this.boxHash, this.onGoal);
+				return;
+			}
+			int count = search.expand(this.depth, this.g, this.player, this.onGoal);
+			if (count <= 0) {
+				return;
+			}
+			Task[] children = new Task[count];
+			int forked = 0;
+			for (int c = 0; c < count; c++) {
+				if (!search.prepare(this.depth, c, this.g, this.boxHash, this.onGoal)) {
+					continue;
+				}
+				int d = this.depth + 1;
+				children[forked++] = new Task(this.shared, d, search.childG(), search.childPlayer(), search.childBoxHash(),
+						search.childOnGoal(), search.boxes(d).clone(), Arrays.copyOf(search.path(), d),
+						Arrays.copyOf(search.hashes(), d + 1));
+			}
+			// fork in reverse so that the most promising push is run first here
+			for (int c = forked - 1; c > 0; c--) {
+				children[c].fork();
+			}
+			if (forked > 0) {
+				children[0].compute();
+			}
+			for (int c = 1; c < forked; c++) {
+				children[c].join();
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.util.List;
+
+import sokoban.Board;
+
+/**
+ * An ad-hoc check that the deadlock patterns only prune dead pushes.
+ *
+ * <p>
+ * The check first runs the proof of {@code PatternDeadlock} on arrangements
+ * known to be dead, such as a block of four boxes or two boxes side by side
+ * against a wall, off storage locations, and on arrangements known to be
+ * alive. It then solves the bundled levels with {@code bfs} and {@code astar},
+ * each given a budget of positions, with and without a store of patterns shared
+ * by all the levels. When a solver solves a level both ways, the two solutions
+ * must have the same number of pushes, and the one of levels 1 to 6 the number
+ * of {@code PushCountCheck}. A level solved one way must not be found
+ * unsolvable the other way.
+ */
+public class PatternCheck {
+
+	private static final int LEVELS = 8;
+	private static final int MAX_STATES = 1_000_000;
+
+	/**
+	 * Checks that the proof finds the arrangement around the first box of the
+	 * specified level dead or alive as expected, and that the store then
+	 * answers the same without a proof.
+	 */
+	private static void checkArrangement(boolean dead, String... rows) {
+		Maze maze = new Maze(new Board(List.of(rows)), false, new DeadlockPatterns());
+		boolean[] box = new boolean[maze.size()];
+		for (int cell : maze.startBoxes()) {
+			box[cell] = true;
+		}
+		PatternDeadlock check = new PatternDeadlock(maze, maze.patterns());
+		int cell = maze.startBoxes()[0];
+		String name = String.join("|", rows);
+		if (check.isDeadlocked(box, cell) != dead) {
+			throw new AssertionError(name + ": proved " + (dead ? "alive" : "dead"));
+		}
+		if (maze.patterns().size() != 1 || check.isDeadlocked(box, cell) != dead) {
+			throw new AssertionError(name + ": the store does not hold the arrangement");
+		}
+	}
+
+	private static void checkLevel(Solver solver, String filename, DeadlockPatterns patterns) throws IOException {
+		Solution plain = solver.solve(new Maze(new Board(filename), false, null), new SolverMetrics());
+		Solution pruned = solver.solve(new Maze(new Board(filename), false, patterns), new SolverMetrics());
+		System.out.println(filename + " " + plain);
+		System.out.println(filename + " " + pruned + " with patterns");
+		if (plain.isSolved() && pruned.isSolved() && plain.pushCount() != pruned.pushCount()) {
+			throw new AssertionError(filename + " " + solver.name() + ": " + pruned.pushCount()
+					+ " pushes with patterns, " + plain.pushCount() + " without");
+		}
+		if (plain.isSolved() && pruned.status() == Solution.Status.UNSOLVABLE
+				|| pruned.isSolved() && plain.status() == Solution.Status.UNSOLVABLE) {
+			throw new AssertionError(filename + " " + solver.name() + ": solved one way only");
+		}
+		int level = Integer.parseInt(filename.substring(5, 7));
+		for (Solution solution : new Solution[] { plain, pruned }) {
+			if (level <= PushCountCheck.PUSHES.length && solution.isSolved()
+					&& solution.pushCount() != PushCountCheck.PUSHES[level - 1]) {
+				throw new AssertionError(filename + " " + solver.name() + ": " + solution.pushCount()
+						+ " pushes, expected " + PushCountCheck.PUSHES[level - 1]);
+			}
+			if (solution.isSolved() && !solution.replay(new Board(filename))) {
+				throw new AssertionError(filename + " " + solver.name() + ": replay failed");
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		// a block of four boxes in the open
+		checkArrangement(true, "#########", "#.     .#", "#       #", "#   $$  #", "#   $$  #", "#       #",
+				"#.  @  .#", "#########");
+		// two boxes side by side against a wall, also with one on a storage location
+		checkArrangement(true, "#########", "#  $$   #", "#       #", "#       #", "#.  @  .#", "#########");
+		checkArrangement(true, "#########", "#  *$   #", "#       #", "#       #", "#   @  .#", "#########");
+		// the same with room to push the boxes apart, or on storage locations
+		checkArrangement(false, "#########", "#.     .#", "#       #", "#   $$  #", "#       #", "#   @   #",
+				"#########");
+		checkArrangement(false, "#########", "#  $ $  #", "#       #", "#       #", "#.  @  .#", "#########");
+		checkArrangement(false, "#########", "#       #", "#       #", "#   **  #", "#   **  #", "#       #",
+				"#   @   #", "#########");
+		DeadlockPatterns patterns = new DeadlockPatterns();
+		Solver[] solvers = { new BfsSolver(MAX_STATES), new AStarSolver(MAX_STATES) };
+		for (int level = 1; level <= LEVELS; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (Solver solver : solvers) {
+				checkLevel(solver, filename, patterns);
+			}
+		}
+		System.out.println("OK: 6 arrangements, " + LEVELS + " levels, " + patterns);
+	}
+}
@@ -0,0 +1,283 @@
+package sokoban.solver;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A check of the arrangement of boxes around a pushed box against a shared
+ * {@code DeadlockPatterns} store, which proves and records the arrangements
+ * the store does not know yet.
+ *
+ * <p>
+ * The arrangement is the window of {@code SIDE} by {@code SIDE} cells centred
+ * on the box. Its signature holds one base-five digit per cell: 0 for floor,
+ * 1 for a storage location, 2 for a wall or a cell outside the level, plus 3
+ * if the cell holds a box. An arrangement with a single box is left to the
+ * dead squares of the maze, and one with more than {@code MAX_BOXES} boxes is
+ * not checked.
+ *
+ * <p>
+ * To prove an arrangement dead, the checker searches the pushes of its boxes
+ * on a copy of the window surrounded by a ring of free cells, from every
+ * region the player could stand in. A box pushed onto the ring has left the
+ * window and is taken away. The arrangement is alive if the search reaches a
+ * position in which all the remaining boxes are on storage locations; it is
+ * dead if the search runs out of positions. Since the ring stands for any
+ * rest of the level and taking boxes away only makes a level easier, a dead
+ * arrangement is dead in every level with as many boxes as storage locations,
+ * the only levels it is checked on. A search that stores more than
+ * {@code MAX_STATES} positions counts the arrangement as alive.
+ *
+ * <p>
+ * An instance is not thread-safe; the store it uses can be shared.
+ */
+final class PatternDeadlock {
+
+	/** The number of rows and columns of the window. */
+	static final int SIDE = 5;
+
+	/** The largest number of boxes of a checked arrangement. */
+	static final int MAX_BOXES = 4;
+
+	/** The largest number of positions the proof of an arrangement stores. */
+	static final int MAX_STATES = 4096;
+
+	private static final int CELLS = SIDE * SIDE;
+	private static final int FLOOR = 0;
+	private static final int GOAL = 1;
+	private static final int WALL = 2;
+	private static final int BOX = 3;
+
+	// the proof works on a grid of the window, the ring of free cells around it
+	// and a border of walls around the ring
+	private static final int GRID = SIDE + 4;
+	private static final int[] GRID_STEPS = { -1, 1, -GRID, GRID };
+
+	private final DeadlockPatterns patterns;
+	private final long[] powers = new long[CELLS];
+	// the cells of the window centred on each cell of the maze, -1 outside
+	// the maze, and the signature of the window without its boxes
+	private final int[] window;
+	private final long[] empty;
+
+	// the grid of the proof: the window cell of each grid cell or -1, the walls
+	// of the arrangement being proved and the cells of the ring
+	private final int[] windowCell = new int[GRID * GRID];
+	private final boolean[] wall = new boolean[GRID * GRID];
+	private final boolean[] ring = new boolean[GRID * GRID];
+	private final int[] fill = new int[GRID * GRID];
+	private final int[] mark = new int[GRID * GRID];
+	private final boolean[] reachable = new boolean[GRID * GRID];
+	private int stamp;
+
+	/**
+	 * Initializes a checker of the positions of the specified maze.
+	 *
+	 * @param maze     a maze
+	 * @param patterns the store of arrangements
+	 */
+	PatternDeadlock(Maze maze, DeadlockPatterns patterns) {
+		this.patterns = patterns;
+		this.powers[0] = 1;
+		for (int i = 1; i < CELLS; i++) {
+			this.powers[i] = 5 * this.powers[i - 1];
+		}
+		int stride = maze.stride();
+		int rows = maze.size() / stride;
+		this.window = new int[maze.size() * CELLS];
+		this.empty = new long[maze.size()];
+		for (int cell = 0; cell < maze.size(); cell++) {
+			if (!maze.isFloor(cell)) {
+				continue;
+			}
+			long signature = 0;
+			for (int i = 0; i < CELLS; i++) {
+				int row = cell / stride + i / SIDE - SIDE / 2;
+				int column = cell % stride + i % SIDE - SIDE / 2;
+				int c = row >= 0 && row < rows && column >= 0 && column < stride ? row * stride + column : -1;
+				this.window[cell * CELLS + i] = c;
+				int code = c < 0 || !maze.isFloor(c) ? WALL : maze.isGoal(c) ? GOAL : FLOOR;
+				signature += code * this.powers[i];
+			}
+			this.empty[cell] = signature;
+		}
+		Arrays.fill(this.windowCell, -1);
+		for (int g = 0; g < GRID * GRID; g++) {
+			int row = g / GRID;
+			int column = g % GRID;
+			boolean border = row == 0 || row == GRID - 1 || column == 0 || column == GRID - 1;
+			this.ring[g] = !border && (row == 1 || row == GRID - 2 || column == 1 || column == GRID - 2);
+			if (border) {
+				this.wall[g] = true;
+			} else if (!this.ring[g]) {
+				this.windowCell[g] = (row - 2) * SIDE + column - 2;
+			}
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the box on the specified cell is part of a dead
+	 * arrangement of the specified boxes, proving the arrangement first if the
+	 * store does not know it.
+	 *
+	 * @param box  whether each cell of the maze holds a box
+	 * @param cell the cell of a box
+	 * @return {@code true} if the arrangement around the box is dead
+	 */
+	boolean isDeadlocked(boolean[] box, int cell) {
+		long signature = this.empty[cell];
+		int boxes = 0;
+		int at = cell * CELLS;
+		for (int i = 0; i < CELLS; i++) {
+			int c = this.window[at + i];
+			if (c >= 0 && box[c]) {
+				signature += BOX * this.powers[i];
+				boxes++;
+			}
+		}
+		if (boxes < 2 || boxes > MAX_BOXES) {
+			return false;
+		}
+		int known = this.patterns.lookup(signature);
+		if (known == DeadlockPatterns.UNKNOWN) {
+			known = this.isDead(signature) ? DeadlockPatterns.DEAD : DeadlockPatterns.ALIVE;
+			this.patterns.add(signature, known == DeadlockPatterns.DEAD);
+		}
+		if (known == DeadlockPatterns.DEAD) {
+			this.patterns.countPrune();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Searches the pushes of the arrangement with the specified signature and
+	 * returns {@code true} if none of them reaches a position without boxes
+	 * off storage locations.
+	 */
+	private boolean isDead(long signature) {
+		// a position is the bit set of the window cells with a box and the
+		// smallest grid cell of the region of the player above it
+		int boxes = 0;
+		int goals = 0;
+		for (int g = 0; g < GRID * GRID; g++) {
+			int i = this.windowCell[g];
+			if (i < 0) {
+				continue;
+			}
+			int code = (int) (signature / this.powers[i] % 5);
+			this.wall[g] = code == WALL;
+			if (code >= BOX) {
+				boxes |= 1 << i;
+				code -= BOX;
+			}
+			if (code == GOAL) {
+				goals |= 1 << i;
+			}
+		}
+		if ((boxes & ~goals) == 0) {
+			return false;
+		}
+		// the positions to expand, by their number of boxes off storage
+		// locations, so that the search tries to clear the window first
+		Set<Long> seen = new HashSet<>();
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		ArrayDeque<Long>[] queues = new ArrayDeque[MAX_BOXES + 1];
+		for (int k = 0; k <= MAX_BOXES; k++) {
+			queues[k] = new ArrayDeque<>();
+		}
+		// the regions are disjoint, so one stamp marks them all
+		this.nextStamp();
+		for (int g = 0; g < GRID * GRID; g++) {
+			if (this.mark[g] != this.stamp && this.isFree(g, boxes)) {
+				long position = (long) this.fill(g, boxes) << CELLS | boxes;
+				seen.add(position);
+				queues[Integer.bitCount(boxes & ~goals)].add(position);
+			}
+		}
+		for (int k = 0; k <= MAX_BOXES;) {
+			if (queues[k].isEmpty()) {
+				k++;
+				continue;
+			}
+			long position = queues[k].poll();
+			int current = (int) (position & ((1L << CELLS) - 1));
+			this.nextStamp();
+			this.fill((int) (position >>> CELLS), current);
+			for (int g = 0; g < GRID * GRID; g++) {
+				this.reachable[g] = this.mark[g] == this.stamp;
+			}
+			for (int g = 0; g < GRID * GRID; g++) {
+				int i = this.windowCell[g];
+				if (i < 0 || (current & 1 << i) == 0) {
+					continue;
+				}
+				for (int step : GRID_STEPS) {
+					int to = g + step;
+					if (!this.reachable[g - step] || !this.isFree(to, current)) {
+						continue;
+					}
+					int next = current & ~(1 << i);
+					if (!this.ring[to]) {
+						next |= 1 << this.windowCell[to];
+					}
+					if ((next & ~goals) == 0) {
+						return false;
+					}
+					this.nextStamp();
+					long child = (long) this.fill(g, next) << CELLS | next;
+					if (seen.add(child)) {
+						if (seen.size() > MAX_STATES) {
+							return false;
+						}
+						int off = Integer.bitCount(next & ~goals);
+						queues[off].add(child);
+						k = Math.min(k, off);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private void nextStamp() {
+		if (++this.stamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.mark, 0);
+			this.stamp = 1;
+		}
+	}
+
+	private boolean isFree(int g, int boxes) {
+		if (this.wall[g]) {
+			return false;
+		}
+		int i = this.windowCell[g];
+		return i < 0 || (boxes & 1 << i) == 0;
+	}
+
+	/**
+	 * Marks the free cells reachable from the specified grid cell with the
+	 * current stamp and returns the smallest of them.
+	 */
+	private int fill(int start, int boxes) {
+		int head = 0;
+		int tail = 0;
+		int smallest = start;
+		this.fill[tail++] = start;
+		this.mark[start] = this.stamp;
+		while (head < tail) {
+			int g = this.fill[head++];
+			smallest = Math.min(smallest, g);
+			for (int step : GRID_STEPS) {
+				int next = g + step;
+				if (this.mark[next] != this.stamp && this.isFree(next, boxes)) {
+					this.mark[next] = this.stamp;
+					this.fill[tail++] = next;
+				}
+			}
+		}
+		return smallest;
+	}
+}
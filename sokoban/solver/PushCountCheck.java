@@ -0,0 +1,50 @@
+package sokoban.solver;
+
+import java.io.IOException;
+
+import sokoban.Board;
+
+/**
+ * An ad-hoc check that the push-optimal solvers find the fewest pushes of the
+ * bundled levels 1 to 6, and that every solution they find replays to a
+ * solved board.
+ *
+ * <p>
+ * The informed solvers run without macros and must solve every level.
+ * {@code bfs} and {@code bidir} are given a budget of positions, which levels 4
+ * and 5 exceed; they may give up on a level, as they do once the heap is full,
+ * but a solution they find must have the fewest pushes too, which checks the
+ * pruning of the pulls of {@code bidir}.
+ */
+public class PushCountCheck {
+
+	static final int[] PUSHES = { 12, 5, 8, 24, 38, 97 };
+	private static final int BREADTH_FIRST_STATES = 1_000_000;
+
+	public static void main(String[] args) throws IOException {
+		Solver[] solvers = { new BfsSolver(BREADTH_FIRST_STATES), new BidirectionalSolver(BREADTH_FIRST_STATES),
+				new AStarSolver(), new IdaStarSolver(), new ParallelSolver() };
+		for (int level = 1; level <= PUSHES.length; level++) {
+			String filename = String.format("level%02d.txt", level);
+			for (Solver solver : solvers) {
+				Solution solution = solver.solve(new Board(filename));
+				System.out.println(filename + " " + solution);
+				if (solution.status() == Solution.Status.GAVE_UP
+						&& (solver instanceof BfsSolver || solver instanceof BidirectionalSolver)) {
+					continue;
+				}
+				if (!solution.isSolved()) {
+					throw new AssertionError(filename + " " + solver.name() + ": " + solution.status());
+				}
+				if (solution.pushCount() != PUSHES[level - 1]) {
+					throw new AssertionError(filename + " " + solver.name() + ": " + solution.pushCount()
+							+ " pushes, expected " + PUSHES[level - 1]);
+				}
+				if (!solution.replay(new Board(filename))) {
+					throw new AssertionError(filename + " " + solver.name() + ": replay failed");
+				}
+			}
+		}
+		System.out.println("OK: " + PUSHES.length + " levels, " + solvers.length + " solvers");
+	}
+}
@@ -0,0 +1,127 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of fixed-size records of {@code int}s, written once from start to end
+ * and then read, accessed through memory-mapped windows.
+ *
+ * <p>
+ * The records are appended through windows of at most {@code WINDOW_BYTES}
+ * bytes that are mapped one after the other, so the file can grow far beyond
+ * the heap and the Java heap only holds the window objects. The last window
+ * is mapped whole, so the file can be longer than its records; only the
+ * operating system pages that have been written take disk space. Once
+ * {@code finish} has been called the records can be read by index, which is
+ * fastest when they are read in order.
+ *
+ * <p>
+ * An instance is not thread-safe.
+ */
+final class RecordFile implements AutoCloseable {
+	private static final long WINDOW_BYTES = 1L << 26;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final int recordInts;
+	private final int perWindow;
+	private final List<IntBuffer> windows = new ArrayList<>();
+	private long count;
+	private boolean finished;
+
+	/**
+	 * Creates an empty file at the specified path for records of the specified
+	 * number of {@code int}s.
+	 *
+	 * @param path       the path of the file, which must not exist
+	 * @param recordInts the number of {@code int}s of a record
+	 * @throws IOException if the file cannot be created
+	 */
+	RecordFile(Path path, int recordInts) throws IOException {
+		this.path = path;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.recordInts = recordInts;
+		this.perWindow = (int) (WINDOW_BYTES / (4L * recordInts));
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @param source the array holding the record
+	 * @param offset the index of the first {@code int} of the record in source
+	 * @throws IOException if the file cannot be extended
+	 */
+	void append(int[] source, int offset) throws IOException {
+		int w = (int) (this.count / this.perWindow);
+		if (w == this.windows.size()) {
+			long bytes = 4L * this.recordInts * this.perWindow;
+			MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_WRITE, w * bytes, bytes);
+			this.windows.add(window.order(ByteOrder.nativeOrder()).asIntBuffer());
+		}
+		IntBuffer window = this.windows.get(w);
+		window.put((int) (this.count % this.perWindow) * this.recordInts, source, offset, this.recordInts);
+		this.count++;
+	}
+
+	/**
+	 * Ends the writing of the file; its records can be read from now on.
+	 */
+	void finish() {
+		this.finished = true;
+	}
+
+	/**
+	 * Returns the number of records of the file.
+	 *
+	 * @return the number of records
+	 */
+	long size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the number of bytes the records occupy on disk.
+	 *
+	 * @return the number of bytes of the records
+	 */
+	long bytes() {
+		return 4L * this.recordInts * this.count;
+	}
+
+	/**
+	 * Copies the record with the specified index into target.
+	 *
+	 * @param index  the index of a record
+	 * @param target the array receiving the record
+	 * @param offset the index in target of the first {@code int} of the record
+	 */
+	void get(long index, int[] target, int offset) {
+		if (!this.finished) {
+			throw new IllegalStateException(this.path + " is still being written");
+		}
+		IntBuffer window = this.windows.get((int) (index / this.perWindow));
+		window.get((int) (index % this.perWindow) * this.recordInts, target, offset, this.recordInts);
+	}
+
+	/**
+	 * Closes the file and deletes it.
+	 *
+	 * @throws IOException if the file cannot be closed or deleted
+	 */
+	@Override
+	public void close() throws IOException {
+		this.windows.clear();
+		this.channel.close();
+		Files.deleteIfExists(this.path);
+	}
+}
@@ -0,0 +1,84 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import sokoban.Board;
+
+/**
+ * An ad-hoc benchmark of how {@code ParallelSolver} scales with the number of
+ * threads.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java sokoban.solver.ScalingBenchmark [--threads N[,N...]] [--runs N] level05.txt ...
+ * </pre>
+ *
+ * <p>
+ * Every level is solved once to warm up, then the specified number of times
+ * with every thread count, by default the powers of two up to the number of
+ * available processors. For every thread count the benchmark prints the best
+ * time, the speedup and parallel efficiency relative to the first thread
+ * count, and the positions expanded, which grow with the threads when they
+ * search positions the sequential search would have cut off.
+ */
+public class ScalingBenchmark {
+
+	private static void usage() {
+		System.err.println("usage: java sokoban.solver.ScalingBenchmark [--threads N[,N...]] [--runs N] level...");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) throws IOException {
+		List<Integer> threads = new ArrayList<>();
+		int runs = 3;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("--"); i++) {
+			if (args[i].equals("--threads") && i + 1 < args.length) {
+				for (String t : args[++i].split(",")) {
+					threads.add(Integer.parseInt(t));
+				}
+			} else if (args[i].equals("--runs") && i + 1 < args.length) {
+				runs = Integer.parseInt(args[++i]);
+			} else {
+				usage();
+			}
+		}
+		if (i == args.length || runs < 1) {
+			usage();
+		}
+		if (threads.isEmpty()) {
+			int processors = Runtime.getRuntime().availableProcessors();
+			for (int t = 1; t < processors; t *= 2) {
+				threads.add(t);
+			}
+			threads.add(processors);
+		}
+		System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+		for (; i < args.length; i++) {
+			String filename = args[i];
+			Maze maze = new Maze(new Board(filename));
+			new ParallelSolver(threads.get(0), IdaStarSolver.DEFAULT_TABLE_BYTES, true, Long.MAX_VALUE).solve(maze);
+			double base = 0;
+			for (int t : threads) {
+				Solver solver = new ParallelSolver(t, IdaStarSolver.DEFAULT_TABLE_BYTES, true, Long.MAX_VALUE);
+				double best = Double.MAX_VALUE;
+				Solution solution = null;
+				for (int r = 0; r < runs; r++) {
+					solution = solver.solve(maze);
+					best = Math.min(best, solution.elapsedMillis());
+				}
+				if (base == 0) {
+					base = best;
+				}
+				double speedup = base / best * threads.get(0);
+				System.out.println(String.format("%s threads=%d %s pushes=%d time=%.1fms speedup=%.2f efficiency=%.0f%%"
+						+ " expanded=%d", filename, t, solution.status(), solution.pushCount(), best, speedup,
+						100 * speedup / t, solution.nodesExpanded()));
+			}
+		}
+	}
+}
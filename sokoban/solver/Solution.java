@@ -0,0 +1,307 @@
+package sokoban.solver;
+
+import sokoban.Board;
+import sokoban.Direction;
+
+/**
+ * The result of running a {@code Solver} on a level.
+ *
+ * <p>
+ * A solution records whether the level was solved and, if so, the moves of
+ * the player in the usual Sokoban notation: one letter per move, {@code l},
+ * {@code r}, {@code u}, or {@code d}, in uppercase if the move pushes a box.
+ * It also records how much work and memory the search took, and the
+ * statistics of the kind of search that produced it, which the solver sets
+ * after constructing the solution.
+ */
+public final class Solution {
+
+	/**
+	 * The outcome of a search.
+	 */
+	public enum Status {
+		/** The level was solved. */
+		SOLVED,
+		/** The search space was exhausted without finding a solution. */
+		UNSOLVABLE,
+		/** The search stopped at one of its limits before finding a solution. */
+		GAVE_UP
+	}
+
+	private final String solver;
+	private final Status status;
+	private final String moves;
+	private final int pushes;
+	private final int depth;
+	private final long expanded;
+	private final long generated;
+	private final long nanos;
+	private final long memoryBytes;
+	private TableStats tableStats;
+	private MeetStats meetStats;
+	private DiskStats diskStats;
+
+	Solution(String solver, Status status, String moves, int depth, long expanded, long generated, long nanos,
+			long memoryBytes) {
+		this.solver = solver;
+		this.status = status;
+		this.moves = moves;
+		int p = 0;
+		for (int i = 0; i < moves.length(); i++) {
+			if (Character.isUpperCase(moves.charAt(i))) {
+				p++;
+			}
+		}
+		this.pushes = p;
+		this.depth = depth;
+		this.expanded = expanded;
+		this.generated = generated;
+		this.nanos = nanos;
+		this.memoryBytes = memoryBytes;
+	}
+
+	/**
+	 * Returns the name of the solver that produced this solution.
+	 *
+	 * @return the name of the solver
+	 */
+	public String solver() {
+		return this.solver;
+	}
+
+	/**
+	 * Returns the outcome of the search.
+	 *
+	 * @return the outcome of the search
+	 */
+	public Status status() {
+		return this.status;
+	}
+
+	/**
+	 * Returns {@code true} if the level was solved, {@code false} otherwise.
+	 *
+	 * @return {@code true} if the level was solved
+	 */
+	public boolean isSolved() {
+		return this.status == Status.SOLVED;
+	}
+
+	/**
+	 * Returns the moves of the solution, or the empty string if the level was
+	 * not solved.
+	 *
+	 * @return the moves of the solution
+	 */
+	public String moves() {
+		return this.moves;
+	}
+
+	/**
+	 * Returns the number of moves of the solution.
+	 *
+	 * @return the number of moves of the solution
+	 */
+	public int moveCount() {
+		return this.moves.length();
+	}
+
+	/**
+	 * Returns the number of pushes of the solution.
+	 *
+	 * @return the number of pushes of the solution
+	 */
+	public int pushCount() {
+		return this.pushes;
+	}
+
+	/**
+	 * Returns the depth at which the search found the solution: the number of
+	 * pushes, with a macro push counting once.
+	 *
+	 * @return the depth of the solution in the search
+	 */
+	public int depth() {
+		return this.depth;
+	}
+
+	/**
+	 * Returns the number of positions the search expanded.
+	 *
+	 * @return the number of positions expanded
+	 */
+	public long nodesExpanded() {
+		return this.expanded;
+	}
+
+	/**
+	 * Returns the number of positions the search generated, counting
+	 * duplicates.
+	 *
+	 * @return the number of positions generated
+	 */
+	public long nodesGenerated() {
+		return this.generated;
+	}
+
+	/**
+	 * Returns the time the search took in milliseconds.
+	 *
+	 * @return the time the search took in milliseconds
+	 */
+	public double elapsedMillis() {
+		return this.nanos / 1e6;
+	}
+
+	/**
+	 * Returns the number of bytes the data structures of the search occupied
+	 * at their largest, as counted by the solver.
+	 *
+	 * @return the largest number of bytes the search structures occupied
+	 */
+	public long memoryBytes() {
+		return this.memoryBytes;
+	}
+
+	/**
+	 * Returns the statistics of the transposition table of the search, or
+	 * {@code null} if the search did not use one.
+	 *
+	 * @return the statistics of the transposition table, or {@code null}
+	 */
+	public TableStats tableStats() {
+		return this.tableStats;
+	}
+
+	/**
+	 * Sets the statistics of the transposition table of the search.
+	 *
+	 * @param tableStats the statistics of the transposition table
+	 */
+	void setTableStats(TableStats tableStats) {
+		this.tableStats = tableStats;
+	}
+
+	/**
+	 * Returns the statistics of the two searches of a bidirectional search, or
+	 * {@code null} if the search was not bidirectional.
+	 *
+	 * @return the statistics of the meeting of the searches, or {@code null}
+	 */
+	public MeetStats meetStats() {
+		return this.meetStats;
+	}
+
+	/**
+	 * Sets the statistics of the two searches of a bidirectional search.
+	 *
+	 * @param meetStats the statistics of the two searches
+	 */
+	void setMeetStats(MeetStats meetStats) {
+		this.meetStats = meetStats;
+	}
+
+	/**
+	 * Returns the statistics of the files of a search that keeps its positions
+	 * on disk, or {@code null} if the search kept them in memory.
+	 *
+	 * @return the statistics of the files of the search, or {@code null}
+	 */
+	public DiskStats diskStats() {
+		return this.diskStats;
+	}
+
+	/**
+	 * Sets the statistics of the files of a search that keeps its positions on
+	 * disk.
+	 *
+	 * @param diskStats the statistics of the files
+	 */
+	void setDiskStats(DiskStats diskStats) {
+		this.diskStats = diskStats;
+	}
+
+	/**
+	 * Plays the moves of this solution on the specified board and returns
+	 * {@code true} if the board is solved afterwards. The board must be in the
+	 * position the solver started from.
+	 *
+	 * @param board a board in the start position of the search
+	 * @return {@code true} if the moves solve the board
+	 */
+	public boolean replay(Board board) {
+		for (int i = 0; i < this.moves.length(); i++) {
+			Direction d = Direction.fromSymbol(this.moves.charAt(i));
+			if (d == null || !board.movePlayer(d)) {
+				return false;
+			}
+		}
+		return board.isSolved();
+	}
+
+	/**
+	 * Returns the moves that play the specified pushes from the start position
+	 * of the maze, walking the player along shortest paths between pushes.
+	 * With macros, every push stands for the whole macro it starts.
+	 *
+	 * @param maze   a maze
+	 * @param macros the macros of the maze, or {@code null} for single pushes
+	 * @param pushes the pushes, each encoded as {@code 4 * from + direction}
+	 *               where from is the cell of the pushed box
+	 * @return the moves that play the pushes
+	 */
+	static String movesOf(Maze maze, Macros macros, int[] pushes) {
+		Expander ex = new Expander(maze);
+		int n = maze.boxCount();
+		int[] boxes = maze.startBoxes();
+		int[] next = new int[n];
+		int player = maze.startPlayer();
+		StringBuilder moves = new StringBuilder();
+		int[] macro = new int[macros != null ? macros.maxPushes() : 1];
+		for (int push : pushes) {
+			int count = 1;
+			macro[0] = push;
+			if (macros != null) {
+				ex.load(player, boxes, 0, n);
+				count = macros.expand(ex, push >> 2, push & 3, macro);
+			}
+			for (int k = 0; k < count; k++) {
+				int from = macro[k] >> 2;
+				int d = macro[k] & 3;
+				int to = from + maze.step(d);
+				ex.load(player, boxes, 0, n);
+				ex.appendWalk(from - maze.step(d), moves);
+				moves.append(Character.toUpperCase(Direction.of(d).symbol()));
+				Expander.replace(boxes, 0, n, from, to, next);
+				int[] t = boxes;
+				boxes = next;
+				next = t;
+				player = from;
+			}
+		}
+		return moves.toString();
+	}
+
+	/**
+	 * Returns a one-line summary of this solution.
+	 *
+	 * @return a one-line summary of this solution
+	 */
+	@Override
+	public String toString() {
+		String summary = String.format(
+				"%s %s pushes=%d depth=%d moves=%d expanded=%d generated=%d time=%.1fms memory=%.1fMB", this.solver,
+				this.status, this.pushes, this.depth, this.moves.length(), this.expanded, this.generated,
+				this.elapsedMillis(), this.memoryBytes / 1048576.0);
+		if (this.tableStats != null) {
+			summary += " " + this.tableStats;
+		}
+		if (this.meetStats != null) {
+			summary += " " + this.meetStats;
+		}
+		if (this.diskStats != null) {
+			summary += " " + this.diskStats;
+		}
+		return summary;
+	}
+}
@@ -0,0 +1,61 @@
+package sokoban.solver;
+
+import sokoban.Board;
+
+/**
+ * A search algorithm that solves Sokoban levels.
+ */
+public interface Solver {
+
+	/**
+	 * Returns the short name of this solver, as used on the command line.
+	 *
+	 * @return the name of this solver
+	 */
+	String name();
+
+	/**
+	 * Searches for a solution from the start position of the specified maze,
+	 * updating the specified metrics as the search goes. The metrics can be
+	 * read from another thread while the search runs.
+	 *
+	 * @param maze    a maze
+	 * @param metrics the metrics of the search, which should be new
+	 * @return the result of the search
+	 */
+	Solution solve(Maze maze, SolverMetrics metrics);
+
+	/**
+	 * Searches for a solution from the start position of the specified maze.
+	 *
+	 * @param maze a maze
+	 * @return the result of the search
+	 */
+	default Solution solve(Maze maze) {
+		return this.solve(maze, new SolverMetrics());
+	}
+
+	/**
+	 * Searches for a solution from the current position of the specified board.
+	 * The board is not changed.
+	 *
+	 * @param board a board
+	 * @return the result of the search
+	 */
+	default Solution solve(Board board) {
+		return this.solve(new Maze(board));
+	}
+
+	/**
+	 * Searches for a solution from the current position of the specified board,
+	 * updating the specified metrics as the search goes. The board is not
+	 * changed.
+	 *
+	 * @param board   a board
+	 * @param metrics the metrics of the search, which should be new
+	 * @return the result of the search
+	 */
+	default Solution solve(Board board, SolverMetrics metrics) {
+		return this.solve(new Maze(board), metrics);
+	}
+}
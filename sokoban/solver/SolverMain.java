@@ -0,0 +1,263 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import sokoban.Board;
+
+/**
+ * Command line entry point of the solvers.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java sokoban.solver.SolverMain [--mode MODE[,MODE...]] [--max-states N] [--tt-bytes N[k|m|g]] [--tt-heap] [--threads N] [--macros] [--disk-dir DIR] [--disk-buffer N] [--patterns FILE] [--metrics FILE|-] [--metrics-interval MS] level01.txt ...
+ * </pre>
+ *
+ * <p>
+ * The modes are {@code bfs} (the default), {@code astar}, {@code bidir},
+ * {@code disk}, {@code idastar} and {@code parallel}. For {@code idastar} and
+ * {@code parallel} the maximum number of states limits the positions expanded,
+ * and {@code --tt-bytes} sets the byte budget of their transposition table,
+ * with 0 turning it off. The table is kept outside the Java heap unless
+ * {@code --tt-heap} is given. {@code --threads} caps the threads of
+ * {@code parallel}, which defaults to the number of available processors.
+ * {@code --macros} lets the informed solvers use the tunnel and goal-room
+ * macros of the level, which makes them search fewer positions but gives up
+ * push-optimality: a macro makes all of its pushes at once and the fill order
+ * of a goal room can cost pushes, so the solutions of {@code astar},
+ * {@code idastar} and {@code parallel} are then only the shortest that keep to
+ * the macros. Without it they push one box one cell at a time and their
+ * solutions are push-optimal. {@code disk} searches breadth-first like
+ * {@code bfs} but keeps its layers in files in {@code --disk-dir}, the
+ * temporary directory by default, and sorts the positions it generates in a
+ * buffer of {@code --disk-buffer} positions. {@code --patterns} makes the
+ * solvers check their pushes against the deadlock patterns of the file, learn
+ * new ones and write them back to the file after every level, so that a run
+ * over many levels builds on the runs before it. {@code --metrics} samples the
+ * live metrics of every search every {@code --metrics-interval} milliseconds,
+ * one second by default, and appends them as JSON lines to the file, or prints
+ * them to the standard output if the file is {@code -}. With several modes
+ * every level is solved by each of them in turn, and a last line gives the
+ * number of positions each expanded and, for every other mode, the ratio of
+ * the positions the first mode expanded to its own, as in
+ * {@code bfs/astar=14.0x}.
+ *
+ * <p>
+ * Every level is read with {@code new Board(filename)}, that is, from the
+ * {@code src/sokoban} directory. For every level the program prints the outcome
+ * of the search, the number of pushes and moves of the solution, the number of
+ * positions expanded and generated, the time taken, the memory the search
+ * structures took and the peak heap usage of the JVM during the search,
+ * followed by the moves. A solution is replayed on a fresh board before it is
+ * reported. A search that runs out of heap is reported as given up, and the
+ * other modes and levels still run.
+ */
+public class SolverMain {
+
+	private static void usage() {
+		System.err.println("usage: java sokoban.solver.SolverMain [--mode bfs|astar|bidir|disk|idastar|parallel[,...]]"
+				+ " [--max-states N] [--tt-bytes N[k|m|g]] [--tt-heap] [--threads N] [--macros]"
+				+ " [--disk-dir DIR] [--disk-buffer N] [--patterns FILE] [--metrics FILE|-] [--metrics-interval MS]"
+				+ " level...");
+		System.exit(2);
+	}
+
+	static Solver solver(String mode, int maxStates, long tableBytes, boolean offHeap, int threads, Path diskDir,
+			int diskBuffer) {
+		long maxNodes = maxStates == Integer.MAX_VALUE ? Long.MAX_VALUE : maxStates;
+		switch (mode) {
+		case "bfs":
+			return new BfsSolver(maxStates);
+		case "astar":
+			return new AStarSolver(maxStates);
+		case "bidir":
+			return new BidirectionalSolver(maxStates);
+		case "disk":
+			return new DiskBfsSolver(maxNodes, diskDir, diskBuffer);
+		case "idastar":
+			return new IdaStarSolver(tableBytes, offHeap, maxNodes);
+		case "parallel":
+			return new ParallelSolver(threads, tableBytes, offHeap, maxNodes);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Parses a number of bytes with an optional suffix k, m or g.
+	 */
+	static long parseBytes(String s) {
+		String digits = s.toLowerCase();
+		int shift = 0;
+		switch (digits.charAt(digits.length() - 1)) {
+		case 'k':
+			shift = 10;
+			break;
+		case 'm':
+			shift = 20;
+			break;
+		case 'g':
+			shift = 30;
+			break;
+		default:
+			break;
+		}
+		if (shift > 0) {
+			digits = digits.substring(0, digits.length() - 1);
+		}
+		return Long.parseLong(digits) << shift;
+	}
+
+	/**
+	 * Resets the peak usage of the heap memory pools.
+	 */
+	static void resetHeapPeak() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of the peak usages of the heap memory pools since they
+	 * were last reset, in bytes.
+	 */
+	static long heapPeak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String mode = "bfs";
+		int maxStates = Integer.MAX_VALUE;
+		long tableBytes = IdaStarSolver.DEFAULT_TABLE_BYTES;
+		boolean offHeap = true;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean macros = false;
+		Path diskDir = Paths.get(System.getProperty("java.io.tmpdir"));
+		int diskBuffer = DiskBfsSolver.DEFAULT_BUFFER_STATES;
+		Path patternFile = null;
+		String metricsFile = null;
+		long metricsInterval = 1000;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("--"); i++) {
+			if (args[i].equals("--mode") && i + 1 < args.length) {
+				mode = args[++i];
+			} else if (args[i].equals("--max-states") && i + 1 < args.length) {
+				maxStates = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--tt-bytes") && i + 1 < args.length) {
+				tableBytes = parseBytes(args[++i]);
+			} else if (args[i].equals("--tt-heap")) {
+				offHeap = false;
+			} else if (args[i].equals("--threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--macros")) {
+				macros = true;
+			} else if (args[i].equals("--disk-dir") && i + 1 < args.length) {
+				diskDir = Paths.get(args[++i]);
+			} else if (args[i].equals("--disk-buffer") && i + 1 < args.length) {
+				diskBuffer = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--patterns") && i + 1 < args.length) {
+				patternFile = Paths.get(args[++i]);
+			} else if (args[i].equals("--metrics") && i + 1 < args.length) {
+				metricsFile = args[++i];
+			} else if (args[i].equals("--metrics-interval") && i + 1 < args.length) {
+				metricsInterval = Long.parseLong(args[++i]);
+			} else {
+				usage();
+			}
+		}
+		String[] modes = mode.split(",");
+		Solver[] solvers = new Solver[modes.length];
+		for (int m = 0; m < modes.length; m++) {
+			solvers[m] = solver(modes[m], maxStates, tableBytes, offHeap, threads, diskDir, diskBuffer);
+			if (solvers[m] == null) {
+				usage();
+			}
+		}
+		if (i == args.length) {
+			usage();
+		}
+		DeadlockPatterns patterns = null;
+		if (patternFile != null) {
+			patterns = Files.exists(patternFile) ? DeadlockPatterns.load(patternFile) : new DeadlockPatterns();
+			System.out.println(patternFile + " " + patterns);
+		}
+		PrintStream metricsOut = null;
+		if (metricsFile != null) {
+			metricsOut = metricsFile.equals("-") ? System.out
+					: new PrintStream(Files.newOutputStream(Paths.get(metricsFile), StandardOpenOption.CREATE,
+							StandardOpenOption.APPEND), true);
+		}
+		for (; i < args.length; i++) {
+			String filename = args[i];
+			Solution[] solutions = new Solution[solvers.length];
+			for (int m = 0; m < solvers.length; m++) {
+				Board board = new Board(filename);
+				System.gc();
+				resetHeapPeak();
+				Maze maze = new Maze(board, macros, patterns);
+				SolverMetrics metrics = new SolverMetrics();
+				MetricsSampler sampler = metricsOut == null ? null
+						: new MetricsSampler(metrics, filename + " " + solvers[m].name(), metricsInterval, metricsOut);
+				long start = System.nanoTime();
+				Solution solution;
+				try {
+					solution = solvers[m].solve(maze, metrics);
+				} catch (OutOfMemoryError e) {
+					// the search structures are unreachable once the solver has
+					// thrown, so the next mode and level get the heap back
+					solution = new Solution(solvers[m].name(), Solution.Status.GAVE_UP, "", 0,
+							metrics.expanded(), metrics.generated(), System.nanoTime() - start, 0);
+					System.out.println(filename + " " + solvers[m].name() + " ran out of heap, giving up");
+				} finally {
+					if (sampler != null) {
+						sampler.close();
+					}
+				}
+				long peak = heapPeak();
+				solutions[m] = solution;
+				String check = "";
+				if (solution.isSolved()) {
+					check = solution.replay(new Board(filename)) ? " (verified)" : " (REPLAY FAILED)";
+				}
+				System.out.println(
+						String.format("%s %s heapPeak=%.1fMB%s", filename, solution, peak / 1048576.0, check));
+				if (solution.isSolved()) {
+					System.out.println("  " + solution.moves());
+				}
+			}
+			if (solutions.length > 1) {
+				StringBuilder b = new StringBuilder(filename + " expanded:");
+				for (Solution solution : solutions) {
+					b.append(String.format(" %s=%d", solution.solver(), solution.nodesExpanded()));
+					if (solution != solutions[0] && solution.nodesExpanded() > 0) {
+						// a neutral ratio, as a later mode may expand more positions than the first
+						b.append(String.format(" (%s/%s=%.1fx)", solutions[0].solver(), solution.solver(),
+								(double) solutions[0].nodesExpanded() / solution.nodesExpanded()));
+					}
+				}
+				System.out.println(b);
+			}
+			if (patterns != null) {
+				patterns.save(patternFile);
+				System.out.println(patternFile + " " + patterns);
+			}
+		}
+	}
+}
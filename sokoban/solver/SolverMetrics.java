@@ -0,0 +1,222 @@
+package sokoban.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live counters of one search, updated by the solver while it runs and
+ * readable at any time from any thread, for example by a
+ * {@code MetricsSampler}.
+ *
+ * <p>
+ * The counters are the positions expanded and generated, the pushes left out
+ * by each kind of pruning, the number of positions waiting to be expanded,
+ * the lookups and hits of the transposition table of the search, if it has
+ * one, and the time spent in each phase of the search. A solver updates them
+ * with {@code LongAdder}s and volatile fields, so the threads of a parallel
+ * search can update them together and a reader sees values that are at most
+ * a few updates old. The counts of the transposition table are read from the
+ * table itself without synchronization and may lag a little more.
+ *
+ * <p>
+ * The frontier is the open list of the breadth-first and A* searches, or the
+ * rest of the current layer of {@code DiskBfsSolver}. The depth-first IDA*
+ * searches keep no frontier and report the depth of the current path instead.
+ */
+public final class SolverMetrics {
+
+	/**
+	 * The kinds of pruning that leave out a push.
+	 */
+	public enum Prune {
+		/** The box would be pushed onto a dead square of the maze. */
+		DEAD_SQUARE,
+		/**
+		 * The push would freeze a box off a storage location, or the pull a box
+		 * off a cell of the start position.
+		 */
+		FREEZE,
+		/** The push would create a dead arrangement of {@code DeadlockPatterns}. */
+		PATTERN,
+		/**
+		 * The push is outside the PI-corral chosen for the position, or the pull
+		 * closes off a region that holds another number of boxes than the start
+		 * position.
+		 */
+		CORRAL,
+		/** The lower bound shows that some box cannot reach a storage location. */
+		BOUND
+	}
+
+	private final long created = System.nanoTime();
+	private final LongAdder expanded = new LongAdder();
+	private final LongAdder generated = new LongAdder();
+	private final LongAdder[] prunes = new LongAdder[Prune.values().length];
+	private volatile long frontier;
+	private volatile TranspositionTable table;
+
+	// guarded by this
+	private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+	private String phase;
+	private long phaseStart;
+	private long finished = -1;
+
+	/**
+	 * Initializes metrics with all counters at zero.
+	 */
+	public SolverMetrics() {
+		for (int i = 0; i < this.prunes.length; i++) {
+			this.prunes[i] = new LongAdder();
+		}
+	}
+
+	void addExpanded() {
+		this.expanded.increment();
+	}
+
+	void addGenerated() {
+		this.generated.increment();
+	}
+
+	void addPrune(Prune kind) {
+		this.prunes[kind.ordinal()].increment();
+	}
+
+	void setFrontier(long frontier) {
+		this.frontier = frontier;
+	}
+
+	void watch(TranspositionTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Ends the current phase, if any, and starts the phase with the specified
+	 * name. The time of a phase entered several times is summed.
+	 */
+	synchronized void startPhase(String name) {
+		long now = System.nanoTime();
+		if (this.phase != null) {
+			this.phaseNanos.merge(this.phase, now - this.phaseStart, Long::sum);
+		}
+		this.phase = name;
+		this.phaseStart = now;
+	}
+
+	/**
+	 * Ends the current phase and stops the clock of the search.
+	 */
+	synchronized void finish() {
+		this.startPhase(null);
+		this.finished = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of positions expanded so far.
+	 *
+	 * @return the number of positions expanded
+	 */
+	public long expanded() {
+		return this.expanded.sum();
+	}
+
+	/**
+	 * Returns the number of positions generated so far.
+	 *
+	 * @return the number of positions generated
+	 */
+	public long generated() {
+		return this.generated.sum();
+	}
+
+	/**
+	 * Returns the number of pushes left out so far by the specified kind of
+	 * pruning.
+	 *
+	 * @param kind a kind of pruning
+	 * @return the number of pushes pruned
+	 */
+	public long prunes(Prune kind) {
+		return this.prunes[kind.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the number of positions waiting to be expanded at the last update
+	 * by the solver.
+	 *
+	 * @return the size of the frontier
+	 */
+	public long frontier() {
+		return this.frontier;
+	}
+
+	/**
+	 * Returns the number of lookups in the transposition table of the search,
+	 * or 0 if it has none.
+	 *
+	 * @return the number of lookups in the transposition table
+	 */
+	public long tableLookups() {
+		TranspositionTable t = this.table;
+		return t == null ? 0 : t.lookups();
+	}
+
+	/**
+	 * Returns the fraction of the lookups in the transposition table of the
+	 * search that found their position, or 0 if it has no table.
+	 *
+	 * @return the hit rate of the transposition table, between 0 and 1
+	 */
+	public double tableHitRate() {
+		TranspositionTable t = this.table;
+		if (t == null) {
+			return 0;
+		}
+		long lookups = t.lookups();
+		return lookups == 0 ? 0 : (double) t.hits() / lookups;
+	}
+
+	/**
+	 * Returns the name of the current phase of the search, or {@code null} if
+	 * the search has not started or has finished.
+	 *
+	 * @return the name of the current phase, or {@code null}
+	 */
+	public synchronized String phase() {
+		return this.phase;
+	}
+
+	/**
+	 * Returns the time spent in each phase so far, the current phase included,
+	 * in nanoseconds, in the order the phases were first entered.
+	 *
+	 * @return the time per phase in nanoseconds
+	 */
+	public synchronized Map<String, Long> phaseNanos() {
+		Map<String, Long> nanos = new LinkedHashMap<>(this.phaseNanos);
+		if (this.phase != null) {
+			nanos.merge(this.phase, System.nanoTime() - this.phaseStart, Long::sum);
+		}
+		return nanos;
+	}
+
+	/**
+	 * Returns the time since these metrics were created, up to the end of the
+	 * search if it has finished, in nanoseconds.
+	 *
+	 * @return the elapsed time in nanoseconds
+	 */
+	public synchronized long elapsedNanos() {
+		return (this.finished >= 0 ? this.finished : System.nanoTime()) - this.created;
+	}
+
+	/**
+	 * Returns {@code true} once the solver has returned its solution.
+	 *
+	 * @return {@code true} if the search has finished
+	 */
+	public synchronized boolean isFinished() {
+		return this.finished >= 0;
+	}
+}
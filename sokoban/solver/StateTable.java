@@ -0,0 +1,240 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * A growable table of search positions with a hash index for duplicate
+ * detection.
+ *
+ * <p>
+ * Positions are stored back to back in a single {@code int} array, one record
+ * per position: the index of the parent record, the push that led from the
+ * parent to the position, the normalized player cell, and the boxes packed
+ * into a bit set over the floor cells of the maze (see {@code Maze.pack}).
+ * The records are numbered in the order they are added, so a breadth-first
+ * search can use the table itself as its queue. The index is an open
+ * addressing hash table of record numbers.
+ *
+ * <p>
+ * No object is allocated per position. A position of a level with {@code f}
+ * floor cells costs {@code 4 * (3 + ceil(f / 32))} bytes plus four to eight
+ * bytes of index, which is 20 bytes plus index for the bundled levels with up
+ * to 64 floor cells.
+ */
+final class StateTable {
+	static final int PARENT = 0;
+	static final int PUSH = 1;
+	static final int PLAYER = 2;
+	static final int BOXES = 3;
+
+	private final int words;
+	private final int recordSize;
+	private int[] records;
+	private int count;
+	private int[] slots;
+	private int mask;
+
+	/**
+	 * Initializes an empty table for positions whose boxes are packed into the
+	 * specified number of words.
+	 *
+	 * @param words the number of words of a packed set of boxes
+	 */
+	StateTable(int words) {
+		this.words = words;
+		this.recordSize = BOXES + words;
+		this.records = new int[1024 * this.recordSize];
+		this.slots = new int[2048];
+		this.mask = this.slots.length - 1;
+	}
+
+	/**
+	 * Returns the largest number of positions, with boxes packed into the
+	 * specified number of words, that a table can hold in the maximum heap of
+	 * the JVM. The table grows by copying its records into an array twice as
+	 * large, so while it grows it takes three times the bytes of its records,
+	 * and its index takes up to 16 bytes per position while it is rebuilt;
+	 * the bound leaves room for both and for the rest of the search.
+	 *
+	 * @param words the number of words of a packed set of boxes
+	 * @return the number of positions that fit in the heap
+	 */
+	static int heapCapacity(int words) {
+		return heapCapacity(words, 0);
+	}
+
+	/**
+	 * Returns the largest number of positions that a table can hold in the
+	 * maximum heap of the JVM, for a search that keeps the specified number of
+	 * bytes per position in arrays of its own, grown like the records.
+	 *
+	 * @param words      the number of words of a packed set of boxes
+	 * @param extraBytes the bytes per position kept outside the table
+	 * @return the number of positions that fit in the heap
+	 */
+	static int heapCapacity(int words, int extraBytes) {
+		long heap = Runtime.getRuntime().maxMemory() / 8 * 7;
+		long perPosition = 3L * (4 * (BOXES + words) + extraBytes) + 16;
+		return (int) Math.min(Integer.MAX_VALUE, heap / perPosition);
+	}
+
+	/**
+	 * Returns the number of positions in the table.
+	 *
+	 * @return the number of positions in the table
+	 */
+	int size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the array holding the records. A record starts at
+	 * {@code offset(node)}; the returned array is replaced when the table
+	 * grows. Records already added only change through {@code setParent}.
+	 *
+	 * @return the array holding the records
+	 */
+	int[] records() {
+		return this.records;
+	}
+
+	/**
+	 * Returns the index of the first element of the record of the specified
+	 * position in {@code records()}.
+	 *
+	 * @param node the number of a position
+	 * @return the offset of the record of the position
+	 */
+	int offset(int node) {
+		return node * this.recordSize;
+	}
+
+	int parent(int node) {
+		return this.records[node * this.recordSize + PARENT];
+	}
+
+	int push(int node) {
+		return this.records[node * this.recordSize + PUSH];
+	}
+
+	/**
+	 * Replaces the parent of a position and the push leading to it, for
+	 * searches that can find a better path to a position already stored.
+	 *
+	 * @param node   the number of a position
+	 * @param parent the number of the new parent position
+	 * @param push   the push from the new parent to the position
+	 */
+	void setParent(int node, int parent, int push) {
+		this.records[node * this.recordSize + PARENT] = parent;
+		this.records[node * this.recordSize + PUSH] = push;
+	}
+
+	int player(int node) {
+		return this.records[node * this.recordSize + PLAYER];
+	}
+
+	/**
+	 * Returns the approximate number of bytes used by the table.
+	 *
+	 * @return the approximate number of bytes used by the table
+	 */
+	long bytes() {
+		return 4L * this.records.length + 4L * this.slots.length;
+	}
+
+	private int hash(int player, int[] array, int offset) {
+		long h = player * 0x9E3779B97F4A7C15L;
+		for (int w = 0; w < this.words; w++) {
+			h = (h ^ array[offset + w]) * 0x9E3779B97F4A7C15L;
+		}
+		return (int) (h ^ (h >>> 29));
+	}
+
+	/**
+	 * Returns the number of the position with the specified player cell and
+	 * boxes, or -1 if the table does not contain it.
+	 *
+	 * @param player the normalized player cell
+	 * @param boxes  the packed boxes, starting at index 0
+	 * @return the number of the position, or -1
+	 */
+	int find(int player, int[] boxes) {
+		for (int i = this.hash(player, boxes, 0) & this.mask;; i = (i + 1) & this.mask) {
+			int node = this.slots[i] - 1;
+			if (node < 0) {
+				return -1;
+			}
+			if (this.matches(node, player, boxes)) {
+				return node;
+			}
+		}
+	}
+
+	/**
+	 * Adds a position unless the table already contains it.
+	 *
+	 * @param parent the number of the parent position, or -1
+	 * @param push   the push from the parent to the position
+	 * @param player the normalized player cell
+	 * @param boxes  the packed boxes, starting at index 0
+	 * @return the number of the new position, or {@code -1 - existing} if the
+	 *         table already contained it as position {@code existing}
+	 */
+	int add(int parent, int push, int player, int[] boxes) {
+		int i = this.hash(player, boxes, 0) & this.mask;
+		for (;; i = (i + 1) & this.mask) {
+			int node = this.slots[i] - 1;
+			if (node < 0) {
+				break;
+			}
+			if (this.matches(node, player, boxes)) {
+				return -1 - node;
+			}
+		}
+		if ((long) (this.count + 1) * this.recordSize > this.records.length) {
+			long capacity = Math.min(2L * this.records.length, Integer.MAX_VALUE - 8);
+			if ((long) (this.count + 1) * this.recordSize > capacity) {
+				throw new IllegalStateException("state table is full at " + this.count + " positions");
+			}
+			this.records = Arrays.copyOf(this.records, (int) capacity);
+		}
+		int node = this.count++;
+		int at = node * this.recordSize;
+		this.records[at + PARENT] = parent;
+		this.records[at + PUSH] = push;
+		this.records[at + PLAYER] = player;
+		System.arraycopy(boxes, 0, this.records, at + BOXES, this.words);
+		this.slots[i] = node + 1;
+		if (2 * this.count > this.slots.length) {
+			this.rehash();
+		}
+		return node;
+	}
+
+	private boolean matches(int node, int player, int[] boxes) {
+		int at = node * this.recordSize;
+		if (this.records[at + PLAYER] != player) {
+			return false;
+		}
+		for (int w = 0; w < this.words; w++) {
+			if (this.records[at + BOXES + w] != boxes[w]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		this.slots = new int[this.slots.length * 2];
+		this.mask = this.slots.length - 1;
+		for (int node = 0; node < this.count; node++) {
+			int at = node * this.recordSize;
+			int i = this.hash(this.records[at + PLAYER], this.records, at + BOXES) & this.mask;
+			while (this.slots[i] != 0) {
+				i = (i + 1) & this.mask;
+			}
+			this.slots[i] = node + 1;
+		}
+	}
+}
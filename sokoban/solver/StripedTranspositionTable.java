@@ -0,0 +1,125 @@
+package sokoban.solver;
+
+/**
+ * A {@code TranspositionTable} that is safe for concurrent use, made of
+ * several independent tables, on or off the heap, each guarded by its own
+ * lock.
+ *
+ * <p>
+ * A key always goes to the same stripe, chosen by its highest bits, so threads
+ * that work on different positions rarely wait for each other. The statistics
+ * are the sums of those of the stripes.
+ */
+final class StripedTranspositionTable implements TranspositionTable {
+	private final TranspositionTable[] stripes;
+	private final int shift;
+
+	/**
+	 * Initializes a table that occupies at most the specified number of bytes
+	 * in the specified number of stripes, rounded up to a power of two.
+	 *
+	 * @param bytes   the byte budget of the table
+	 * @param stripes the number of stripes
+	 * @param offHeap {@code true} to keep the stripes outside the Java heap
+	 */
+	StripedTranspositionTable(long bytes, int stripes, boolean offHeap) {
+		int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.stripes = new TranspositionTable[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = TranspositionTable.create(bytes / count, offHeap);
+		}
+		this.shift = 64 - Integer.numberOfTrailingZeros(count);
+	}
+
+	private TranspositionTable stripe(long key) {
+		// a shift by 64 leaves the key unchanged in Java, so one stripe is special
+		return this.stripes.length == 1 ? this.stripes[0] : this.stripes[(int) (key >>> this.shift)];
+	}
+
+	@Override
+	public int get(long key) {
+		TranspositionTable stripe = this.stripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	@Override
+	public void put(long key, int value) {
+		TranspositionTable stripe = this.stripe(key);
+		synchronized (stripe) {
+			stripe.put(key, value);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (TranspositionTable stripe : this.stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	@Override
+	public long capacity() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			sum += stripe.capacity();
+		}
+		return sum;
+	}
+
+	@Override
+	public long size() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			synchronized (stripe) {
+				sum += stripe.size();
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public long bytes() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			sum += stripe.bytes();
+		}
+		return sum;
+	}
+
+	@Override
+	public long lookups() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			synchronized (stripe) {
+				sum += stripe.lookups();
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public long hits() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			synchronized (stripe) {
+				sum += stripe.hits();
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public long evictions() {
+		long sum = 0;
+		for (TranspositionTable stripe : this.stripes) {
+			synchronized (stripe) {
+				sum += stripe.evictions();
+			}
+		}
+		return sum;
+	}
+}
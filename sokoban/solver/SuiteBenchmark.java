@@ -0,0 +1,469 @@
+package sokoban.solver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import sokoban.Board;
+import sokoban.LevelTemplate;
+import sokoban.pack.LevelLibrary;
+
+/**
+ * An end-to-end benchmark of a collection of levels: reading every level into
+ * a {@code Board}, solving it and replaying the solution with the
+ * {@code movePlayerX} methods, with the throughput and the latency
+ * percentiles of every stage printed as CSV or JSON lines, so that runs of
+ * different commits can be compared.
+ *
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * java sokoban.solver.SuiteBenchmark [--mode MODE|none] [--max-states N] [--runs N] [--warmup N] [--synthetic N[,N...]] [--format csv|json] [--out FILE] [--label TEXT] level|pack|directory...
+ * </pre>
+ *
+ * <p>
+ * A level is the file name of a level in {@code src/sokoban}, like
+ * {@code level01.txt}, or the path of a level file anywhere else. A pack is
+ * the path of a file of levels in the XSB or SOK format, ending in
+ * {@code .sok} or {@code .xsb}, and stands for all its levels in order, named
+ * after the pack and their number in it, like {@code pack.sok#3}; it is opened
+ * as a {@code LevelLibrary}, which writes the index of the pack next to it the
+ * first time. A directory stands for all its {@code .txt}, {@code .sok} and
+ * {@code .xsb} files in the order of their names. The directory
+ * {@code src/sokoban} must exist either way.
+ * {@code --synthetic} adds a square room of every given side with a box on
+ * every fourth cell of every fourth row and a storage location to its right,
+ * the same rooms as the synthetic levels of the JMH benchmarks. The rooms are
+ * written to a temporary directory that is deleted afterwards.
+ *
+ * <p>
+ * Every stage of every level runs {@code --warmup} times untimed, one by
+ * default, and then {@code --runs} times, ten by default. The solve and replay
+ * stages start from a board read before the clock starts. The stages are:
+ * <ul>
+ * <li>{@code parse}: reading the file into a new {@code LevelTemplate} and
+ * a board of it, bypassing the template cache of
+ * {@code new Board(filename)}, or for a level of a pack, reading the level
+ * from its bytes of the pack with {@code LevelLibrary.board};</li>
+ * <li>{@code solve}: the solver of {@code --mode}, {@code astar} by default,
+ * or nothing with {@code none};</li>
+ * <li>{@code replay}: the moves of the solution played with
+ * {@code movePlayerLeft}, {@code movePlayerRight}, {@code movePlayerUp} and
+ * {@code movePlayerDown}, after which the board must be solved.</li>
+ * </ul>
+ * The synthetic rooms are not solved; their replay plays the moves that push
+ * every box onto the storage location next to it, row by row. A level the
+ * solver gives up on has no replay.
+ *
+ * <p>
+ * For every stage the benchmark prints one record: the label, the level, its
+ * number of cells and boxes, the stage, the number of timed runs, the runs and
+ * the items per second, where an item is a cell for {@code parse}, a position
+ * expanded for {@code solve} and a move for {@code replay}, and the median,
+ * 99th percentile and maximum time of a run in microseconds. The percentiles
+ * are nearest-rank percentiles of the timed runs, so with fewer than a
+ * hundred runs the 99th percentile is the maximum.
+ */
+public class SuiteBenchmark {
+
+	private static final String[] COLUMNS = { "label", "level", "cells", "boxes", "stage", "runs", "opsPerSecond",
+			"itemsPerSecond", "p50Us", "p99Us", "maxUs" };
+
+	private static void usage() {
+		System.err.println("usage: java sokoban.solver.SuiteBenchmark [--mode bfs|astar|bidir|disk|idastar|parallel|none]"
+				+ " [--max-states N] [--runs N] [--warmup N] [--synthetic N[,N...]] [--format csv|json] [--out FILE]"
+				+ " [--label TEXT] level|pack|directory...");
+		System.exit(2);
+	}
+
+	/**
+	 * A stage of the benchmark, run once per call on a board read before the
+	 * clock starts.
+	 */
+	private interface Stage {
+		/**
+		 * Runs the stage once and returns the number of items it processed.
+		 */
+		long run(Board board) throws IOException;
+	}
+
+	/**
+	 * A level of the suite: its name, its template for the boards of the
+	 * solve and replay stages, its parse stage, and for a synthetic room the
+	 * moves that solve it.
+	 */
+	private static final class Entry {
+		private final String name;
+		private final LevelTemplate template;
+		private final Stage parse;
+		private final String moves;
+
+		Entry(String name, LevelTemplate template, Stage parse, String moves) {
+			this.name = name;
+			this.template = template;
+			this.parse = parse;
+			this.moves = moves;
+		}
+	}
+
+	/**
+	 * Returns the entry of the level file with the specified name for
+	 * {@code new Board}.
+	 */
+	private static Entry fileEntry(String name, String file, String moves) throws IOException {
+		return new Entry(name, LevelTemplate.forFile(file),
+				none -> new Board(new LevelTemplate(Files.readAllLines(Paths.get("src", "sokoban", file)))).cellCount(),
+				moves);
+	}
+
+	private static boolean isPack(Path file) {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		return name.endsWith(".sok") || name.endsWith(".xsb");
+	}
+
+	/**
+	 * Adds the entries of the levels of the specified pack, in order.
+	 */
+	private static void addPack(List<Entry> entries, Path pack) throws IOException {
+		LevelLibrary library = LevelLibrary.open(pack);
+		for (int n = 1; n <= library.size(); n++) {
+			int number = n;
+			entries.add(new Entry(pack.getFileName() + "#" + n, library.level(n).template(),
+					none -> library.board(number).cellCount(), null));
+		}
+	}
+
+	/**
+	 * Returns the rows of the synthetic room of the specified side: a square
+	 * room with the player in the top left corner, a box on every fourth cell
+	 * of every fourth row and a storage location to the right of every box.
+	 *
+	 * @param side the side of the room, at least 5
+	 * @return the rows of the room
+	 */
+	public static List<String> syntheticRows(int side) {
+		List<String> rows = new ArrayList<>();
+		for (int y = 0; y < side; y++) {
+			StringBuilder row = new StringBuilder(side);
+			for (int x = 0; x < side; x++) {
+				if (x == 0 || y == 0 || x == side - 1 || y == side - 1) {
+					row.append('#');
+				} else if (x == 1 && y == 1) {
+					row.append('@');
+				} else if (y % 4 == 2 && x % 4 == 2 && x < side - 2) {
+					row.append('$');
+				} else if (y % 4 == 2 && x % 4 == 3 && x < side - 1) {
+					row.append('.');
+				} else {
+					row.append(' ');
+				}
+			}
+			rows.add(row.toString());
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns the moves that solve the synthetic room of the specified side.
+	 * For every row of boxes the player walks along the free row above it,
+	 * steps down to the left of each box and pushes it right onto its storage
+	 * location, then walks back along the free row and down the free first
+	 * column to the next row of boxes.
+	 *
+	 * @param side the side of the room, at least 5
+	 * @return the moves that solve the room
+	 */
+	public static String syntheticMoves(int side) {
+		StringBuilder moves = new StringBuilder();
+		int x = 1;
+		int y = 1;
+		for (int row = 2; row < side - 1; row += 4) {
+			for (; y < row - 1; y++) {
+				moves.append('d');
+			}
+			for (int box = 2; box < side - 2; box += 4) {
+				if (y == row) {
+					moves.append('u');
+					y--;
+				}
+				for (; x < box - 1; x++) {
+					moves.append('r');
+				}
+				moves.append('d').append('R');
+				y++;
+				x++;
+			}
+			if (y == row) {
+				moves.append('u');
+				y--;
+			}
+			for (; x > 1; x--) {
+				moves.append('l');
+			}
+		}
+		return moves.toString();
+	}
+
+	/**
+	 * Plays the specified moves with the {@code movePlayerX} methods of the
+	 * board and returns {@code true} if every move was played.
+	 */
+	private static boolean play(Board board, String moves) {
+		for (int i = 0; i < moves.length(); i++) {
+			boolean moved;
+			switch (moves.charAt(i)) {
+			case 'l':
+			case 'L':
+				moved = board.movePlayerLeft();
+				break;
+			case 'r':
+			case 'R':
+				moved = board.movePlayerRight();
+				break;
+			case 'u':
+			case 'U':
+				moved = board.movePlayerUp();
+				break;
+			case 'd':
+			case 'D':
+				moved = board.movePlayerDown();
+				break;
+			default:
+				moved = false;
+				break;
+			}
+			if (!moved) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the name to pass to {@code new Board} for the specified level
+	 * file, which is its path relative to {@code src/sokoban}. The real paths
+	 * are compared, since the file system resolves {@code ..} after following
+	 * links.
+	 */
+	private static String boardName(Path file) throws IOException {
+		return Paths.get("src", "sokoban").toRealPath().relativize(file.toRealPath()).toString();
+	}
+
+	/**
+	 * Runs the specified stage and returns the timed columns of its record.
+	 * Every run gets a fresh board of the level of the specified template, or
+	 * {@code null} if the template is not given.
+	 */
+	private static String[] measure(LevelTemplate template, Stage stage, int warmup, int runs) throws IOException {
+		for (int r = 0; r < warmup; r++) {
+			stage.run(template == null ? null : new Board(template));
+		}
+		long[] nanos = new long[runs];
+		long items = 0;
+		long total = 0;
+		for (int r = 0; r < runs; r++) {
+			Board board = template == null ? null : new Board(template);
+			long start = System.nanoTime();
+			items += stage.run(board);
+			nanos[r] = System.nanoTime() - start;
+			total += nanos[r];
+		}
+		Arrays.sort(nanos);
+		double seconds = Math.max(1, total) / 1e9;
+		return new String[] { Integer.toString(runs), String.format(Locale.ROOT, "%.1f", runs / seconds),
+				String.format(Locale.ROOT, "%.1f", items / seconds), micros(percentile(nanos, 50)),
+				micros(percentile(nanos, 99)), micros(nanos[runs - 1]) };
+	}
+
+	/**
+	 * Returns the nearest-rank percentile of the specified sorted times.
+	 */
+	private static long percentile(long[] sorted, int p) {
+		int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static String micros(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1e3);
+	}
+
+	private static void print(PrintStream out, String format, String[] values) {
+		StringBuilder b = new StringBuilder();
+		if (format.equals("csv")) {
+			for (int c = 0; c < values.length; c++) {
+				if (c > 0) {
+					b.append(',');
+				}
+				String v = values[c];
+				if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0) {
+					v = '"' + v.replace("\"", "\"\"") + '"';
+				}
+				b.append(v);
+			}
+		} else {
+			b.append('{');
+			for (int c = 0; c < values.length; c++) {
+				if (c > 0) {
+					b.append(',');
+				}
+				b.append('"').append(COLUMNS[c]).append("\":");
+				// the first five columns are text, the rest are numbers
+				if (c < 5 && c != 2 && c != 3) {
+					b.append('"').append(values[c].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+				} else {
+					b.append(values[c]);
+				}
+			}
+			b.append('}');
+		}
+		out.println(b);
+	}
+
+	private static void record(PrintStream out, String format, String label, String level, Board board,
+			String stage, String[] measured) {
+		String[] values = new String[COLUMNS.length];
+		values[0] = label;
+		values[1] = level;
+		values[2] = Integer.toString(board.cellCount());
+		values[3] = Integer.toString(board.getBoxes().size());
+		values[4] = stage;
+		System.arraycopy(measured, 0, values, 5, measured.length);
+		print(out, format, values);
+	}
+
+	public static void main(String[] args) throws IOException {
+		String mode = "astar";
+		int maxStates = Integer.MAX_VALUE;
+		int runs = 10;
+		int warmup = 1;
+		List<Integer> synthetic = new ArrayList<>();
+		String format = "csv";
+		String outFile = null;
+		String label = "";
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("--"); i++) {
+			if (args[i].equals("--mode") && i + 1 < args.length) {
+				mode = args[++i];
+			} else if (args[i].equals("--max-states") && i + 1 < args.length) {
+				maxStates = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--runs") && i + 1 < args.length) {
+				runs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--warmup") && i + 1 < args.length) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--synthetic") && i + 1 < args.length) {
+				for (String s : args[++i].split(",")) {
+					synthetic.add(Integer.parseInt(s));
+				}
+			} else if (args[i].equals("--format") && i + 1 < args.length) {
+				format = args[++i];
+			} else if (args[i].equals("--out") && i + 1 < args.length) {
+				outFile = args[++i];
+			} else if (args[i].equals("--label") && i + 1 < args.length) {
+				label = args[++i];
+			} else {
+				usage();
+			}
+		}
+		Solver solver = mode.equals("none") ? null
+				: SolverMain.solver(mode, maxStates, IdaStarSolver.DEFAULT_TABLE_BYTES, true,
+						Runtime.getRuntime().availableProcessors(), Paths.get(System.getProperty("java.io.tmpdir")),
+						DiskBfsSolver.DEFAULT_BUFFER_STATES);
+		if ((solver == null && !mode.equals("none")) || (i == args.length && synthetic.isEmpty()) || runs < 1
+				|| warmup < 0 || !(format.equals("csv") || format.equals("json"))) {
+			usage();
+		}
+		for (int side : synthetic) {
+			if (side < 5) {
+				usage();
+			}
+		}
+
+		List<Entry> entries = new ArrayList<>();
+		for (; i < args.length; i++) {
+			Path path = Paths.get(args[i]);
+			if (Files.isDirectory(path)) {
+				List<Path> found = new ArrayList<>();
+				try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "*.{txt,sok,xsb}")) {
+					dir.forEach(found::add);
+				}
+				found.sort(null);
+				for (Path p : found) {
+					if (isPack(p)) {
+						addPack(entries, p);
+					} else {
+						entries.add(fileEntry(p.getFileName().toString(), boardName(p), null));
+					}
+				}
+			} else if (Files.isRegularFile(path) && isPack(path)) {
+				addPack(entries, path);
+			} else if (Files.isRegularFile(path) && !Files.isRegularFile(Paths.get("src", "sokoban", args[i]))) {
+				entries.add(fileEntry(path.getFileName().toString(), boardName(path), null));
+			} else {
+				entries.add(fileEntry(args[i], args[i], null));
+			}
+		}
+		Path temporary = null;
+		if (!synthetic.isEmpty()) {
+			temporary = Files.createTempDirectory("sokoban-suite");
+			for (int side : synthetic) {
+				Path file = temporary.resolve("synthetic-" + side + ".txt");
+				Files.write(file, syntheticRows(side));
+				entries.add(fileEntry("synthetic-" + side, boardName(file), syntheticMoves(side)));
+			}
+		}
+
+		PrintStream out = outFile == null ? System.out : new PrintStream(Files.newOutputStream(Paths.get(outFile)), true);
+		try {
+			if (format.equals("csv")) {
+				print(out, format, COLUMNS);
+			}
+			for (Entry entry : entries) {
+				String name = entry.name;
+				Board start = new Board(entry.template);
+				record(out, format, label, name, start, "parse", measure(null, entry.parse, warmup, runs));
+				String moves = entry.moves;
+				if (moves == null && solver != null) {
+					Solution[] last = new Solution[1];
+					record(out, format, label, name, start, "solve", measure(entry.template, board -> {
+						last[0] = solver.solve(board);
+						return last[0].nodesExpanded();
+					}, warmup, runs));
+					if (last[0].isSolved()) {
+						moves = last[0].moves();
+					} else {
+						System.err.println(name + ": " + last[0] + ", no replay");
+					}
+				}
+				if (moves != null) {
+					String played = moves;
+					record(out, format, label, name, start, "replay", measure(entry.template, board -> {
+						if (!play(board, played) || !board.isSolved()) {
+							throw new IllegalStateException(name + ": the moves do not solve the level");
+						}
+						return played.length();
+					}, warmup, runs));
+				}
+			}
+		} finally {
+			if (out != System.out) {
+				out.close();
+			}
+			if (temporary != null) {
+				try (DirectoryStream<Path> dir = Files.newDirectoryStream(temporary)) {
+					for (Path p : dir) {
+						Files.delete(p);
+					}
+				}
+				Files.delete(temporary);
+			}
+		}
+	}
+}
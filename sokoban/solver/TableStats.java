@@ -0,0 +1,119 @@
+package sokoban.solver;
+
+/**
+ * The statistics of the transposition table of one search: how often the
+ * search found a position in it and how full it was at the end.
+ */
+public final class TableStats {
+	private final long lookups;
+	private final long hits;
+	private final long evictions;
+	private final long size;
+	private final long capacity;
+	private final long bytes;
+	private final boolean offHeap;
+
+	TableStats(TranspositionTable table, boolean offHeap) {
+		this.lookups = table.lookups();
+		this.hits = table.hits();
+		this.evictions = table.evictions();
+		this.size = table.size();
+		this.capacity = table.capacity();
+		this.bytes = table.bytes();
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Returns the number of lookups in the table.
+	 *
+	 * @return the number of lookups
+	 */
+	public long lookups() {
+		return this.lookups;
+	}
+
+	/**
+	 * Returns the number of lookups that found their position.
+	 *
+	 * @return the number of hits
+	 */
+	public long hits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the fraction of the lookups that found their position.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public double hitRate() {
+		return this.lookups == 0 ? 0 : (double) this.hits / this.lookups;
+	}
+
+	/**
+	 * Returns the number of entries evicted to make room for others.
+	 *
+	 * @return the number of evictions
+	 */
+	public long evictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the number of entries in the table at the end of the search.
+	 *
+	 * @return the number of entries
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of entries the table can hold.
+	 *
+	 * @return the capacity of the table
+	 */
+	public long capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the fraction of the entries of the table in use at the end of
+	 * the search.
+	 *
+	 * @return the occupancy, between 0 and 1
+	 */
+	public double occupancy() {
+		return (double) this.size / this.capacity;
+	}
+
+	/**
+	 * Returns the number of bytes the table occupies.
+	 *
+	 * @return the number of bytes of the table
+	 */
+	public long bytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Returns {@code true} if the table is kept outside the Java heap.
+	 *
+	 * @return {@code true} if the table is off-heap
+	 */
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
+
+	/**
+	 * Returns a one-line summary of these statistics.
+	 *
+	 * @return a one-line summary of these statistics
+	 */
+	@Override
+	public String toString() {
+		return String.format("tt=%s:%.1fMB hits=%.1f%% occupancy=%.1f%% evictions=%d",
+				this.offHeap ? "offheap" : "heap", this.bytes / 1048576.0, 100 * this.hitRate(),
+				100 * this.occupancy(), this.evictions);
+	}
+}
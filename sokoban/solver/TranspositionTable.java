@@ -0,0 +1,102 @@
+package sokoban.solver;
+
+/**
+ * A fixed-capacity map from 64-bit position hashes to {@code int} values,
+ * used by the depth-first searches to remember positions they have already
+ * searched.
+ *
+ * <p>
+ * A transposition table is allowed to forget: once it is full, storing a
+ * value may evict another one, so {@code get} can miss a key that was stored
+ * earlier. The table prefers to keep the entries with the higher values; the
+ * searches encode their values accordingly. The key {@code 0} is reserved.
+ */
+interface TranspositionTable {
+
+	/**
+	 * Returned by {@code get} for a key that is not in the table.
+	 */
+	int MISSING = Integer.MIN_VALUE;
+
+	/**
+	 * Returns the value stored for the specified key, or {@code MISSING}.
+	 *
+	 * @param key a non-zero position hash
+	 * @return the value stored for the key, or {@code MISSING}
+	 */
+	int get(long key);
+
+	/**
+	 * Stores a value for the specified key, replacing the value stored for it
+	 * or evicting another entry if the table has no room.
+	 *
+	 * @param key   a non-zero position hash
+	 * @param value the value to store
+	 */
+	void put(long key, int value);
+
+	/**
+	 * Removes all entries and resets the statistics.
+	 */
+	void clear();
+
+	/**
+	 * Returns the number of entries the table can hold.
+	 *
+	 * @return the number of entries the table can hold
+	 */
+	long capacity();
+
+	/**
+	 * Returns the number of entries in the table.
+	 *
+	 * @return the number of entries in the table
+	 */
+	long size();
+
+	/**
+	 * Returns the number of bytes of memory the table occupies.
+	 *
+	 * @return the number of bytes of memory the table occupies
+	 */
+	long bytes();
+
+	/**
+	 * Returns the number of calls of {@code get}.
+	 *
+	 * @return the number of lookups
+	 */
+	long lookups();
+
+	/**
+	 * Returns the number of calls of {@code get} that found their key.
+	 *
+	 * @return the number of hits
+	 */
+	long hits();
+
+	/**
+	 * Returns the number of entries evicted to make room for others.
+	 *
+	 * @return the number of evictions
+	 */
+	long evictions();
+
+	/**
+	 * Returns a new table that occupies at most the specified number of bytes,
+	 * kept in an {@code OffHeapTranspositionTable} or a
+	 * {@code HeapTranspositionTable}.
+	 *
+	 * @param bytes   the byte budget of the table
+	 * @param offHeap {@code true} to keep the table outside the Java heap
+	 * @return a new table
+	 */
+	static TranspositionTable create(long bytes, boolean offHeap) {
+		if (offHeap) {
+			return new OffHeapTranspositionTable(bytes);
+		}
+		// the heap table rounds up, so round the entries down to a power of two
+		long entries = Math.min(bytes / HeapTranspositionTable.ENTRY, 1 << 30);
+		return new HeapTranspositionTable((int) Math.max(8, Long.highestOneBit(entries)));
+	}
+}